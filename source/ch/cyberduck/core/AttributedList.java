@@ -22,16 +22,42 @@ import org.apache.log4j.Logger;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * A sortable list with a map to lookup values by key.
+ * <p/>
+ * Appending is amortized constant time. Removing, replacing and sorting copy the list once
+ * per call. Iterators operate on a snapshot of the list and never throw a
+ * <code>ConcurrentModificationException</code> but do not support modification.
  *
  * @version $Id$
  */
-public class AttributedList<E extends AbstractPath> extends CopyOnWriteArrayList<E> {
+public class AttributedList<E extends AbstractPath> extends AbstractList<E> implements RandomAccess {
     protected static Logger log = Logger.getLogger(Cache.class);
 
+    /**
+     * Published state of the list. Elements below size are never modified once published.
+     * Appending may write beyond the size of the current snapshot into the same array as
+     * no reader of an older snapshot accesses this range.
+     */
+    private static final class Snapshot {
+        private final Object[] elements;
+        private final int size;
+
+        private Snapshot(Object[] elements, int size) {
+            this.elements = elements;
+            this.size = size;
+        }
+    }
+
+    private volatile Snapshot snapshot
+            = new Snapshot(new Object[0], 0);
+
+    /**
+     * Guards modifications
+     */
+    private final Object lock = new Object();
+
 
     /**
      * Metadata of file listing
@@ -214,24 +240,281 @@ public class AttributedList<E extends AbstractPath> extends CopyOnWriteArrayList
     private Map<PathReference, E> references
             = new ConcurrentHashMap<PathReference, E>();
 
+    /**
+     * The cache this list is stored in
+     */
+    private volatile Cache<E> cache;
+
+    /**
+     * Reference of the directory this list is cached for
+     */
+    private PathReference reference;
+
+    /**
+     * Notify the cache of paths added to keep its index current.
+     *
+     * @param cache     The cache this list is stored in or null if removed from cache
+     * @param reference Reference of the directory
+     */
+    void setCache(Cache<E> cache, PathReference reference) {
+        this.reference = reference;
+        this.cache = cache;
+    }
+
     @Override
     public boolean add(E path) {
         final AbstractPath previous = references.put(path.getReference(), path);
         if(null != previous) {
             log.warn("Replacing " + previous + " with " + path + " in file listing.");
         }
-        return super.add(path);
+        final Cache<E> cache = this.cache;
+        if(null != cache) {
+            cache.index(reference, path);
+        }
+        synchronized(lock) {
+            final Snapshot current = snapshot;
+            final Object[] elements = this.ensureCapacity(current, current.size + 1);
+            elements[current.size] = path;
+            snapshot = new Snapshot(elements, current.size + 1);
+        }
+        return true;
     }
 
     @Override
     public boolean addAll(java.util.Collection<? extends E> c) {
+        final Cache<E> cache = this.cache;
         for(E path : c) {
             final AbstractPath previous = references.put(path.getReference(), path);
             if(null != previous) {
                 log.warn("Replacing " + previous + " with " + path + " in file listing.");
             }
+            if(null != cache) {
+                cache.index(reference, path);
+            }
+        }
+        final Object[] added = c.toArray();
+        if(0 == added.length) {
+            return false;
+        }
+        synchronized(lock) {
+            final Snapshot current = snapshot;
+            final Object[] elements = this.ensureCapacity(current, current.size + added.length);
+            System.arraycopy(added, 0, elements, current.size, added.length);
+            snapshot = new Snapshot(elements, current.size + added.length);
         }
-        return super.addAll(c);
+        return true;
+    }
+
+    /**
+     * Must be called while holding the lock.
+     *
+     * @param current  Current snapshot
+     * @param required Minimum capacity
+     * @return The array of the current snapshot if it is large enough or a larger copy
+     */
+    private Object[] ensureCapacity(Snapshot current, int required) {
+        if(required <= current.elements.length) {
+            return current.elements;
+        }
+        final Object[] elements = new Object[Math.max(required, current.elements.length * 3 / 2 + 16)];
+        System.arraycopy(current.elements, 0, elements, 0, current.size);
+        return elements;
+    }
+
+    @Override
+    public E get(int index) {
+        final Snapshot current = snapshot;
+        if(index < 0 || index >= current.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + current.size);
+        }
+        return (E) current.elements[index];
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size;
+    }
+
+    @Override
+    public E set(int index, E element) {
+        synchronized(lock) {
+            final Snapshot current = snapshot;
+            if(index < 0 || index >= current.size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + current.size);
+            }
+            final Object[] elements = new Object[current.size];
+            System.arraycopy(current.elements, 0, elements, 0, current.size);
+            final E previous = (E) elements[index];
+            elements[index] = element;
+            snapshot = new Snapshot(elements, current.size);
+            return previous;
+        }
+    }
+
+    @Override
+    public E remove(int index) {
+        synchronized(lock) {
+            final Snapshot current = snapshot;
+            if(index < 0 || index >= current.size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + current.size);
+            }
+            final E previous = (E) current.elements[index];
+            final Object[] elements = new Object[current.size - 1];
+            System.arraycopy(current.elements, 0, elements, 0, index);
+            System.arraycopy(current.elements, index + 1, elements, index, current.size - index - 1);
+            snapshot = new Snapshot(elements, elements.length);
+            return previous;
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        synchronized(lock) {
+            final int index = this.indexOf(o);
+            if(-1 == index) {
+                return false;
+            }
+            this.remove(index);
+            return true;
+        }
+    }
+
+    /**
+     * Removes all elements contained in the collection copying the list only once.
+     *
+     * @param c Elements to remove
+     * @return True if the list has changed
+     */
+    @Override
+    public boolean removeAll(java.util.Collection<?> c) {
+        return this.retain(new HashSet<Object>(c), false);
+    }
+
+    @Override
+    public boolean retainAll(java.util.Collection<?> c) {
+        return this.retain(new HashSet<Object>(c), true);
+    }
+
+    private boolean retain(Set<Object> c, boolean contained) {
+        synchronized(lock) {
+            final Snapshot current = snapshot;
+            final Object[] elements = new Object[current.size];
+            int size = 0;
+            for(int i = 0; i < current.size; i++) {
+                if(c.contains(current.elements[i]) == contained) {
+                    elements[size++] = current.elements[i];
+                }
+            }
+            if(size == current.size) {
+                return false;
+            }
+            snapshot = new Snapshot(elements, size);
+            return true;
+        }
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        final Snapshot current = snapshot;
+        for(int i = 0; i < current.size; i++) {
+            if(null == o ? null == current.elements[i] : o.equals(current.elements[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return this.indexOf(o) != -1;
+    }
+
+    @Override
+    public Object[] toArray() {
+        final Snapshot current = snapshot;
+        final Object[] copy = new Object[current.size];
+        System.arraycopy(current.elements, 0, copy, 0, current.size);
+        return copy;
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        final Snapshot current = snapshot;
+        if(a.length < current.size) {
+            a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), current.size);
+        }
+        System.arraycopy(current.elements, 0, a, 0, current.size);
+        if(a.length > current.size) {
+            a[current.size] = null;
+        }
+        return a;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return this.listIterator(0);
+    }
+
+    @Override
+    public ListIterator<E> listIterator() {
+        return this.listIterator(0);
+    }
+
+    /**
+     * @param index Start index
+     * @return Iterator over a snapshot of the list not supporting modification
+     */
+    @Override
+    public ListIterator<E> listIterator(final int index) {
+        final Snapshot current = snapshot;
+        if(index < 0 || index > current.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + current.size);
+        }
+        return new ListIterator<E>() {
+            private int cursor = index;
+
+            public boolean hasNext() {
+                return cursor < current.size;
+            }
+
+            public E next() {
+                if(cursor >= current.size) {
+                    throw new NoSuchElementException();
+                }
+                return (E) current.elements[cursor++];
+            }
+
+            public boolean hasPrevious() {
+                return cursor > 0;
+            }
+
+            public E previous() {
+                if(cursor <= 0) {
+                    throw new NoSuchElementException();
+                }
+                return (E) current.elements[--cursor];
+            }
+
+            public int nextIndex() {
+                return cursor;
+            }
+
+            public int previousIndex() {
+                return cursor - 1;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            public void set(E e) {
+                throw new UnsupportedOperationException();
+            }
+
+            public void add(E e) {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
     /**
@@ -247,26 +530,29 @@ public class AttributedList<E extends AbstractPath> extends CopyOnWriteArrayList
     }
 
     public int indexOf(PathReference reference) {
-        return super.indexOf(references.get(reference));
+        final E path = references.get(reference);
+        if(null == path) {
+            return -1;
+        }
+        return this.indexOf(path);
     }
 
     /**
-     * The CopyOnWriteArrayList iterator does not support remove but the sort implementation
-     * makes use of it. Provide our own implementation here to circumvent.
+     * Sort the list copying it only once.
      *
      * @param comparator
-     * @see java.util.Collections#sort(java.util.List, java.util.Comparator)
-     * @see java.util.concurrent.CopyOnWriteArrayList#iterator()
+     * @see java.util.Arrays#sort(Object[], java.util.Comparator)
      */
-    public void sort(Comparator<E> comparator) {
+    public void sort(Comparator<? super E> comparator) {
         if(null == comparator) {
             return;
         }
-        // Because AttributedList is a CopyOnWriteArrayList we cannot use Collections#sort
-        E[] sorted = (E[]) this.toArray(new AbstractPath[this.size()]);
-        Arrays.sort(sorted, comparator);
-        for(int i = 0; i < sorted.length; i++) {
-            this.set(i, sorted[i]);
+        synchronized(lock) {
+            final Snapshot current = snapshot;
+            final E[] sorted = (E[]) new AbstractPath[current.size];
+            System.arraycopy(current.elements, 0, sorted, 0, current.size);
+            Arrays.sort(sorted, comparator);
+            snapshot = new Snapshot(sorted, sorted.length);
         }
     }
 
@@ -275,7 +561,9 @@ public class AttributedList<E extends AbstractPath> extends CopyOnWriteArrayList
      */
     @Override
     public void clear() {
-        references.clear();
-        super.clear();
+        synchronized(lock) {
+            references.clear();
+            snapshot = new Snapshot(new Object[0], 0);
+        }
     }
 }
\ No newline at end of file
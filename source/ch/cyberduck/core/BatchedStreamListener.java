@@ -0,0 +1,102 @@
+package ch.cyberduck.core;
+
+/*
+ *  Copyright (c) 2010 David Kocher. All rights reserved.
+ *  http://cyberduck.ch/
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Bug fixes, suggestions and comments should be sent to:
+ *  dkocher@cyberduck.ch
+ */
+
+/**
+ * Accumulates the bytes reported and notifies the delegate only once a threshold
+ * of bytes is reached or the interval has elapsed. Not thread safe.
+ *
+ * @version $Id$
+ */
+public class BatchedStreamListener implements StreamListener {
+
+    private StreamListener delegate;
+
+    /**
+     * Minimum number of bytes to accumulate before notifying the delegate
+     */
+    private long threshold;
+
+    /**
+     * Maximum time in milliseconds to delay notifications
+     */
+    private long interval;
+
+    private long sent;
+
+    private long received;
+
+    /**
+     * Time of the last notification
+     */
+    private long timestamp = System.currentTimeMillis();
+
+    /**
+     * @param delegate  The listener to notify
+     * @param threshold Number of bytes
+     * @param interval  Milliseconds
+     */
+    public BatchedStreamListener(StreamListener delegate, long threshold, long interval) {
+        this.delegate = delegate;
+        this.threshold = threshold;
+        this.interval = interval;
+    }
+
+    public void bytesSent(long bytes) {
+        sent += bytes;
+        if(this.isDue(sent)) {
+            this.flush();
+        }
+    }
+
+    /**
+     * @param bytes Number of bytes or -1 if the end of the stream has been reached
+     *              which is passed to the delegate immediately.
+     */
+    public void bytesReceived(long bytes) {
+        if(-1 == bytes) {
+            this.flush();
+            delegate.bytesReceived(bytes);
+            return;
+        }
+        received += bytes;
+        if(this.isDue(received)) {
+            this.flush();
+        }
+    }
+
+    private boolean isDue(long bytes) {
+        return bytes >= threshold || System.currentTimeMillis() - timestamp >= interval;
+    }
+
+    /**
+     * Notify the delegate about all bytes accumulated.
+     */
+    public void flush() {
+        if(received > 0) {
+            delegate.bytesReceived(received);
+            received = 0;
+        }
+        if(sent > 0) {
+            delegate.bytesSent(sent);
+            sent = 0;
+        }
+        timestamp = System.currentTimeMillis();
+    }
+}
@@ -18,10 +18,12 @@ package ch.cyberduck.core;
  *  dkocher@cyberduck.ch
  */
 
-import org.apache.commons.collections.map.LRUMap;
 import org.apache.log4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A cache for remote directory listings
@@ -51,43 +53,255 @@ public class Cache<E extends AbstractPath> {
         this.lifecycle = lifecycle;
     }
 
+    public enum Eviction {
+        /**
+         * Limit the number of files in all cached listings
+         */
+        ENTRIES,
+        /**
+         * Limit the estimated memory used by all cached listings of all caches
+         */
+        FOOTPRINT;
+    }
+
     /**
-     *
+     * Measure to limit the size of the cache
+     */
+    private final Eviction eviction;
+
+    /**
+     * Maximum number of files in cached directory listings of this cache or bytes of cached
+     * directory listings of all caches limited by their footprint
+     */
+    private final long capacity;
+
+    /**
+     * Caches limited by their footprint sharing the memory budget. Guarded by itself.
+     */
+    private static final Map<Cache, Boolean> footprints
+            = new WeakHashMap<Cache, Boolean>();
+
+    /**
+     * Logical clock to order entries of all caches by last access
+     */
+    private static final AtomicLong clock = new AtomicLong();
+
+    public Cache() {
+        this(Eviction.valueOf(Preferences.instance().getProperty("browser.cache.eviction").toUpperCase()));
+    }
+
+    private Cache(Eviction eviction) {
+        this(eviction, Eviction.FOOTPRINT == eviction ?
+                Preferences.instance().getLong("browser.cache.footprint") :
+                Preferences.instance().getLong("browser.cache.entries"));
+    }
+
+    /**
+     * @param eviction Measure to limit the size of the cache
+     * @param capacity Maximum number of files or bytes of all cached directory listings
      */
-    private final Map<PathReference, AttributedList<E>> _impl = Collections.<PathReference, AttributedList<E>>synchronizedMap(new LRUMap(
-            Preferences.instance().getInteger("browser.cache.size")
-    ) {
-        @Override
-        protected boolean removeLRU(LinkEntry entry) {
-            log.debug("Removing from cache:" + entry);
-            return true;
+    Cache(Eviction eviction, long capacity) {
+        this.eviction = eviction;
+        this.capacity = capacity;
+        if(Eviction.FOOTPRINT == eviction) {
+            synchronized(footprints) {
+                footprints.put(this, Boolean.TRUE);
+            }
         }
-    });
+    }
+
+    /**
+     * Cached directory listing with its weight and the time of the last access
+     */
+    private final class Entry {
+        private final AttributedList<E> children;
+
+        /**
+         * Number of files or estimated number of bytes of the listing
+         */
+        private final AtomicLong weight;
+
+        /**
+         * Logical time of the last access to compare with entries of other caches
+         */
+        private volatile long access;
+
+        private Entry(AttributedList<E> children) {
+            this.children = children;
+            this.weight = new AtomicLong(weigh(children));
+            this.access = clock.incrementAndGet();
+        }
+    }
+
+    /**
+     * Number of files or estimated number of bytes of all cached directory listings
+     */
+    private final AtomicLong weight = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Estimated memory used by a file in a listing not including the strings and metadata.
+     * Accounts for the path, its attributes, status and reference as well as the entries in
+     * the list and its lookup table.
+     */
+    private static final long PATH_FOOTPRINT = 512;
+
+    /**
+     * Estimated memory used by a metadata entry not including the strings
+     */
+    private static final long METADATA_FOOTPRINT = 48;
+
+    /**
+     * @param children Directory listing
+     * @return The number of files or the estimated number of bytes used by the listing
+     */
+    private long weigh(AttributedList<E> children) {
+        long weight = 0;
+        for(E child : children) {
+            weight += this.weigh(child);
+        }
+        for(E child : children.attributes().getHidden()) {
+            weight += this.weigh(child);
+        }
+        return weight;
+    }
+
+    /**
+     * @param path File in a cached listing
+     * @return One or the estimated number of bytes used by the file
+     */
+    protected long weigh(E path) {
+        if(Eviction.ENTRIES == eviction) {
+            return 1;
+        }
+        // The absolute path is kept together with the name and reference
+        long footprint = PATH_FOOTPRINT + 2 * this.weigh(path.getAbsolute());
+        if(path.attributes() instanceof PathAttributes) {
+            final PathAttributes attributes = (PathAttributes) path.attributes();
+            footprint += this.weigh(attributes.getOwner());
+            footprint += this.weigh(attributes.getGroup());
+            footprint += this.weigh(attributes.getChecksum());
+            footprint += this.weigh(attributes.getStorageClass());
+            footprint += this.weigh(attributes.getVersionId());
+            for(Map.Entry<String, String> entry : attributes.getMetadata().entrySet()) {
+                footprint += METADATA_FOOTPRINT + this.weigh(entry.getKey()) + this.weigh(entry.getValue());
+            }
+        }
+        return footprint;
+    }
+
+    /**
+     * @param value String
+     * @return Estimated number of bytes used
+     */
+    private long weigh(String value) {
+        if(null == value) {
+            return 0;
+        }
+        return 40 + 2 * value.length();
+    }
+
+    /**
+     * @return Number of listings and files found
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of listings and files not found
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return Number of listings removed to stay within the capacity
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return Number of files or estimated number of bytes of all cached listings
+     *         depending on the eviction mode
+     */
+    public long getWeight() {
+        return weight.get();
+    }
 
     /**
-     * Lookup a path by reference in the cache. Expensive as its parent directory must be
-     * evaluated first.
+     * Listings ordered by last access with the least recently used first. Guarded by itself.
+     */
+    private final Map<PathReference, Entry> _impl
+            = new LinkedHashMap<PathReference, Entry>(16, 0.75f, true);
+
+    /**
+     * Reverse index from a file to the reference of its parent directory listing
+     */
+    private final ConcurrentMap<PathReference, PathReference> parents
+            = new ConcurrentHashMap<PathReference, PathReference>();
+
+    /**
+     * Lookup a path by reference in the cache.
      *
      * @param reference A child object of a cached directory listing in the cache
      * @return Null if the path is no more cached.
      * @see ch.cyberduck.core.AttributedList#get(PathReference)
      */
     public E lookup(PathReference reference) {
-        synchronized(_impl) {
-            for(AttributedList list : _impl.values()) {
-                final AbstractPath path = list.get(reference);
-                if(null == path) {
-                    continue;
+        final PathReference parent = parents.get(reference);
+        if(null != parent) {
+            final Entry entry;
+            synchronized(_impl) {
+                entry = _impl.get(parent);
+            }
+            if(null != entry) {
+                final E path = entry.children.get(reference);
+                if(null != path) {
+                    entry.access = clock.incrementAndGet();
+                    hits.incrementAndGet();
+                    return path;
                 }
-                return (E) path;
             }
-            log.warn("Lookup failed for " + reference + " in cache");
-            return null;
+            parents.remove(reference, parent);
+        }
+        misses.incrementAndGet();
+        log.warn("Lookup failed for " + reference + " in cache");
+        return null;
+    }
+
+    /**
+     * Add a path to the reverse index. Called by the listing if a path is added after
+     * the listing has been cached.
+     *
+     * @param parent Reference to the cached directory listing
+     * @param child  File added to the listing
+     */
+    void index(PathReference parent, E child) {
+        parents.put(child.getReference(), parent);
+        final Entry entry;
+        synchronized(_impl) {
+            entry = _impl.get(parent);
+        }
+        if(null != entry) {
+            final long w = this.weigh(child);
+            entry.weight.addAndGet(w);
+            entry.access = clock.incrementAndGet();
+            weight.addAndGet(w);
+            this.evict();
         }
     }
 
     public boolean isEmpty() {
-        return _impl.isEmpty();
+        synchronized(_impl) {
+            return _impl.isEmpty();
+        }
     }
 
     /**
@@ -95,7 +309,9 @@ public class Cache<E extends AbstractPath> {
      * @return True if the directory listing of this path is cached
      */
     public boolean containsKey(PathReference reference) {
-        return _impl.containsKey(reference);
+        synchronized(_impl) {
+            return _impl.containsKey(reference);
+        }
     }
 
     /**
@@ -105,7 +321,32 @@ public class Cache<E extends AbstractPath> {
      * @return The previuosly cached directory listing
      */
     public AttributedList<E> remove(PathReference reference) {
-        return _impl.remove(reference);
+        final Entry entry;
+        synchronized(_impl) {
+            entry = _impl.remove(reference);
+        }
+        if(null == entry) {
+            return null;
+        }
+        this.release(reference, entry);
+        return entry.children;
+    }
+
+    /**
+     * Remove the files of a listing no longer cached from the reverse index
+     *
+     * @param reference Reference to the directory
+     * @param entry     Listing removed
+     */
+    private void release(PathReference reference, Entry entry) {
+        weight.addAndGet(-entry.weight.get());
+        entry.children.setCache(null, null);
+        for(E child : entry.children) {
+            parents.remove(child.getReference(), reference);
+        }
+        for(E child : entry.children.attributes().getHidden()) {
+            parents.remove(child.getReference(), reference);
+        }
     }
 
     /**
@@ -136,11 +377,18 @@ public class Cache<E extends AbstractPath> {
      *          and requests a new filter here.
      */
     public AttributedList<E> get(PathReference reference, Comparator<E> comparator, PathFilter<E> filter) {
-        AttributedList<E> children = _impl.get(reference);
-        if(null == children) {
+        final Entry entry;
+        synchronized(_impl) {
+            entry = _impl.get(reference);
+        }
+        if(null == entry) {
+            misses.incrementAndGet();
             log.warn("No cache for " + reference);
             return AttributedList.emptyList();
         }
+        hits.incrementAndGet();
+        entry.access = clock.incrementAndGet();
+        final AttributedList<E> children = entry.children;
         boolean needsSorting = false;
         if(null != comparator) {
             needsSorting = !children.attributes().getComparator().equals(comparator);
@@ -167,14 +415,16 @@ public class Cache<E extends AbstractPath> {
                 if(!filter.accept(child)) {
                     //child not accepted by filter; add to cached hidden files
                     children.attributes().addHidden(child);
-                    //remove hidden file from current file listing
-                    children.remove(child);
                 }
             }
+            //remove hidden files from current file listing at once
+            children.removeAll(hidden);
             // Saving last filter
             children.attributes().setFilter(filter);
             // Sort again because the list has changed
             children.sort(comparator);
+            // Hidden files added again were weighed twice
+            this.reweigh(entry);
         }
         return children;
     }
@@ -185,7 +435,126 @@ public class Cache<E extends AbstractPath> {
      * @return
      */
     public AttributedList<E> put(PathReference reference, AttributedList<E> children) {
-        return _impl.put(reference, children);
+        final Entry entry = new Entry(children);
+        if(children != AttributedList.emptyList()) {
+            children.setCache(this, reference);
+        }
+        for(E child : children) {
+            parents.put(child.getReference(), reference);
+        }
+        for(E child : children.attributes().getHidden()) {
+            parents.put(child.getReference(), reference);
+        }
+        weight.addAndGet(entry.weight.get());
+        final Entry previous;
+        synchronized(_impl) {
+            previous = _impl.put(reference, entry);
+        }
+        if(null != previous) {
+            weight.addAndGet(-previous.weight.get());
+            if(previous.children != children) {
+                previous.children.setCache(null, null);
+                for(E child : previous.children) {
+                    if(!children.contains(child.getReference())) {
+                        parents.remove(child.getReference(), reference);
+                    }
+                }
+            }
+        }
+        this.evict();
+        if(null == previous) {
+            return null;
+        }
+        return previous.children;
+    }
+
+    /**
+     * Replace the weight of the listing with the weight of its current files
+     *
+     * @param entry Cached listing
+     */
+    private void reweigh(Entry entry) {
+        final long w = this.weigh(entry.children);
+        weight.addAndGet(w - entry.weight.getAndSet(w));
+    }
+
+    /**
+     * Remove the least recently used directory listings until the number of files of this cache
+     * or the estimated memory used by all caches is below the capacity. The most recently used
+     * listing of this cache is never removed. Must not be called holding the lock of any cache.
+     */
+    private void evict() {
+        if(Eviction.FOOTPRINT == eviction) {
+            synchronized(footprints) {
+                while(footprint() > capacity) {
+                    // Cache with the least recently used listing of all caches
+                    Cache eldest = null;
+                    long access = Long.MAX_VALUE;
+                    for(Cache cache : footprints.keySet()) {
+                        final long candidate = cache.eldest(cache != this);
+                        if(candidate < access) {
+                            eldest = cache;
+                            access = candidate;
+                        }
+                    }
+                    if(null == eldest) {
+                        break;
+                    }
+                    eldest.evictEldest();
+                }
+            }
+            return;
+        }
+        if(weight.get() <= capacity) {
+            return;
+        }
+        synchronized(_impl) {
+            while(weight.get() > capacity && _impl.size() > 1) {
+                this.evictEldest();
+            }
+        }
+    }
+
+    /**
+     * @return Estimated number of bytes used by all caches limited by their footprint
+     */
+    private static long footprint() {
+        long total = 0;
+        for(Cache cache : footprints.keySet()) {
+            total += cache.getWeight();
+        }
+        return total;
+    }
+
+    /**
+     * @param all Allow to remove the only listing cached
+     * @return Time of last access of the least recently used listing or Long.MAX_VALUE
+     *         if no listing can be removed
+     */
+    private long eldest(boolean all) {
+        synchronized(_impl) {
+            if(_impl.isEmpty() || (!all && _impl.size() == 1)) {
+                return Long.MAX_VALUE;
+            }
+            return _impl.values().iterator().next().access;
+        }
+    }
+
+    /**
+     * Remove the least recently used directory listing
+     */
+    private void evictEldest() {
+        synchronized(_impl) {
+            final Iterator<Map.Entry<PathReference, Entry>> iter = _impl.entrySet().iterator();
+            if(!iter.hasNext()) {
+                return;
+            }
+            final Map.Entry<PathReference, Entry> eldest = iter.next();
+            iter.remove();
+            log.debug("Removing from cache:" + eldest.getKey());
+            evictions.incrementAndGet();
+            this.release(eldest.getKey(), eldest.getValue());
+        }
     }
 
     /**
@@ -203,9 +572,17 @@ public class Cache<E extends AbstractPath> {
      */
     public void clear() {
         if(log.isInfoEnabled()) {
-            log.info("Clearing cache " + this.toString());
+            log.info("Clearing cache " + this.toString() + " with " + hits.get() + " hits, " + misses.get()
+                    + " misses and " + evictions.get() + " evictions");
+        }
+        final List<PathReference> references;
+        synchronized(_impl) {
+            references = new ArrayList<PathReference>(_impl.keySet());
+        }
+        for(PathReference reference : references) {
+            this.remove(reference);
         }
-        _impl.clear();
+        parents.clear();
     }
 
 
@@ -19,7 +19,7 @@ package ch.cyberduck.core;
  */
 
 import ch.cyberduck.core.i18n.Locale;
-import ch.cyberduck.core.io.BandwidthThrottle;
+import ch.cyberduck.core.io.BandwidthShaper;
 import ch.cyberduck.core.serializer.Serializer;
 import ch.cyberduck.ui.DateFormatterFactory;
 import ch.cyberduck.ui.growl.Growl;
@@ -29,6 +29,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -115,7 +116,11 @@ public class DownloadTransfer extends Transfer {
     @Override
     protected void init() {
         log.debug("init");
-        this.bandwidth = new BandwidthThrottle(
+        final BandwidthShaper shaper = BandwidthShaper.download();
+        shaper.setRate(Preferences.instance().getFloat("queue.download.bandwidth.global.bytes"));
+        shaper.setHostRate(Preferences.instance().getFloat("queue.download.bandwidth.host.bytes"));
+        // Limited additionally by all other transfers to the same host and in total
+        this.bandwidth = shaper.create(this.getSession().getHost().toURL(),
                 Preferences.instance().getFloat("queue.download.bandwidth.bytes"));
     }
 
@@ -176,7 +181,7 @@ public class DownloadTransfer extends Transfer {
                     size += file.attributes().getSize();
                 }
                 if(file.status().isResume()) {
-                    transferred += file.getLocal().attributes().getSize();
+                    addTransferred(file.status().getCurrent());
                 }
             }
             if(!file.getLocal().getParent().exists()) {
@@ -226,9 +231,18 @@ public class DownloadTransfer extends Transfer {
             return AttributedList.emptyList();
         }
         final AttributedList<Path> list = parent.children(exclusionRegexFilter);
+        final List<Path> directories = new ArrayList<Path>();
         for(Path download : list) {
             // Change download path relative to parent local folder
             download.setLocal(LocalFactory.createLocal(parent.getLocal(), download.getLocal().getName()));
+            if(download.attributes().isDirectory() && !download.attributes().isSymbolicLink()
+                    && !download.isCached()) {
+                directories.add(download);
+            }
+        }
+        if(directories.size() > 1) {
+            // Fetch listings of subdirectories in bulk before they are traversed
+            parent.getSession().list(directories);
         }
         return list;
     }
@@ -262,7 +276,7 @@ public class DownloadTransfer extends Transfer {
                 }
             }
             if(file.status().isComplete()
-                    || file.getLocal().attributes().getSize() == file.attributes().getSize()) {
+                    || (!file.status().isSegmented() && file.getLocal().attributes().getSize() == file.attributes().getSize())) {
                 // No need to resume completed transfers
                 file.status().setComplete(true);
                 return false;
@@ -277,6 +291,10 @@ public class DownloadTransfer extends Transfer {
                         && file.getLocal().attributes().getSize() > 0;
                 file.status().setResume(resume);
                 long skipped = file.getLocal().attributes().getSize();
+                if(file.status().isSegmented()) {
+                    // Only completed segments have been written at their offset
+                    skipped = file.status().getSegmentsLength();
+                }
                 file.status().setCurrent(skipped);
             }
             super.prepare(file);
@@ -425,6 +443,11 @@ public class DownloadTransfer extends Transfer {
         return false;
     }
 
+    @Override
+    protected int getSegmentConnections() {
+        return this.getSession().getSegmentConnections();
+    }
+
     @Override
     protected void transfer(final Path file) {
         log.debug("transfer:" + file);
@@ -443,7 +466,7 @@ public class DownloadTransfer extends Transfer {
             file.download(bandwidth, new AbstractStreamListener() {
                 @Override
                 public void bytesReceived(long bytes) {
-                    transferred += bytes;
+                    addTransferred(bytes);
                 }
             });
         }
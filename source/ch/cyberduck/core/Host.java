@@ -136,6 +136,11 @@ public class Host implements Serializable {
      */
     private Integer maxConnections;
 
+    /**
+     * Compress data on the wire if supported by the protocol
+     */
+    private Boolean compression;
+
     /**
      * The custom download folder
      */
@@ -294,6 +299,10 @@ public class Host implements Serializable {
         if(connObj != null) {
             this.setMaxConnections(Integer.valueOf(connObj.toString()));
         }
+        Object compressionObj = dict.stringForKey("Compression");
+        if(compressionObj != null) {
+            this.setCompression(Boolean.valueOf(compressionObj.toString()));
+        }
         Object downloadObj = dict.stringForKey("Download Folder");
         if(downloadObj != null) {
             this.setDownloadFolder(downloadObj.toString());
@@ -354,6 +363,9 @@ public class Host implements Serializable {
         if(null != this.getMaxConnections()) {
             dict.setStringForKey(String.valueOf(this.getMaxConnections()), "Maximum Connections");
         }
+        if(null != this.getCompression()) {
+            dict.setStringForKey(String.valueOf(this.getCompression()), "Compression");
+        }
         if(!this.isDefaultDownloadFolder()) {
             dict.setStringForKey(this.getDownloadFolder().getAbbreviatedPath(), "Download Folder");
         }
@@ -711,6 +723,24 @@ public class Host implements Serializable {
         return this.maxConnections;
     }
 
+    /**
+     * Enable or disable compression of the transport for this bookmark
+     *
+     * @param compression null to use the default of the protocol
+     */
+    public void setCompression(Boolean compression) {
+        log.debug("setCompression:" + compression);
+        this.compression = compression;
+    }
+
+    /**
+     * @return True if compression is enabled, false if disabled or null if
+     *         the default should be used
+     */
+    public Boolean getCompression() {
+        return this.compression;
+    }
+
     /**
      * Set a custom download folder instead of queue.download.folder
      *
@@ -30,6 +30,7 @@ import com.ibm.icu.text.Normalizer;
 
 import java.io.*;
 import java.net.MalformedURLException;
+import java.nio.channels.FileChannel;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
 import java.util.List;
@@ -537,4 +538,12 @@ public abstract class Local extends AbstractPath {
     public java.io.OutputStream getOutputStream(boolean resume) throws FileNotFoundException {
         return new FileOutputStream(new File(path), resume);
     }
+
+    /**
+     * @return Channel to write at arbitrary positions. The file is created if it does not exist.
+     * @throws FileNotFoundException
+     */
+    public FileChannel getChannel() throws FileNotFoundException {
+        return new RandomAccessFile(new File(path), "rw").getChannel();
+    }
 }
\ No newline at end of file
@@ -21,15 +21,16 @@ package ch.cyberduck.core;
 import ch.cyberduck.core.cdn.Distribution;
 import ch.cyberduck.core.i18n.Locale;
 import ch.cyberduck.core.io.BandwidthThrottle;
+import ch.cyberduck.core.io.BufferPool;
 import ch.cyberduck.core.io.IOResumeException;
 import ch.cyberduck.core.io.ThrottledInputStream;
-import ch.cyberduck.core.io.ThrottledOutputStream;
 import ch.cyberduck.core.serializer.Deserializer;
 import ch.cyberduck.core.serializer.DeserializerFactory;
 import ch.cyberduck.core.serializer.Serializer;
 import ch.cyberduck.core.serializer.SerializerFactory;
 
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
@@ -42,11 +43,23 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -81,6 +94,18 @@ public abstract class Path extends AbstractPath implements Serializable {
      */
     private static final int CHUNKSIZE = Preferences.instance().getInteger("connection.chunksize");
 
+    /**
+     * Buffers for copying file contents shared by all transfers
+     */
+    private static final BufferPool buffers
+            = new BufferPool(CHUNKSIZE, Preferences.instance().getInteger("connection.buffer.pool"));
+
+    /**
+     * Notify stream listeners at most every 8 chunks or 100 milliseconds
+     */
+    private static final long LISTENER_THRESHOLD = CHUNKSIZE * 8;
+    private static final long LISTENER_INTERVAL = 100;
+
     public Pattern getTextFiletypePattern() {
         final String regex = Preferences.instance().getProperty("filetype.text.regex");
         if(null == TEXT_FILETYPE_PATTERN ||
@@ -143,6 +168,15 @@ public abstract class Path extends AbstractPath implements Serializable {
         if(dict.stringForKey("Complete") != null) {
             this.status().setComplete(true);
         }
+        String segmentsObj = dict.stringForKey("Segments");
+        if(segmentsObj != null) {
+            final Map<Long, Long> segments = new TreeMap<Long, Long>();
+            for(String segment : StringUtils.split(segmentsObj, ',')) {
+                segments.put(Long.parseLong(StringUtils.substringBefore(segment, ":")),
+                        Long.parseLong(StringUtils.substringAfter(segment, ":")));
+            }
+            this.status().setSegments(segments);
+        }
     }
 
     public <S> S getAsDictionary() {
@@ -162,6 +196,14 @@ public abstract class Path extends AbstractPath implements Serializable {
         if(this.status().isComplete()) {
             dict.setStringForKey(String.valueOf(true), "Complete");
         }
+        else if(this.status().isSegmented()) {
+            // Completed segments to resume from
+            final List<String> segments = new ArrayList<String>();
+            for(Map.Entry<Long, Long> segment : this.status().getSegments().entrySet()) {
+                segments.add(segment.getKey() + ":" + segment.getValue());
+            }
+            dict.setStringForKey(StringUtils.join(segments, ','), "Segments");
+        }
         return dict.<S>getSerialized();
     }
 
@@ -414,6 +456,13 @@ public abstract class Path extends AbstractPath implements Serializable {
         return attributes;
     }
 
+    /**
+     * @param attributes Attributes denoting this path
+     */
+    public void setAttributes(PathAttributes attributes) {
+        this.attributes = attributes;
+    }
+
     /**
      * @return
      */
@@ -787,7 +836,7 @@ public abstract class Path extends AbstractPath implements Serializable {
                 throw new IOResumeException("Skipped " + skipped + " bytes instead of " + status().getCurrent());
             }
         }
-        this.transfer(in, new ThrottledOutputStream(out, throttle), l, limit);
+        this.transfer(in, out, throttle, l, limit);
     }
 
     /**
@@ -816,14 +865,7 @@ public abstract class Path extends AbstractPath implements Serializable {
         // Set the first progress icon
         local.setIcon(0);
 
-        if(Preferences.instance().getBoolean("queue.download.quarantine")) {
-            // Set quarantine attributes
-            local.setQuarantine(this.getHost().toURL(), this.toURL());
-        }
-        if(Preferences.instance().getBoolean("queue.download.wherefrom")) {
-            // Set quarantine attributes
-            local.setWhereFrom(this.toURL());
-        }
+        this.quarantine(local);
 
         final StreamListener listener = new StreamListener() {
             int step = 0;
@@ -851,7 +893,190 @@ public abstract class Path extends AbstractPath implements Serializable {
                 }
             }
         };
-        this.transfer(new ThrottledInputStream(in, throttle), out, listener, -1);
+        this.transfer(in, out, throttle, listener, -1);
+    }
+
+    /**
+     * @param local Downloaded file
+     */
+    private void quarantine(final Local local) {
+        if(Preferences.instance().getBoolean("queue.download.quarantine")) {
+            // Set quarantine attributes
+            local.setQuarantine(this.getHost().toURL(), this.toURL());
+        }
+        if(Preferences.instance().getBoolean("queue.download.wherefrom")) {
+            // Set quarantine attributes
+            local.setWhereFrom(this.toURL());
+        }
+    }
+
+    /**
+     * @return True if byte ranges of the file can be read concurrently.
+     * @see #read(long, long)
+     */
+    protected boolean isSegmentedDownloadSupported() {
+        return false;
+    }
+
+    /**
+     * @return True if the file should be downloaded in segments on concurrent connections
+     * @see #isSegmentedDownloadSupported()
+     */
+    protected boolean isSegmentedDownload() {
+        if(!this.isSegmentedDownloadSupported()) {
+            return false;
+        }
+        if(!Preferences.instance().getBoolean("queue.download.segments")) {
+            return false;
+        }
+        return this.attributes().getSize() > Preferences.instance().getLong("queue.download.segments.threshold");
+    }
+
+    /**
+     * Open a stream for a byte range of the file. Must be safe to call from
+     * concurrent threads. Only implemented if segmented downloads are supported.
+     *
+     * @param offset Start of byte range
+     * @param length Number of bytes to read
+     * @return Stream of the byte range
+     * @throws IOException No byte range support
+     * @see #isSegmentedDownloadSupported()
+     */
+    protected InputStream read(long offset, long length) throws IOException {
+        throw new IOException("Byte range requests not supported");
+    }
+
+    /**
+     * Download byte ranges of the file concurrently and write them at their offset to the local file.
+     * Completed segments are recorded in the status and skipped when resuming.
+     *
+     * @param throttle The bandwidth limit
+     * @param listener The stream listener to notify about bytes received
+     * @throws IOException                 Write not completed due to a I/O problem
+     * @throws ConnectionCanceledException When transfer is interrupted by user setting the
+     *                                     status flag to cancel.
+     * @see #read(long, long)
+     */
+    protected void download(final BandwidthThrottle throttle, final StreamListener listener, final int connections) throws IOException {
+        this.getSession().message(MessageFormat.format(Locale.localizedString("Downloading {0}", "Status"),
+                this.getName()));
+        this.quarantine(this.getLocal());
+
+        final long size = this.attributes().getSize();
+        final long segment = Preferences.instance().getLong("queue.download.segments.size");
+
+        final ExecutorService pool = Executors.newFixedThreadPool(connections, new ThreadFactory() {
+            private int threadCount = 1;
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setName("segment-" + threadCount++);
+                return thread;
+            }
+        });
+        final FileChannel channel = this.getLocal().getChannel();
+        try {
+            if(!status().isResume()) {
+                channel.truncate(0);
+            }
+            final List<Future<Long>> segments = new ArrayList<Future<Long>>();
+            for(long offset = 0; offset < size; offset += segment) {
+                if(status().isSegmentComplete(offset)) {
+                    log.info("Skip completed segment at offset " + offset);
+                    continue;
+                }
+                segments.add(pool.submit(this.segment(channel, throttle, listener, offset, Math.min(segment, size - offset))));
+            }
+            for(Future<Long> future : segments) {
+                try {
+                    future.get();
+                }
+                catch(InterruptedException e) {
+                    log.error("Segment download failed:" + e.getMessage());
+                    throw new ConnectionCanceledException(e.getMessage());
+                }
+                catch(ExecutionException e) {
+                    log.warn("Segment download failed:" + e.getMessage());
+                    final Throwable cause = e.getCause();
+                    if(cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if(cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if(cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    IOException failure = new IOException(cause.getMessage());
+                    failure.initCause(cause);
+                    throw failure;
+                }
+            }
+            status().setComplete(true);
+        }
+        finally {
+            // Cancel pending segments
+            pool.shutdownNow();
+            IOUtils.closeQuietly(channel);
+        }
+    }
+
+    /**
+     * @param channel  Local file
+     * @param throttle The bandwidth limit
+     * @param listener The stream listener to notify about bytes received
+     * @param offset   Start of byte range
+     * @param length   Number of bytes in segment
+     * @return Task returning the number of bytes written
+     */
+    private Callable<Long> segment(final FileChannel channel, final BandwidthThrottle throttle,
+                                   final StreamListener listener, final long offset, final long length) {
+        return new Callable<Long>() {
+            public Long call() throws IOException {
+                final InputStream in = new ThrottledInputStream(read(offset, length), throttle);
+                final BatchedStreamListener batched = new BatchedStreamListener(listener,
+                        LISTENER_THRESHOLD, LISTENER_INTERVAL);
+                final ByteBuffer buffer = buffers.acquire();
+                try {
+                    final byte[] chunk = buffer.array();
+                    long position = offset;
+                    while(position < offset + length) {
+                        if(status().isCanceled()) {
+                            throw new ConnectionCanceledException("Interrupted transfer");
+                        }
+                        int read = in.read(chunk, 0, (int) Math.min(CHUNKSIZE, offset + length - position));
+                        if(-1 == read) {
+                            throw new IOResumeException("Unexpected end of segment at " + position);
+                        }
+                        buffer.position(0).limit(read);
+                        while(buffer.hasRemaining()) {
+                            position += channel.write(buffer, position);
+                        }
+                        batched.bytesReceived(read);
+                        status().addCurrent(read);
+                    }
+                }
+                catch(IOException e) {
+                    IOUtils.closeQuietly(in);
+                    throw e;
+                }
+                catch(RuntimeException e) {
+                    IOUtils.closeQuietly(in);
+                    throw e;
+                }
+                finally {
+                    batched.flush();
+                    buffers.release(buffer);
+                }
+                // Failure completing the transfer of the segment is reported when closing
+                in.close();
+                if(log.isDebugEnabled()) {
+                    log.debug("Completed segment at offset " + offset);
+                }
+                status().setSegmentComplete(offset, length);
+                return length;
+            }
+        };
     }
 
     /**
@@ -859,39 +1084,54 @@ public abstract class Path extends AbstractPath implements Serializable {
      *
      * @param in       The stream to read from
      * @param out      The stream to write to
-     * @param listener The stream listener to notify about bytes received and sent
-     * @param limit
+     * @param throttle The bandwidth limit
+     * @param l        The stream listener to notify about bytes received and sent
+     * @param limit    Maximum number of bytes to copy or -1 to read to the end of the stream
      * @throws IOException                 Write not completed due to a I/O problem
      * @throws ConnectionCanceledException When transfer is interrupted by user setting the
      *                                     status flag to cancel.
      */
-    private void transfer(InputStream in, OutputStream out, StreamListener listener, final long limit) throws IOException {
-        byte[] chunk = new byte[CHUNKSIZE];
-        long bytesTransferred = 0;
-        while(!status().isCanceled()) {
-            int read = in.read(chunk, 0, CHUNKSIZE);
-            listener.bytesReceived(read);
-            if(-1 == read) {
-                log.debug("End of file reached");
-                // End of file
-                status().setComplete(true);
-                break;
-            }
-            out.write(chunk, 0, read);
-            listener.bytesSent(read);
-            status().addCurrent(read);
-            bytesTransferred += read;
-            if(limit == bytesTransferred) {
-                log.debug("Limit reached reading from stream:" + limit);
-                // Part reached
-                if(0 == in.available()) {
+    private void transfer(InputStream in, OutputStream out, BandwidthThrottle throttle, StreamListener l,
+                          final long limit) throws IOException {
+        final BatchedStreamListener listener = new BatchedStreamListener(l, LISTENER_THRESHOLD, LISTENER_INTERVAL);
+        final ByteBuffer buffer = buffers.acquire();
+        try {
+            final byte[] chunk = buffer.array();
+            long bytesTransferred = 0;
+            while(!status().isCanceled()) {
+                int len = CHUNKSIZE;
+                if(limit > 0) {
+                    len = (int) Math.min(len, limit - bytesTransferred);
+                }
+                len = throttle.request(len);
+                int read = in.read(chunk, 0, len);
+                listener.bytesReceived(read);
+                if(-1 == read) {
+                    log.debug("End of file reached");
                     // End of file
                     status().setComplete(true);
+                    break;
+                }
+                out.write(chunk, 0, read);
+                listener.bytesSent(read);
+                status().addCurrent(read);
+                bytesTransferred += read;
+                if(limit == bytesTransferred) {
+                    log.debug("Limit reached reading from stream:" + limit);
+                    // Part reached
+                    if(0 == in.available()) {
+                        // End of file
+                        status().setComplete(true);
+                    }
+                    break;
                 }
-                break;
             }
+            out.flush();
+        }
+        finally {
+            listener.flush();
+            buffers.release(buffer);
         }
-        out.flush();
         if(status().isCanceled()) {
             throw new ConnectionCanceledException("Interrupted transfer");
         }
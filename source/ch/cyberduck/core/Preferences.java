@@ -216,9 +216,18 @@ public abstract class Preferences {
         defaults.put("local.normalize.unicode", String.valueOf(true));
 
         /**
-         * Maximum number of directory listings to cache using a most recently used implementation
+         * Maximum number of files in all directory listings cached. The least recently used
+         * listings are removed first.
          */
-        defaults.put("browser.cache.size", String.valueOf(1000));
+        defaults.put("browser.cache.entries", String.valueOf(100000));
+        /**
+         * Limit the cache by the number of files (entries) or by the estimated memory used (footprint)
+         */
+        defaults.put("browser.cache.eviction", "footprint");
+        /**
+         * Maximum estimated memory in bytes used by all directory listings cached by all sessions
+         */
+        defaults.put("browser.cache.footprint", String.valueOf(Runtime.getRuntime().maxMemory() / 8));
         defaults.put("transfer.cache.size", String.valueOf(50));
         defaults.put("icon.cache.size", String.valueOf(50));
 
@@ -362,6 +371,18 @@ public abstract class Preferences {
          * The maximum number of concurrent transfers
          */
         defaults.put("queue.maxtransfers", String.valueOf(5));
+        /**
+         * Number of connections to transfer files of a single transfer concurrently. Additional
+         * connections are limited by the maximum number of connections allowed for the host
+         * unless multiplexed over the connection of the transfer.
+         * Transfer files sequentially on the connection of the transfer if 1.
+         */
+        defaults.put("queue.transfer.connections", String.valueOf(1));
+        /**
+         * Prepare files while traversing directories and start transferring before
+         * the size of all files is known
+         */
+        defaults.put("queue.transfer.pipeline", String.valueOf(false));
 
         /**
          * Open completed downloads
@@ -419,6 +440,13 @@ public abstract class Preferences {
         defaults.put("queue.download.skip.regex",
                 ".*~\\..*|\\.DS_Store|\\.svn|CVS|RCS|SCCS|\\.git|\\.bzr|\\.bzrignore|\\.bzrtags|\\.hg|\\.hgignore|\\.hgtags|_darcs");
 
+        /**
+         * Download large files in byte ranges on concurrent connections if supported by the protocol
+         */
+        defaults.put("queue.download.segments", String.valueOf(false));
+        defaults.put("queue.download.segments.threshold", String.valueOf(100 * 1024 * 1024));
+        defaults.put("queue.download.segments.size", String.valueOf(16 * 1024 * 1024));
+        defaults.put("queue.download.segments.connections", String.valueOf(5));
         defaults.put("queue.download.quarantine", String.valueOf(true));
         defaults.put("queue.download.wherefrom", String.valueOf(true));
 
@@ -455,10 +483,26 @@ public abstract class Preferences {
          * Bandwidth throttle upload stream
          */
         defaults.put("queue.upload.bandwidth.bytes", String.valueOf(-1));
+        /**
+         * Bandwidth throttle for all uploads to the same host
+         */
+        defaults.put("queue.upload.bandwidth.host.bytes", String.valueOf(-1));
+        /**
+         * Bandwidth throttle for all uploads in total
+         */
+        defaults.put("queue.upload.bandwidth.global.bytes", String.valueOf(-1));
         /**
          * Bandwidth throttle download stream
          */
         defaults.put("queue.download.bandwidth.bytes", String.valueOf(-1));
+        /**
+         * Bandwidth throttle for all downloads to the same host
+         */
+        defaults.put("queue.download.bandwidth.host.bytes", String.valueOf(-1));
+        /**
+         * Bandwidth throttle for all downloads in total
+         */
+        defaults.put("queue.download.bandwidth.global.bytes", String.valueOf(-1));
 
         /**
          * While downloading, update the icon of the downloaded file as a progress indicator
@@ -501,6 +545,15 @@ public abstract class Preferences {
          2) Private (requested by 'PROT P')
          */
         defaults.put("ftp.tls.datachannel", "P"); //C
+        /**
+         * Resume the TLS session of the control connection for data connections in passive mode
+         * instead of a full handshake for every transfer and directory listing
+         */
+        defaults.put("ftp.tls.datachannel.resume", String.valueOf(true));
+        /**
+         * Compress data connections with MODE Z if supported by the server unless disabled for the bookmark
+         */
+        defaults.put("ftp.compression", String.valueOf(false));
 
         /**
          * Try to determine the timezone automatically using timestamp comparison from MLST and LIST
@@ -508,6 +561,11 @@ public abstract class Preferences {
         defaults.put("ftp.timezone.auto", String.valueOf(false));
         defaults.put("ftp.timezone.default", TimeZone.getDefault().getID());
 
+        /**
+         * Number of connections to copy or rename the objects of a directory concurrently on the server
+         */
+        defaults.put("cloud.copy.connections", String.valueOf(5));
+
         /**
          * Default bucket location
          */
@@ -524,6 +582,14 @@ public abstract class Preferences {
         defaults.put("s3.mfa.serialnumber", StringUtils.EMPTY);
 
         defaults.put("s3.listing.chunksize", String.valueOf(1000));
+        /**
+         * Number of directories listed concurrently when traversing a directory tree
+         */
+        defaults.put("s3.listing.concurrency", String.valueOf(5));
+        /**
+         * Delete the contents of directories with Multi-Object Delete requests of up to 1000 keys
+         */
+        defaults.put("s3.delete.multiple", String.valueOf(true));
 
         /**
          * Show revisions as hidden files in browser
@@ -549,6 +615,10 @@ public abstract class Preferences {
         defaults.put("s3.metadata.default", "");
 
         defaults.put("azure.metadata.default", "");
+        /**
+         * Maximum number of blobs and virtual directories returned per listing request
+         */
+        defaults.put("azure.listing.chunksize", String.valueOf(1000));
 
         defaults.put("cf.authentication.host", "auth.api.rackspacecloud.com");
         defaults.put("cf.authentication.context", "/v1.0");
@@ -557,6 +627,10 @@ public abstract class Preferences {
         defaults.put("cf.metadata.default", "");
 
         defaults.put("cf.list.limit", String.valueOf(10000));
+        /**
+         * Number of connections to delete objects of a directory concurrently
+         */
+        defaults.put("cf.delete.connections", String.valueOf(5));
 
         //doc	Microsoft Word
         //html	HTML Format
@@ -609,6 +683,19 @@ public abstract class Preferences {
          * Unlimited by default
          */
         defaults.put("connection.host.max", String.valueOf(-1));
+        /**
+         * Maximum persistent HTTP connections per route of a session if the number of connections
+         * to the host is unlimited
+         */
+        defaults.put("http.connections.route", String.valueOf(10));
+        /**
+         * Maximum persistent HTTP connections of a session for all routes
+         */
+        defaults.put("http.connections.total", String.valueOf(20));
+        /**
+         * Seconds before idle persistent HTTP connections are closed
+         */
+        defaults.put("http.connections.idle", String.valueOf(30));
         /**
          * Default login name
          */
@@ -661,11 +748,20 @@ public abstract class Preferences {
         defaults.put("connection.unsecure.switch", String.valueOf(true));
 
         defaults.put("connection.ssl.protocols", "SSLv3, TLSv1");
+        /**
+         * Reuse the SSL context and its cache of TLS sessions for all connections of a session
+         * to allow abbreviated handshakes when reconnecting
+         */
+        defaults.put("connection.ssl.session.cache", String.valueOf(true));
 
         /**
          * Transfer read buffer size
          */
         defaults.put("connection.chunksize", String.valueOf(32768));
+        /**
+         * Maximum number of idle transfer buffers to keep for reuse
+         */
+        defaults.put("connection.buffer.pool", String.valueOf(64));
 
         defaults.put("transcript.length", String.valueOf(1000));
 
@@ -689,7 +785,41 @@ public abstract class Preferences {
         defaults.put("ssh.CSAuthentication", "hmac-md5"); //client -> server message authentication
         defaults.put("ssh.SCAuthentication", "hmac-md5"); //server -> client message authentication
         defaults.put("ssh.publickey", "ssh-rsa");
-        defaults.put("ssh.compression", "none"); //zlib
+        /**
+         * Negotiate zlib compression of the SSH transport unless disabled for the bookmark
+         */
+        defaults.put("ssh.compression", String.valueOf(false));
+        /**
+         * Initial and maximum size of the local SSH channel window in bytes. The window
+         * is grown up to the maximum if it limits the throughput of downloads.
+         */
+        defaults.put("ssh.channel.window", String.valueOf(196608));
+        defaults.put("ssh.channel.window.max", String.valueOf(4194304));
+        /**
+         * Size the number and length of outstanding SFTP requests from the measured
+         * round trip time and throughput
+         */
+        defaults.put("ssh.sftp.pipeline.adaptive", String.valueOf(true));
+        /**
+         * Largest SFTP read request in bytes. Servers may return less data than requested.
+         */
+        defaults.put("ssh.sftp.pipeline.request.max", String.valueOf(262144));
+        /**
+         * Maximum number of SFTP subsystem channels opened over a single SSH connection
+         * to transfer files concurrently. OpenSSH allows 10 sessions per connection by default
+         * (MaxSessions). Open a new connection for every concurrent transfer if 0.
+         */
+        defaults.put("ssh.sftp.channels.max", String.valueOf(10));
+        /**
+         * Maximum number of outstanding SSH_FXP_STAT requests when reading the attributes
+         * of multiple files such as for synchronization
+         */
+        defaults.put("ssh.sftp.pipeline.stat", String.valueOf(64));
+        /**
+         * Use ciphers and MACs of the Java Cryptography Extension if available
+         * instead of the bundled implementations
+         */
+        defaults.put("ssh.crypto.jce", String.valueOf(true));
 
         defaults.put("ssh.authentication.publikey.default.enable", String.valueOf(true));
         defaults.put("ssh.authentication.publickey.default.rsa", "~/.ssh/id_rsa");
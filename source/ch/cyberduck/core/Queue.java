@@ -21,16 +21,25 @@ package ch.cyberduck.core;
 
 import org.apache.log4j.Logger;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * Schedules transfers for execution respecting the maximum number of concurrent transfers
+ * allowed in the Preferences. Waiting transfers are started ordered by priority, then
+ * round-robin between hosts and finally in the order they were added. The number of
+ * connections opened to a single host by running transfers does not exceed the
+ * maximum number of connections allowed for that host.
+ *
  * @version $Id$
  */
 public class Queue {
-    protected static Logger log = Logger.getLogger(Transfer.class);
+    protected static Logger log = Logger.getLogger(Queue.class);
 
     private static Queue instance;
 
@@ -46,22 +55,48 @@ public class Queue {
     }
 
     /**
-     * One transfer at least is always allowed to run. Queued accesses for threads blocked
-     * on insertion or removal, are processed in FIFO order
+     * Guards all state of the scheduler
+     */
+    private final ReentrantLock scheduler
+            = new ReentrantLock();
+
+    /**
+     * Signalled whenever transfers have been moved from waiting to running or a waiting
+     * transfer has been canceled.
+     */
+    private final Condition dispatched
+            = scheduler.newCondition();
+
+    /**
+     * Transfers waiting for a slot in the order they were added.
      */
-    private ArrayBlockingQueue<Transfer> overflow
-            = new ArrayBlockingQueue<Transfer>(1, true);
+    private final List<Transfer> waiting
+            = new LinkedList<Transfer>();
 
+    /**
+     * All running transfers with the number of connections allocated to each
+     */
+    private final Map<Transfer, Integer> running
+            = new HashMap<Transfer, Integer>();
 
     /**
-     * All running transfers.
+     * Number of connections used by running transfers per host
      */
-    private List<Transfer> running
-            = Collections.synchronizedList(new ArrayList<Transfer>());
+    private final Map<String, Integer> connections
+            = new HashMap<String, Integer>();
+
+    /**
+     * Sequence number of the last transfer started per host
+     */
+    private final Map<String, Long> served
+            = new HashMap<String, Long>();
+
+    private long sequence;
 
     /**
      * Idle this transfer until a free slot is avilable depending on
-     * the maximum number of concurrent transfers allowed in the Preferences.
+     * the maximum number of concurrent transfers allowed in the Preferences
+     * and the maximum number of connections allowed to the host of the transfer.
      *
      * @param t This transfer should respect the settings for maximum number of transfers
      */
@@ -69,65 +104,189 @@ public class Queue {
         if(log.isDebugEnabled()) {
             log.debug("add:" + t);
         }
-        if(running.size() >= Preferences.instance().getInteger("queue.maxtransfers")) {
-            t.fireTransferQueued();
-            if(log.isInfoEnabled()) {
-                log.info("Queuing:" + t);
-            }
-            while(running.size() >= Preferences.instance().getInteger("queue.maxtransfers")) {
-                // The maximum number of transfers is already reached
+        boolean queued;
+        scheduler.lock();
+        try {
+            waiting.add(t);
+            this.dispatch();
+            queued = !running.containsKey(t);
+        }
+        finally {
+            scheduler.unlock();
+        }
+        if(!queued) {
+            return;
+        }
+        t.fireTransferQueued();
+        if(log.isInfoEnabled()) {
+            log.info("Queuing:" + t);
+        }
+        scheduler.lock();
+        try {
+            while(!running.containsKey(t)) {
                 if(t.isCanceled()) {
+                    waiting.remove(t);
                     break;
                 }
                 // Wait for transfer slot.
                 try {
-                    overflow.put(t);
+                    dispatched.await();
                 }
                 catch(InterruptedException e) {
                     log.error(e.getMessage());
                 }
             }
-            if(log.isInfoEnabled()) {
-                log.info("Released from queue:" + t);
-            }
-            t.fireTransferResumed();
         }
-        running.add(t);
+        finally {
+            scheduler.unlock();
+        }
+        if(log.isInfoEnabled()) {
+            log.info("Released from queue:" + t);
+        }
+        t.fireTransferResumed();
     }
 
     /**
      * @param t
      */
     public void remove(final Transfer t) {
-        if(running.remove(t)) {
-            // Transfer has finished.
-            this.poll();
+        scheduler.lock();
+        try {
+            final Integer allocated = running.remove(t);
+            if(null != allocated) {
+                // Transfer has finished.
+                final String host = this.getHost(t);
+                final int count = connections.get(host) - allocated;
+                if(count > 0) {
+                    connections.put(host, count);
+                }
+                else {
+                    connections.remove(host);
+                }
+            }
+            else {
+                // Transfer was still in the queue and has not started yet.
+                waiting.remove(t);
+            }
+            this.dispatch();
+            // Wake up canceled transfers in any case
+            dispatched.signalAll();
         }
-        else {
-            // Transfer was still in the queue and has not started yet.
-            overflow.remove(t);
+        finally {
+            scheduler.unlock();
         }
     }
 
     /**
-     *
+     * Start waiting transfers after the maximum number of transfers has changed
      */
     public void resize() {
         log.debug("resize");
-        int size = running.size();
-        while(size < Preferences.instance().getInteger("queue.maxtransfers")) {
-            if(overflow.isEmpty()) {
-                log.debug("No more waiting transfers in queue");
+        scheduler.lock();
+        try {
+            this.dispatch();
+        }
+        finally {
+            scheduler.unlock();
+        }
+    }
+
+    /**
+     * Move waiting transfers to running as long as slots are available. Must hold the lock.
+     */
+    private void dispatch() {
+        boolean started = false;
+        while(running.size() < Preferences.instance().getInteger("queue.maxtransfers")) {
+            final Transfer next = this.next();
+            if(null == next) {
+                if(log.isDebugEnabled()) {
+                    log.debug("No more waiting transfers eligible to run");
+                }
                 break;
             }
-            this.poll();
-            size++;
+            waiting.remove(next);
+            final int demand = this.getDemand(next);
+            running.put(next, demand);
+            final String host = this.getHost(next);
+            final Integer count = connections.get(host);
+            connections.put(host, (null == count ? 0 : count) + demand);
+            served.put(host, ++sequence);
+            started = true;
+        }
+        if(started) {
+            dispatched.signalAll();
+        }
+    }
+
+    /**
+     * @return The waiting transfer with the highest priority not exceeding the connection
+     *         limit of its host. Among transfers of equal priority the host served least recently
+     *         is preferred. Null if no transfer is eligible to run.
+     */
+    private Transfer next() {
+        Transfer selected = null;
+        long selectedServed = 0;
+        for(Iterator<Transfer> iter = waiting.iterator(); iter.hasNext();) {
+            final Transfer t = iter.next();
+            if(t.isCanceled()) {
+                continue;
+            }
+            if(!this.isEligible(t)) {
+                continue;
+            }
+            final Long last = served.get(this.getHost(t));
+            final long s = null == last ? 0 : last;
+            if(null == selected) {
+                selected = t;
+                selectedServed = s;
+                continue;
+            }
+            final int order = t.getPriority().compareTo(selected.getPriority());
+            if(order > 0 || (order == 0 && s < selectedServed)) {
+                selected = t;
+                selectedServed = s;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @param t Waiting transfer
+     * @return True if starting the transfer does not exceed the maximum number of
+     *         connections to its host. One transfer per host is always allowed to run.
+     */
+    private boolean isEligible(final Transfer t) {
+        final Integer count = connections.get(this.getHost(t));
+        if(null == count) {
+            return true;
+        }
+        final int max = t.getSession().getMaxConnections();
+        if(max <= 0) {
+            return true;
+        }
+        return count + this.getDemand(t) <= max;
+    }
+
+    /**
+     * @param t Transfer
+     * @return Number of connections the transfer opens to its host
+     */
+    private int getDemand(final Transfer t) {
+        // Files downloaded in segments open additional connections each
+        final int segments = t.getSegmentConnections();
+        if(t.getSession().getMaxChannels() > 0) {
+            // Pooled sessions share the connection of the transfer
+            return 1 + segments;
+        }
+        final int connections = t.getConnections();
+        if(connections > 1) {
+            // Pooled sessions in addition to the session used to list directories
+            return 1 + connections * (1 + segments);
         }
+        return 1 + segments;
     }
 
-    private void poll() {
-        log.debug("poll");
-        // Clear space for other transfer from the head of the queue
-        overflow.poll();
+    private String getHost(final Transfer t) {
+        return t.getSession().getHost().toURL();
     }
-}
\ No newline at end of file
+}
@@ -358,6 +358,34 @@ public abstract class Session implements TranscriptListener {
         return host.getMaxConnections();
     }
 
+    /**
+     * @return The maximum number of sessions multiplexed over the connection of this session
+     *         or 0 if additional sessions open their own connection to the host.
+     * @see #createPooledSession()
+     */
+    public int getMaxChannels() {
+        return 0;
+    }
+
+    /**
+     * @return The number of additional connections opened to the host to download a single
+     *         file in segments or 0 if segments are not read on connections of their own.
+     */
+    public int getSegmentConnections() {
+        return 0;
+    }
+
+    /**
+     * Create a session to the same host to run operations concurrently.
+     *
+     * @return A new session sharing the connection of this session if multiplexing is
+     *         supported by the protocol. Otherwise a new session opening its own connection.
+     * @see #getMaxChannels()
+     */
+    public Session createPooledSession() {
+        return SessionFactory.createSession(host);
+    }
+
     /**
      * @return The current working directory (pwd) or null if it cannot be retrieved for whatever reason
      * @throws ConnectionCanceledException If the underlying connection has already been closed before
@@ -435,6 +463,31 @@ public abstract class Session implements TranscriptListener {
         return true;
     }
 
+    /**
+     * Read the size and modification date of multiple files at once. Protocols may
+     * send the requests concurrently or pipelined. Attributes not read are retrieved per
+     * file when needed.
+     *
+     * @param files Files of this session with unknown attributes
+     * @see ch.cyberduck.core.Path#readSize()
+     * @see ch.cyberduck.core.Path#readTimestamp()
+     */
+    public void readAttributes(List<Path> files) {
+        //
+    }
+
+    /**
+     * Read the listings of multiple directories at once into the cache before they are traversed.
+     * Protocols may list the directories concurrently. Directories not listed are listed when
+     * their children are requested.
+     *
+     * @param directories Directories of this session not cached yet
+     * @see ch.cyberduck.core.AbstractPath#children()
+     */
+    public void list(List<Path> directories) {
+        //
+    }
+
     /**
      * @return MD5/ETag available for files.
      */
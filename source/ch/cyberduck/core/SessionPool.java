@@ -0,0 +1,170 @@
+package ch.cyberduck.core;
+
+/*
+ * Copyright (c) 2002-2010 David Kocher. All rights reserved.
+ *
+ * http://cyberduck.ch/
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * Bug fixes, suggestions and comments should be sent to:
+ * dkocher@cyberduck.ch
+ */
+
+import ch.cyberduck.core.threading.BackgroundException;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Additional sessions to the host of a parent session to run operations on multiple
+ * connections concurrently. Sessions are opened lazily up to the pool size and may share
+ * the connection of the parent session if the protocol supports multiplexing. Progress,
+ * transcript and error notifications of pooled sessions are forwarded to the parent session.
+ *
+ * @version $Id$
+ */
+public class SessionPool {
+    private static Logger log = Logger.getLogger(SessionPool.class);
+
+    /**
+     * The session to forward notifications to
+     */
+    private Session parent;
+
+    /**
+     * Maximum number of sessions in this pool
+     */
+    private int size;
+
+    /**
+     * All sessions created so far
+     */
+    private final List<Session> sessions
+            = new ArrayList<Session>();
+
+    /**
+     * Sessions not currently borrowed
+     */
+    private final BlockingQueue<Session> idle
+            = new LinkedBlockingQueue<Session>();
+
+    /**
+     * @param parent The session to clone the host configuration from
+     * @param size   Maximum number of connections to open
+     */
+    public SessionPool(Session parent, int size) {
+        this.parent = parent;
+        this.size = size;
+    }
+
+    /**
+     * @return Maximum number of sessions in this pool
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieve an idle session or create a new one if the maximum number of sessions
+     * is not yet reached. Blocks until a session is released otherwise. The session returned
+     * is not necessarily connected.
+     *
+     * @return A session not used by any other thread
+     * @throws InterruptedException Interrupted while waiting for a session to be released
+     * @see #release(Session)
+     */
+    public Session borrow() throws InterruptedException {
+        Session session = idle.poll();
+        if(null == session) {
+            synchronized(sessions) {
+                if(sessions.size() < size) {
+                    session = this.create();
+                    sessions.add(session);
+                }
+            }
+            if(null == session) {
+                session = idle.take();
+            }
+        }
+        return session;
+    }
+
+    /**
+     * @param session A session previously obtained from #borrow
+     */
+    public void release(Session session) {
+        idle.add(session);
+    }
+
+    /**
+     * @return New session to the host of the parent session
+     */
+    protected Session create() {
+        if(log.isDebugEnabled()) {
+            log.debug("Create session " + (sessions.size() + 1) + " of " + size + " for " + parent);
+        }
+        final Session session = parent.createPooledSession();
+        session.addTranscriptListener(parent);
+        session.addProgressListener(new ProgressListener() {
+            public void message(String message) {
+                parent.message(message);
+            }
+        });
+        session.addErrorListener(new ErrorListener() {
+            public void error(BackgroundException exception) {
+                parent.error(exception);
+            }
+        });
+        return session;
+    }
+
+    /**
+     * Interrupt all open sessions.
+     *
+     * @see Session#interrupt()
+     */
+    public void interrupt() {
+        for(Session session : this.getSessions()) {
+            session.interrupt();
+        }
+    }
+
+    /**
+     * Close all sessions of this pool.
+     */
+    public void close() {
+        for(Session session : this.getSessions()) {
+            if(session.isConnected()) {
+                session.close();
+            }
+        }
+        synchronized(sessions) {
+            sessions.clear();
+        }
+        idle.clear();
+    }
+
+    private Session[] getSessions() {
+        synchronized(sessions) {
+            return sessions.toArray(new Session[sessions.size()]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Session pool for " + parent.toString();
+    }
+}
@@ -0,0 +1,152 @@
+package ch.cyberduck.core;
+
+/*
+ *  Copyright (c) 2010 David Kocher. All rights reserved.
+ *  http://cyberduck.ch/
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Bug fixes, suggestions and comments should be sent to:
+ *  dkocher@cyberduck.ch
+ */
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs requests concurrently, each on a session borrowed from a pool of sessions to the host
+ * of a parent session. The number of requests queued is bounded so that the caller submitting
+ * requests while traversing a directory tree does not run ahead of the workers.
+ *
+ * @version $Id$
+ */
+public class SessionPoolExecutor {
+    private static Logger log = Logger.getLogger(SessionPoolExecutor.class);
+
+    /**
+     * A request to run on a pooled session.
+     */
+    public interface Request {
+        /**
+         * @param session Connected session not used by any other thread
+         * @throws IOException The request failed
+         */
+        void run(Session session) throws IOException;
+    }
+
+    private final SessionPool pool;
+
+    private final ExecutorService workers;
+
+    /**
+     * Limit the number of requests queued
+     */
+    private final Semaphore pending;
+
+    /**
+     * Messages of failed requests
+     */
+    private final List<String> failures
+            = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * @param parent      The session to open additional sessions for
+     * @param connections Number of sessions to run requests on concurrently
+     */
+    public SessionPoolExecutor(Session parent, int connections) {
+        this.pool = new SessionPool(parent, connections);
+        this.workers = Executors.newFixedThreadPool(connections);
+        this.pending = new Semaphore(connections * 2);
+    }
+
+    /**
+     * Blocks while the maximum number of requests is queued.
+     *
+     * @param name    Name of the object the request is run for used in failure messages
+     * @param request The request to run on a pooled session
+     * @throws ConnectionCanceledException Interrupted while waiting to queue the request
+     */
+    public void execute(final String name, final Request request) throws ConnectionCanceledException {
+        try {
+            pending.acquire();
+        }
+        catch(InterruptedException e) {
+            throw new ConnectionCanceledException(e.getMessage());
+        }
+        workers.execute(new Runnable() {
+            public void run() {
+                try {
+                    final Session session = pool.borrow();
+                    try {
+                        session.check();
+                        request.run(session);
+                    }
+                    catch(IOException e) {
+                        failures.add(name + ": " + e.getMessage());
+                    }
+                    catch(RuntimeException e) {
+                        log.error("Request for " + name + " failed:" + e.getMessage(), e);
+                        failures.add(name + ": " + e.getMessage());
+                    }
+                    finally {
+                        pool.release(session);
+                    }
+                }
+                catch(InterruptedException e) {
+                    failures.add(name + ": " + e.getMessage());
+                }
+                finally {
+                    pending.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Wait for all requests queued to finish and close the sessions of the pool. No more
+     * requests can be queued afterwards.
+     *
+     * @throws ConnectionCanceledException Interrupted while waiting. Requests not yet run are
+     *                                     aborted.
+     * @throws IOException                 Any of the requests failed
+     */
+    public void await() throws IOException {
+        workers.shutdown();
+        try {
+            while(!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+                log.debug("Waiting for workers to finish");
+            }
+        }
+        catch(InterruptedException e) {
+            log.warn("Interrupted waiting for workers:" + e.getMessage());
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new ConnectionCanceledException(e.getMessage());
+        }
+        finally {
+            pool.close();
+        }
+        if(!failures.isEmpty()) {
+            for(String failure : failures) {
+                log.warn("Request failed:" + failure);
+            }
+            throw new IOException(failures.size() + " requests failed. " + failures.get(0));
+        }
+    }
+}
@@ -25,6 +25,8 @@ import org.apache.log4j.Logger;
 import java.math.BigDecimal;
 import java.text.MessageFormat;
 import java.text.NumberFormat;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * The Status class is the model of a download's status.
@@ -200,10 +202,82 @@ public class Status {
         this.current = current;
     }
 
-    public void addCurrent(long transferred) {
+    /**
+     * Safe to call from concurrent threads transferring segments of the same file.
+     *
+     * @param transferred Number of bytes to add
+     */
+    public synchronized void addCurrent(long transferred) {
         this.current += transferred;
     }
 
+    /**
+     * Byte ranges of a segmented transfer already completed. Offset mapped to length.
+     */
+    private final Map<Long, Long> segments
+            = new TreeMap<Long, Long>();
+
+    /**
+     * @param offset Start of the byte range
+     * @param length Number of bytes in segment
+     */
+    public void setSegmentComplete(long offset, long length) {
+        synchronized(segments) {
+            segments.put(offset, length);
+        }
+    }
+
+    /**
+     * @param offset Start of the byte range
+     * @return True if the segment starting at the offset has already been transferred
+     */
+    public boolean isSegmentComplete(long offset) {
+        synchronized(segments) {
+            return segments.containsKey(offset);
+        }
+    }
+
+    /**
+     * @return True if any segment of a segmented transfer has been completed
+     */
+    public boolean isSegmented() {
+        synchronized(segments) {
+            return !segments.isEmpty();
+        }
+    }
+
+    /**
+     * @return Completed segments with offset mapped to length
+     */
+    public Map<Long, Long> getSegments() {
+        synchronized(segments) {
+            return new TreeMap<Long, Long>(segments);
+        }
+    }
+
+    /**
+     * @param completed Completed segments with offset mapped to length
+     */
+    public void setSegments(Map<Long, Long> completed) {
+        synchronized(segments) {
+            segments.clear();
+            segments.putAll(completed);
+        }
+    }
+
+    /**
+     * @return Number of bytes in completed segments
+     */
+    public long getSegmentsLength() {
+        long length = 0;
+        synchronized(segments) {
+            for(Long l : segments.values()) {
+                length += l;
+            }
+        }
+        return length;
+    }
+
     /**
      * A state variable to mark this path if the path is explicitly selected
      * for inclusion in the transfer prompt
@@ -233,12 +307,13 @@ public class Status {
     /**
      * Mark this path with an append flag when transfered
      *
-     * @param resume If false, the current status is cleared
+     * @param resume If false, the current status and completed segments are cleared
      * @see #setCurrent(long)
      */
     public void setResume(boolean resume) {
         if(!resume) {
             this.current = 0;
+            this.setSegments(new TreeMap<Long, Long>());
         }
         this.resume = resume;
     }
@@ -36,10 +36,13 @@ public class SyncTransfer extends Transfer {
 
     public SyncTransfer(Path root) {
         super(root);
+        // Bulk synchronization should not hold off other transfers
+        this.setPriority(Priority.LOW);
     }
 
     public <T> SyncTransfer(T dict, Session s) {
         super(dict, s);
+        this.setPriority(Priority.LOW);
     }
 
     @Override
@@ -230,6 +233,7 @@ public class SyncTransfer extends Transfer {
         if(parent.getLocal().exists()) {
             children.addAll(_delegateUpload.children(parent));
         }
+        final List<Path> unknown = new ArrayList<Path>();
         for(Path child : children) {
             if(child.getSession().isTimestampSupported()) {
                 if(child instanceof FTPPath) {
@@ -237,6 +241,17 @@ public class SyncTransfer extends Transfer {
                     child.readTimestamp();
                 }
             }
+            if(child.attributes().isFile()) {
+                if(-1 == child.attributes().getSize() || -1 == child.attributes().getModificationDate()) {
+                    if(child.exists()) {
+                        unknown.add(child);
+                    }
+                }
+            }
+        }
+        if(!unknown.isEmpty()) {
+            // Fetch missing attributes in bulk before comparing
+            parent.getSession().readAttributes(unknown);
         }
         return new AttributedList<Path>(children);
     }
@@ -32,6 +32,11 @@ import org.apache.log4j.Logger;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @version $Id$
@@ -47,12 +52,12 @@ public abstract class Transfer implements Serializable {
     /**
      * The sum of the file length of all files in the <code>queue</code>
      */
-    protected double size = 0;
+    protected volatile double size = 0;
 
     /**
      * The number bytes already transferred of the ifles in the <code>queue</code>
      */
-    protected double transferred = 0;
+    protected volatile double transferred = 0;
 
     /**
      * The transfer has been canceled and should
@@ -94,6 +99,32 @@ public abstract class Transfer implements Serializable {
         return queued;
     }
 
+    /**
+     * Scheduling priority in the transfer queue
+     */
+    public enum Priority {
+        LOW,
+        NORMAL,
+        HIGH
+    }
+
+    private Priority priority = Priority.NORMAL;
+
+    /**
+     * @return Order in which waiting transfers are started by the queue
+     * @see Queue
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * @param priority Order in which waiting transfers are started by the queue
+     */
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+
     private Session session;
 
     /**
@@ -432,6 +463,62 @@ public abstract class Transfer implements Serializable {
      */
     private Path _current = null;
 
+    /**
+     * Additional connections to transfer files concurrently. Null if files are transferred
+     * sequentially using the session of this transfer.
+     */
+    private volatile SessionPool pool;
+
+    /**
+     * Worker threads transferring files using sessions from the pool
+     */
+    private ExecutorService workers;
+
+    /**
+     * Limit the number of files submitted to the workers but not yet transferred
+     */
+    private Semaphore pending;
+
+    /**
+     * Copies of files currently transferred by the workers
+     */
+    private final Set<Path> transferring
+            = Collections.synchronizedSet(new HashSet<Path>());
+
+    /**
+     * Directories with their children in the order traversed. Completion of directories
+     * can only be determined after all workers have finished.
+     */
+    private final Map<Path, AttributedList<Path>> directories
+            = new LinkedHashMap<Path, AttributedList<Path>>();
+
+    /**
+     * @return The number of connections to use to transfer files concurrently.
+     */
+    protected int getConnections() {
+        int connections = Preferences.instance().getInteger("queue.transfer.connections");
+        final int channels = this.getSession().getMaxChannels();
+        if(channels > 0) {
+            // Pooled sessions are channels over the connection of this session
+            return Math.min(connections, channels - 1);
+        }
+        final int max = this.getSession().getMaxConnections();
+        if(max > 0) {
+            // The session of this transfer is used to list directories
+            connections = Math.min(connections, (max - 1) / (1 + this.getSegmentConnections()));
+        }
+        return connections;
+    }
+
+    /**
+     * @return The number of additional connections opened for every file transferred
+     *         to download it in segments.
+     * @see Session#getSegmentConnections()
+     */
+    protected int getSegmentConnections() {
+        return 0;
+    }
+
     /**
      * @param p
      * @param filter
@@ -450,18 +537,29 @@ public abstract class Transfer implements Serializable {
         }
 
         if(filter.accept(p)) {
-            // Notification
-            this.fireWillTransferPath(p);
-            _current = p;
-            // Reset transfer status
-            p.status().reset();
-            // Transfer
-            transfer(p);
-            // Post process of file
-            filter.complete(p);
-            _current = null;
-            // Notification
-            this.fireDidTransferPath(p);
+            if(pipelined) {
+                // Prepare just before the transfer instead of in advance for all files
+                this.getSession().message(MessageFormat.format(Locale.localizedString("Prepare {0}", "Status"), p.getName()));
+                filter.prepare(p);
+            }
+            if(null != pool && p.attributes().isFile()) {
+                // Transfer using the next free connection
+                this.submit(p, filter);
+            }
+            else {
+                // Notification
+                this.fireWillTransferPath(p);
+                _current = p;
+                // Reset transfer status
+                p.status().reset();
+                // Transfer
+                transfer(p);
+                // Post process of file
+                filter.complete(p);
+                _current = null;
+                // Notification
+                this.fireDidTransferPath(p);
+            }
         }
 
         if(!this.check()) {
@@ -470,24 +568,158 @@ public abstract class Transfer implements Serializable {
 
         if(p.attributes().isDirectory()) {
             p.status().reset();
-            boolean failure = false;
             final AttributedList<Path> children = this.children(p);
-            if(!children.attributes().isReadable()) {
-                failure = true;
-            }
             for(Path child : children) {
                 this.transfer(child, filter);
-                if(!child.status().isComplete()) {
-                    failure = true;
-                }
             }
-            if(!failure) {
-                p.status().setComplete(true);
+            if(null == pool) {
+                this.complete(p, children);
+            }
+            else {
+                // Children may still be transferred
+                synchronized(directories) {
+                    directories.put(p, children);
+                }
             }
             this.cache().remove(p.getReference());
         }
     }
 
+    /**
+     * Mark directory as complete if all of its children are complete
+     *
+     * @param directory Directory
+     * @param children  Children of the directory included in the transfer
+     */
+    private void complete(final Path directory, final AttributedList<Path> children) {
+        boolean failure = false;
+        if(!children.attributes().isReadable()) {
+            failure = true;
+        }
+        for(Path child : children) {
+            if(!child.status().isComplete()) {
+                failure = true;
+            }
+        }
+        if(!failure) {
+            directory.status().setComplete(true);
+        }
+    }
+
+    /**
+     * Queue file to be transferred by the next idle worker. Blocks if too many
+     * files are already waiting to be transferred.
+     *
+     * @param p      File to transfer
+     * @param filter Transfer filter
+     */
+    private void submit(final Path p, final TransferFilter filter) {
+        try {
+            pending.acquire();
+        }
+        catch(InterruptedException e) {
+            log.warn("Interrupted while queuing " + p + ":" + e.getMessage());
+            this.cancel();
+            return;
+        }
+        workers.execute(new Runnable() {
+            public void run() {
+                try {
+                    if(!Transfer.this.check()) {
+                        return;
+                    }
+                    transfer(p, filter, pool);
+                }
+                finally {
+                    pending.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Transfer file on a connection borrowed from the pool. The file is copied to the
+     * pooled session and its status is updated when the transfer is finished.
+     *
+     * @param p      File to transfer
+     * @param filter Transfer filter
+     * @param pool   Sessions to borrow from
+     */
+    private void transfer(final Path p, final TransferFilter filter, final SessionPool pool) {
+        final Session session;
+        try {
+            session = pool.borrow();
+        }
+        catch(InterruptedException e) {
+            log.warn("Interrupted while waiting for connection to transfer " + p + ":" + e.getMessage());
+            this.cancel();
+            return;
+        }
+        try {
+            session.check();
+            final Path copy = PathFactory.createPath(session, p.getAsDictionary());
+            // Not all attributes are serialized
+            copy.setAttributes(p.attributes());
+            // Resume status is not serialized
+            copy.status().setResume(p.status().isResume());
+            copy.status().setCurrent(p.status().getCurrent());
+            transferring.add(copy);
+            this.fireWillTransferPath(p);
+            try {
+                // Reset transfer status
+                p.status().reset();
+                if(!this.isCanceled()) {
+                    transfer(copy);
+                    // Post process of file
+                    filter.complete(copy);
+                }
+            }
+            finally {
+                transferring.remove(copy);
+                p.status().setCurrent(copy.status().getCurrent());
+                p.status().setSegments(copy.status().getSegments());
+                p.status().setComplete(copy.status().isComplete());
+                this.fireDidTransferPath(p);
+            }
+        }
+        catch(IOException e) {
+            // Opening connection failed. Already reported to error listeners
+            log.warn(e.getMessage());
+        }
+        catch(RuntimeException e) {
+            log.error("Transfer of " + p + " failed:" + e.getMessage(), e);
+            p.status().setComplete(false);
+            session.error(p, "Transfer incomplete", e);
+        }
+        finally {
+            pool.release(session);
+        }
+    }
+
+    /**
+     * Wait for all workers to finish and determine the completion status of all directories.
+     */
+    private void await() {
+        workers.shutdown();
+        try {
+            while(!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+                log.debug("Waiting for workers to finish");
+            }
+        }
+        catch(InterruptedException e) {
+            log.error(e.getMessage());
+        }
+        synchronized(directories) {
+            // Children are traversed before their parent directory
+            final List<Path> keys = new ArrayList<Path>(directories.keySet());
+            for(ListIterator<Path> iter = keys.listIterator(keys.size()); iter.hasPrevious();) {
+                final Path directory = iter.previous();
+                this.complete(directory, directories.get(directory));
+            }
+            directories.clear();
+        }
+    }
+
     /**
      * The actual transfer implementation
      *
@@ -551,14 +783,43 @@ public abstract class Transfer implements Serializable {
             // Reset the cached size of the transfer and progress value
             this.reset();
 
-            // Calculate information about the files in advance to give progress information
-            for(Path next : roots) {
-                this.prepare(next, filter);
+            pipelined = Preferences.instance().getBoolean("queue.transfer.pipeline");
+            if(!pipelined) {
+                // Calculate information about the files in advance to give progress information
+                for(Path next : roots) {
+                    this.prepare(next, filter);
+                }
             }
 
-            // Transfer all files sequentially
-            for(Path next : roots) {
-                this.transfer(next, filter);
+            final int connections = this.getConnections();
+            if(connections > 1) {
+                if(log.isInfoEnabled()) {
+                    log.info("Transfer files concurrently using " + connections + " connections");
+                }
+                pool = new SessionPool(session, connections);
+                workers = Executors.newFixedThreadPool(connections, new ThreadFactory() {
+                    private int threadCount = 1;
+
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r);
+                        thread.setName("transfer-" + threadCount++);
+                        return thread;
+                    }
+                });
+                pending = new Semaphore(connections * 2);
+            }
+            try {
+                // Transfer all files sequentially or queue for workers
+                for(Path next : roots) {
+                    this.transfer(next, filter);
+                }
+            }
+            finally {
+                if(null != pool) {
+                    this.await();
+                    pool.close();
+                    pool = null;
+                }
             }
         }
         finally {
@@ -569,6 +830,12 @@ public abstract class Transfer implements Serializable {
         }
     }
 
+    /**
+     * Prepare files while traversing the directory tree for the transfer. The size
+     * of the transfer is only known when all files have been transferred.
+     */
+    private boolean pipelined;
+
     /**
      * To be called before any file is actually transferred
      *
@@ -699,6 +966,9 @@ public abstract class Transfer implements Serializable {
             log.debug("interrupt:" + this);
         }
         this.getSession().interrupt();
+        if(null != pool) {
+            pool.interrupt();
+        }
     }
 
     /**
@@ -713,6 +983,11 @@ public abstract class Transfer implements Serializable {
         if(_current != null) {
             _current.status().setCanceled();
         }
+        synchronized(transferring) {
+            for(Path copy : transferring) {
+                copy.status().setCanceled();
+            }
+        }
         if(this.isCanceled()) {
             // Called prevously; now force
             this.interrupt();
@@ -768,7 +1043,8 @@ public abstract class Transfer implements Serializable {
     }
 
     /**
-     * @return The sum of all file lengths in this transfer.
+     * @return The sum of all file lengths in this transfer. When preparing files
+     *         while transferring, an estimate growing with every file prepared.
      */
     public double getSize() {
         return size;
@@ -788,4 +1064,13 @@ public abstract class Transfer implements Serializable {
     public void setTransferred(double transferred) {
         this.transferred = transferred;
     }
+
+    /**
+     * Safe to call from concurrent workers.
+     *
+     * @param bytes Number of bytes transferred to add to the total
+     */
+    protected synchronized void addTransferred(long bytes) {
+        this.transferred += bytes;
+    }
 }
\ No newline at end of file
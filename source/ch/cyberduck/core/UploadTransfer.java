@@ -20,7 +20,7 @@ package ch.cyberduck.core;
  */
 
 import ch.cyberduck.core.i18n.Locale;
-import ch.cyberduck.core.io.BandwidthThrottle;
+import ch.cyberduck.core.io.BandwidthShaper;
 import ch.cyberduck.core.serializer.Serializer;
 import ch.cyberduck.ui.DateFormatterFactory;
 import ch.cyberduck.ui.growl.Growl;
@@ -64,7 +64,11 @@ public class UploadTransfer extends Transfer {
     @Override
     protected void init() {
         log.debug("init");
-        this.bandwidth = new BandwidthThrottle(
+        final BandwidthShaper shaper = BandwidthShaper.upload();
+        shaper.setRate(Preferences.instance().getFloat("queue.upload.bandwidth.global.bytes"));
+        shaper.setHostRate(Preferences.instance().getFloat("queue.upload.bandwidth.host.bytes"));
+        // Limited additionally by all other transfers to the same host and in total
+        this.bandwidth = shaper.create(this.getSession().getHost().toURL(),
                 Preferences.instance().getFloat("queue.upload.bandwidth.bytes"));
     }
 
@@ -161,7 +165,7 @@ public class UploadTransfer extends Transfer {
                     // Read file size
                     size += file.getLocal().attributes().getSize();
                     if(file.status().isResume()) {
-                        transferred += file.attributes().getSize();
+                        addTransferred(file.attributes().getSize());
                     }
                 }
             }
@@ -518,7 +522,7 @@ public class UploadTransfer extends Transfer {
             file.upload(bandwidth, new AbstractStreamListener() {
                 @Override
                 public void bytesSent(long bytes) {
-                    transferred += bytes;
+                    addTransferred(bytes);
                 }
             });
             if(file.status().isComplete()) {
@@ -320,24 +320,47 @@ public class AzurePath extends CloudPath {
                     }
                 }
                 else {
-                    IBlobContainer container = this.getSession().getContainer(this.getContainerName());
-                    final Iterator<IBlobProperties> blobs = container.listBlobs(this.getKey(), true);
-                    while(blobs.hasNext()) {
-                        final IBlobProperties object = blobs.next();
-                        final Path file = PathFactory.createPath(this.getSession(), this.getContainerName(), object.getName(),
-                                "application/directory".equals(object.getContentType()) ? Path.DIRECTORY_TYPE : Path.FILE_TYPE);
-                        if(file.getParent().equals(this)) {
+                    final AzureSession.AzureContainer container = this.getSession().getContainer(this.getContainerName());
+                    // Only list the direct children of this directory
+                    final String delimiter = String.valueOf(Path.DELIMITER);
+                    final String prefix = this.isContainer() ? null : this.getKey() + delimiter;
+                    // Names of placeholder blobs for directories
+                    final Set<String> placeholders = new HashSet<String>();
+                    String marker = null;
+                    do {
+                        final AzureSession.BlobListing listing = container.listBlobs(prefix, delimiter, marker,
+                                Preferences.instance().getInteger("azure.listing.chunksize"));
+                        for(IBlobProperties object : listing.getBlobs()) {
+                            final Path file = PathFactory.createPath(this.getSession(), this.getContainerName(), object.getName(),
+                                    "application/directory".equals(object.getContentType()) ? Path.DIRECTORY_TYPE : Path.FILE_TYPE);
                             file.setParent(this);
                             file.attributes().setSize(object.getContentLength());
                             file.attributes().setChecksum(object.getETag());
-                            file.attributes().setModificationDate(object.getLastModifiedTime().getTime());
+                            if(null != object.getLastModifiedTime()) {
+                                file.attributes().setModificationDate(object.getLastModifiedTime().getTime());
+                            }
                             file.attributes().setOwner(this.attributes().getOwner());
                             if(file.attributes().isDirectory()) {
                                 file.attributes().setPlaceholder(true);
+                                placeholders.add(object.getName());
                             }
                             children.add(file);
                         }
+                        for(String common : listing.getPrefixes()) {
+                            final String name = StringUtils.removeEnd(common, delimiter);
+                            if(placeholders.contains(name)) {
+                                continue;
+                            }
+                            // Virtual directory without placeholder blob
+                            final Path directory = PathFactory.createPath(this.getSession(), this.getContainerName(), name,
+                                    Path.DIRECTORY_TYPE);
+                            directory.setParent(this);
+                            directory.attributes().setOwner(this.attributes().getOwner());
+                            children.add(directory);
+                        }
+                        marker = listing.getMarker();
                     }
+                    while(marker != null);
                 }
                 this.getSession().setWorkdir(this);
             }
@@ -692,12 +715,23 @@ public class AzurePath extends CloudPath {
                 }
             }
             else if(this.attributes().isDirectory()) {
-                for(AbstractPath i : this.children()) {
-                    if(!this.getSession().isConnected()) {
-                        break;
+                final int connections = Preferences.instance().getInteger("cloud.copy.connections");
+                if(connections > 1) {
+                    try {
+                        this.copy((AzurePath) copy, connections);
+                    }
+                    catch(IOException e) {
+                        this.error("Cannot copy {0}", e);
+                    }
+                }
+                else {
+                    for(AbstractPath i : this.children()) {
+                        if(!this.getSession().isConnected()) {
+                            break;
+                        }
+                        i.copy(PathFactory.createPath(this.getSession(), copy.getAbsolute(),
+                                i.getName(), i.attributes().getType()));
                     }
-                    i.copy(PathFactory.createPath(this.getSession(), copy.getAbsolute(),
-                            i.getName(), i.attributes().getType()));
                 }
             }
             // The directory listing is no more current
@@ -709,6 +743,46 @@ public class AzurePath extends CloudPath {
         }
     }
 
+    /**
+     * Copy all blobs below this directory concurrently with pooled sessions.
+     *
+     * @param destination Target directory
+     * @param connections Number of sessions to send copy requests on
+     * @throws IOException Copying any of the blobs failed
+     */
+    private void copy(final AzurePath destination, final int connections) throws IOException {
+        final SessionPoolExecutor executor = new SessionPoolExecutor(this.getSession(), connections);
+        try {
+            this.copy(this, destination, executor);
+        }
+        finally {
+            executor.await();
+        }
+    }
+
+    private void copy(final AzurePath directory, final AzurePath destination,
+                      final SessionPoolExecutor executor) throws ConnectionCanceledException {
+        for(AbstractPath c : directory.children()) {
+            if(!this.getSession().isConnected()) {
+                throw new ConnectionCanceledException();
+            }
+            final AzurePath child = (AzurePath) c;
+            final String target = destination.getAbsolute();
+            if(child.attributes().isDirectory()) {
+                this.copy(child, (AzurePath) PathFactory.createPath(this.getSession(), target,
+                        child.getName(), child.attributes().getType()), executor);
+                continue;
+            }
+            executor.execute(child.getKey(), new SessionPoolExecutor.Request() {
+                public void run(Session session) throws IOException {
+                    final Path source = PathFactory.createPath(session, child.getAbsolute(), child.attributes().getType());
+                    source.attributes().setMetadata(child.attributes().getMetadata());
+                    source.copy(PathFactory.createPath(session, target, child.getName(), child.attributes().getType()));
+                }
+            });
+        }
+    }
+
     @Override
     public String toURL() {
         try {
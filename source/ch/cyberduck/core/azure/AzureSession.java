@@ -26,6 +26,8 @@ import ch.cyberduck.core.i18n.Locale;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.*;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 import org.dom4j.Document;
@@ -169,6 +171,38 @@ public class AzureSession extends CloudHTTP4Session {
         }
     }
 
+    /**
+     * One page of a blob listing using a delimiter
+     */
+    protected static class BlobListing {
+        private final List<BlobProperties> blobs = new ArrayList<BlobProperties>();
+
+        private final List<String> prefixes = new ArrayList<String>();
+
+        private String marker;
+
+        /**
+         * @return Blobs with names not containing the delimiter after the prefix
+         */
+        public List<BlobProperties> getBlobs() {
+            return blobs;
+        }
+
+        /**
+         * @return Common prefixes up to and including the delimiter of all other blobs
+         */
+        public List<String> getPrefixes() {
+            return prefixes;
+        }
+
+        /**
+         * @return Continuation marker for the next page or null if this is the last page
+         */
+        public String getMarker() {
+            return marker;
+        }
+    }
+
     /**
      * Caching the uses's buckets
      */
@@ -363,6 +397,106 @@ public class AzureSession extends CloudHTTP4Session {
                     blobUri, httpMethod, getTimeout());
         }
 
+        /**
+         * List the blobs of this container rolling up blobs with names containing the
+         * delimiter after the prefix into a common prefix.
+         *
+         * @param prefix     Prefix including the trailing delimiter or null for the root of the container
+         * @param delimiter  Delimiter for virtual directories
+         * @param marker     Continuation marker of the previous page or null for the first page
+         * @param maxResults Maximum number of blobs and prefixes in a page
+         * @return One page of the listing
+         * @throws StorageException
+         */
+        public BlobListing listBlobs(final String prefix, final String delimiter, final String marker,
+                                     final int maxResults) throws StorageException {
+            try {
+                return (BlobListing) getRetryPolicy().execute(
+                        new Callable<BlobListing>() {
+                            public BlobListing call() throws Exception {
+                                NameValueCollection queryParams = new NameValueCollection();
+                                queryParams.put(QueryParams.QueryRestType, CompConstants.Container);
+                                queryParams.put(QueryParams.QueryParamComp, "list");
+                                if(StringUtils.isNotEmpty(prefix)) {
+                                    queryParams.put("prefix", prefix);
+                                }
+                                queryParams.put("delimiter", delimiter);
+                                if(StringUtils.isNotEmpty(marker)) {
+                                    queryParams.put("marker", marker);
+                                }
+                                queryParams.put("maxresults", String.valueOf(maxResults));
+
+                                ResourceUriComponents uriComponents = new ResourceUriComponents(
+                                        getAccountName(), getContainerName(), null);
+                                URI uri = HttpUtilities.createRequestUri(
+                                        getBaseUri(), isUsePathStyleUris(),
+                                        getAccountName(), getContainerName(), null,
+                                        getTimeout(), queryParams, uriComponents);
+                                HttpRequest request = HttpUtilities
+                                        .createHttpRequestWithCommonHeaders(uri,
+                                                HttpMethod.Get, getTimeout());
+                                // Properties of blobs are nested in a Properties element
+                                request.addHeader(HeaderNames.ApiVersion, "2009-09-19");
+
+                                getClient().getCredentials().signRequest(request, uriComponents);
+                                HttpWebResponse response = new HttpWebResponse(http().execute((HttpUriRequest) request));
+                                if(response.getStatusCode() == HttpStatus.SC_OK) {
+                                    return getBlobListingFromResponse(response);
+                                }
+                                HttpUtilities.processUnexpectedStatusCode(response);
+                                return null;
+                            }
+                        });
+            }
+            catch(Exception e) {
+                throw HttpUtilities.translateWebException(e);
+            }
+        }
+
+        private BlobListing getBlobListingFromResponse(HttpWebResponse response) throws StorageException {
+            final BlobListing listing = new BlobListing();
+            InputStream stream = response.getStream();
+            if(stream == null) {
+                return listing;
+            }
+            Document doc = XmlUtil.load(stream, "Blob listing parsed error.");
+            Element root = doc.getRootElement();
+            Element blobs = root.element("Blobs");
+            if(blobs != null) {
+                for(Object b : blobs.elements("Blob")) {
+                    Element blob = (Element) b;
+                    BlobProperties properties = new BlobProperties(blob.elementText("Name"));
+                    Element p = blob.element("Properties");
+                    if(p != null) {
+                        properties.setContentType(p.elementText("Content-Type"));
+                        properties.setETag(p.elementText("Etag"));
+                        String length = p.elementText("Content-Length");
+                        if(StringUtils.isNotBlank(length)) {
+                            properties.setContentLength(Long.parseLong(length));
+                        }
+                        String modified = p.elementText("Last-Modified");
+                        if(StringUtils.isNotBlank(modified)) {
+                            try {
+                                properties.setLastModifiedTime(new Timestamp(DateUtils.parseDate(modified).getTime()));
+                            }
+                            catch(DateParseException e) {
+                                log.warn("Failure parsing timestamp:" + e.getMessage());
+                            }
+                        }
+                    }
+                    listing.blobs.add(properties);
+                }
+                for(Object p : blobs.elements("BlobPrefix")) {
+                    listing.prefixes.add(((Element) p).elementText("Name"));
+                }
+            }
+            String next = root.elementText("NextMarker");
+            if(StringUtils.isNotEmpty(next)) {
+                listing.marker = next;
+            }
+            return listing;
+        }
+
         @Override
         public ContainerAccessControl getContainerAccessControl()
                 throws StorageException {
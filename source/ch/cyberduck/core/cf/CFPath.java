@@ -491,11 +491,17 @@ public class CFPath extends CloudPath {
                 this.getSession().getClient().deleteObject(container, this.getKey());
             }
             else if(attributes().isDirectory()) {
-                for(AbstractPath i : this.children()) {
-                    if(!this.getSession().isConnected()) {
-                        break;
+                final int connections = Preferences.instance().getInteger("cf.delete.connections");
+                if(connections > 1) {
+                    this.delete(container, connections);
+                }
+                else {
+                    for(AbstractPath i : this.children()) {
+                        if(!this.getSession().isConnected()) {
+                            break;
+                        }
+                        i.delete();
                     }
-                    i.delete();
                 }
                 this.getSession().message(MessageFormat.format(Locale.localizedString("Deleting {0}", "Status"),
                         this.getName()));
@@ -523,6 +529,55 @@ public class CFPath extends CloudPath {
         }
     }
 
+    /**
+     * Delete all objects below this directory concurrently. There is no API to delete
+     * multiple objects with a single request.
+     *
+     * @param container   Container name
+     * @param connections Number of sessions to send delete requests on
+     * @throws IOException Deleting any of the objects failed
+     */
+    private void delete(final String container, final int connections) throws IOException {
+        final SessionPoolExecutor executor = new SessionPoolExecutor(this.getSession(), connections);
+        try {
+            this.delete(container, this, executor);
+        }
+        finally {
+            executor.await();
+        }
+    }
+
+    private void delete(final String container, final CFPath directory, final SessionPoolExecutor executor)
+            throws ConnectionCanceledException {
+        for(AbstractPath c : directory.children()) {
+            if(!this.getSession().isConnected()) {
+                throw new ConnectionCanceledException();
+            }
+            final CFPath child = (CFPath) c;
+            if(child.attributes().isDirectory()) {
+                this.delete(container, child, executor);
+            }
+            this.getSession().message(MessageFormat.format(Locale.localizedString("Deleting {0}", "Status"),
+                    child.getName()));
+            final String key = child.getKey();
+            executor.execute(key, new SessionPoolExecutor.Request() {
+                public void run(Session session) throws IOException {
+                    try {
+                        ((CFSession) session).getClient().deleteObject(container, key);
+                    }
+                    catch(FilesNotFoundException e) {
+                        // No real placeholder but just a delmiter returned in the object listing.
+                        log.warn(e.getMessage());
+                    }
+                    catch(HttpException e) {
+                        throw new IOException(e.getMessage());
+                    }
+                }
+            });
+        }
+        directory.invalidate();
+    }
+
     /**
      * @return Modifiable HTTP header metatdata key and values
      */
@@ -571,7 +626,158 @@ public class CFPath extends CloudPath {
 
     @Override
     public void rename(AbstractPath renamed) {
-        throw new UnsupportedOperationException();
+        try {
+            this.getSession().check();
+            this.getSession().message(MessageFormat.format(Locale.localizedString("Renaming {0} to {1}", "Status"),
+                    this.getName(), renamed));
+
+            this.copy((CFPath) renamed, true);
+            // The directory listing of the target is no more current
+            renamed.getParent().invalidate();
+            // The directory listing of the source is no more current
+            this.getParent().invalidate();
+        }
+        catch(HttpException e) {
+            this.error("Cannot rename {0}", e);
+        }
+        catch(IOException e) {
+            this.error("Cannot rename {0}", e);
+        }
+    }
+
+    @Override
+    public void copy(AbstractPath copy) {
+        if(((Path) copy).getSession().equals(this.getSession())) {
+            // Copy on same server
+            try {
+                this.getSession().check();
+                this.getSession().message(MessageFormat.format(Locale.localizedString("Copying {0} to {1}", "Status"),
+                        this.getName(), copy));
+
+                this.copy((CFPath) copy, false);
+                // The directory listing is no more current
+                copy.getParent().invalidate();
+            }
+            catch(HttpException e) {
+                this.error("Cannot copy {0}", e);
+            }
+            catch(IOException e) {
+                this.error("Cannot copy {0}", e);
+            }
+        }
+        else {
+            // Copy to different host
+            super.copy(copy);
+        }
+    }
+
+    /**
+     * Server side copy of this file or of all objects below this directory.
+     *
+     * @param destination Target in the same account
+     * @param move        Delete the original after it has been copied
+     * @throws HttpException Server returned failure
+     * @throws IOException   Copying any of the objects failed
+     */
+    private void copy(final CFPath destination, final boolean move) throws IOException, HttpException {
+        if(attributes().isFile()) {
+            copy(this.getSession(), this.getContainerName(), this.getKey(),
+                    destination.getContainerName(), destination.getKey(), move);
+        }
+        else if(attributes().isDirectory()) {
+            // Placeholder or container of the copy
+            destination.mkdir();
+            final int connections = Preferences.instance().getInteger("cloud.copy.connections");
+            if(connections > 1) {
+                final SessionPoolExecutor executor = new SessionPoolExecutor(this.getSession(), connections);
+                try {
+                    this.copy(this, destination, move, executor);
+                }
+                finally {
+                    executor.await();
+                }
+            }
+            else {
+                for(AbstractPath i : this.children()) {
+                    if(!this.getSession().isConnected()) {
+                        break;
+                    }
+                    ((CFPath) i).copy((CFPath) PathFactory.createPath(this.getSession(), destination.getAbsolute(),
+                            i.getName(), i.attributes().getType()), move);
+                }
+            }
+            if(move && !this.isContainer()) {
+                deletePlaceholder(this.getSession(), this.getContainerName(), this.getKey());
+            }
+        }
+    }
+
+    private void copy(final CFPath directory, final CFPath destination, final boolean move,
+                      final SessionPoolExecutor executor) throws ConnectionCanceledException {
+        for(AbstractPath c : directory.children()) {
+            if(!this.getSession().isConnected()) {
+                throw new ConnectionCanceledException();
+            }
+            final CFPath child = (CFPath) c;
+            final CFPath target = (CFPath) PathFactory.createPath(this.getSession(), destination.getAbsolute(),
+                    child.getName(), child.attributes().getType());
+            final String container = child.getContainerName();
+            final String key = child.getKey();
+            if(child.attributes().isDirectory()) {
+                target.mkdir();
+                this.copy(child, target, move, executor);
+                if(move) {
+                    executor.execute(key, new SessionPoolExecutor.Request() {
+                        public void run(Session session) throws IOException {
+                            try {
+                                deletePlaceholder((CFSession) session, container, key);
+                            }
+                            catch(HttpException e) {
+                                throw new IOException(e.getMessage());
+                            }
+                        }
+                    });
+                }
+                continue;
+            }
+            this.getSession().message(MessageFormat.format(Locale.localizedString("Copying {0} to {1}", "Status"),
+                    child.getName(), target));
+            final String targetContainer = target.getContainerName();
+            final String targetKey = target.getKey();
+            executor.execute(key, new SessionPoolExecutor.Request() {
+                public void run(Session session) throws IOException {
+                    try {
+                        copy((CFSession) session, container, key, targetContainer, targetKey, move);
+                    }
+                    catch(HttpException e) {
+                        throw new IOException(e.getMessage());
+                    }
+                }
+            });
+        }
+        directory.invalidate();
+    }
+
+    /**
+     * @param session Session to send the requests with
+     * @param move    Delete the original after it has been copied
+     */
+    private static void copy(CFSession session, String container, String key,
+                             String targetContainer, String targetKey, boolean move) throws IOException, HttpException {
+        session.copyObject(container, key, targetContainer, targetKey);
+        if(move) {
+            session.getClient().deleteObject(container, key);
+        }
+    }
+
+    private static void deletePlaceholder(CFSession session, String container, String key) throws IOException, HttpException {
+        try {
+            session.getClient().deleteObject(container, key);
+        }
+        catch(FilesNotFoundException e) {
+            // No real placeholder but just a delmiter returned in the object listing.
+            log.warn(e.getMessage());
+        }
     }
 
     @Override
@@ -28,11 +28,16 @@ import ch.cyberduck.core.ssl.AbstractX509TrustManager;
 import ch.cyberduck.core.ssl.KeychainX509TrustManager;
 
 import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 
 import com.rackspacecloud.client.cloudfiles.FilesCDNContainer;
 import com.rackspacecloud.client.cloudfiles.FilesClient;
 import com.rackspacecloud.client.cloudfiles.FilesException;
+import com.rackspacecloud.client.cloudfiles.FilesNotFoundException;
 
 import java.io.IOException;
 import java.net.URI;
@@ -224,13 +229,48 @@ public class CFSession extends CloudHTTP4Session {
     }
 
     /**
-     * Renaming is not currently supported
+     * Renaming is a server side copy followed by a delete of the original
      *
-     * @return Always false
+     * @return False for containers
      */
     @Override
     public boolean isRenameSupported(Path file) {
-        return false;
+        return !file.attributes().isVolume();
+    }
+
+    /**
+     * Server side copy of an object with a PUT request referencing the original in the
+     * <code>X-Copy-From</code> header. The data is not transferred through the client and
+     * the metadata of the original is retained.
+     *
+     * @param sourceContainer      Container of the original
+     * @param sourceKey            Object name of the original
+     * @param destinationContainer Container of the copy
+     * @param destinationKey       Object name of the copy
+     * @throws HttpException Server returned failure
+     * @throws IOException   I/O failure
+     */
+    protected void copyObject(String sourceContainer, String sourceKey,
+                              String destinationContainer, String destinationKey) throws IOException, HttpException {
+        final FilesClient client = this.getClient();
+        final HttpPut method = new HttpPut(client.getStorageURL() + "/" + FilesClient.sanitizeForURI(destinationContainer)
+                + "/" + FilesClient.sanitizeAndPreserveSlashes(destinationKey));
+        method.setHeader("X-Auth-Token", client.getStorageToken());
+        method.setHeader("X-Copy-From", "/" + FilesClient.sanitizeForURI(sourceContainer)
+                + "/" + FilesClient.sanitizeAndPreserveSlashes(sourceKey));
+        final HttpResponse response = this.http().execute(method);
+        try {
+            final int status = response.getStatusLine().getStatusCode();
+            if(status == HttpStatus.SC_NOT_FOUND) {
+                throw new FilesNotFoundException("Object not found", response.getAllHeaders(), response.getStatusLine());
+            }
+            if(status != HttpStatus.SC_CREATED) {
+                throw new FilesException("Unexpected return from server", response.getAllHeaders(), response.getStatusLine());
+            }
+        }
+        finally {
+            EntityUtils.consume(response.getEntity());
+        }
     }
 
     /**
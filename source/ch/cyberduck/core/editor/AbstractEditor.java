@@ -160,6 +160,8 @@ public abstract class AbstractEditor {
                         return TransferAction.ACTION_OVERWRITE;
                     }
                 };
+                // Saving an edited file is interactive and should not wait for bulk transfers
+                upload.setPriority(Transfer.Priority.HIGH);
                 upload.start(new TransferPrompt() {
                     public TransferAction prompt() {
                         return TransferAction.ACTION_OVERWRITE;
@@ -20,6 +20,8 @@ package ch.cyberduck.core.ftp;
  */
 
 import ch.cyberduck.core.Preferences;
+import ch.cyberduck.core.ssl.SSLHandshakeCounter;
+import ch.cyberduck.core.ssl.SessionResumingSocketFactory;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.net.ftp.FTPCommand;
@@ -27,13 +29,20 @@ import org.apache.commons.net.ftp.FTPReply;
 import org.apache.commons.net.ftp.FTPSClient;
 import org.apache.log4j.Logger;
 
+import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocket;
 import java.io.*;
+import java.net.InetAddress;
 import java.net.Socket;
-import java.security.NoSuchAlgorithmException;
+import java.net.SocketException;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
  * @version $Id:$
@@ -41,8 +50,17 @@ import java.util.regex.Pattern;
 public class FTPClient extends FTPSClient {
     private static Logger log = Logger.getLogger(FTPSession.class);
 
-    public FTPClient() throws NoSuchAlgorithmException {
-        super("TLS", false);
+    /**
+     * Context used for the control and data connections
+     */
+    private SSLContext context;
+
+    /**
+     * @param context Context of the session used for the control and data connections
+     */
+    public FTPClient(SSLContext context) {
+        super(false, context);
+        this.context = context;
     }
 
     /**
@@ -150,9 +168,155 @@ public class FTPClient extends FTPSClient {
         if(null == socket) {
             throw new FTPException(this.getReplyString());
         }
+        if(socket instanceof SSLSocket) {
+            SSLHandshakeCounter.handshake((SSLSocket) socket);
+        }
+        if(deflate) {
+            return new DeflateSocket(socket);
+        }
         return socket;
     }
 
+    /**
+     * Data connections compressed in MODE Z
+     */
+    private boolean deflate;
+
+    /**
+     * Compress data connections with MODE Z if supported by the server.
+     *
+     * @return True if MODE Z is accepted by the server
+     * @throws IOException
+     */
+    public boolean enterDeflateTransferMode() throws IOException {
+        if(!this.isFeatureSupported("MODE Z")) {
+            return false;
+        }
+        if(!FTPReply.isPositiveCompletion(this.sendCommand("MODE", "Z"))) {
+            log.warn("Failed to enter MODE Z:" + this.getReplyString());
+            return false;
+        }
+        deflate = true;
+        return true;
+    }
+
+    /**
+     * Data connection inflating data received and deflating data sent. Reports
+     * the compression ratio to the transcript when closed.
+     */
+    final class DeflateSocket extends Socket {
+        private final Socket proxy;
+
+        private final Inflater inflater = new Inflater();
+        private final Deflater deflater = new Deflater();
+
+        private InputStream in;
+        private OutputStream out;
+
+        private boolean closed;
+
+        DeflateSocket(Socket proxy) {
+            this.proxy = proxy;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if(null == in) {
+                in = new InflaterInputStream(proxy.getInputStream(), inflater);
+            }
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            if(null == out) {
+                out = new DeflaterOutputStream(proxy.getOutputStream(), deflater);
+            }
+            return out;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if(null != out) {
+                    // Write remaining compressed data
+                    out.close();
+                }
+            }
+            finally {
+                proxy.close();
+                if(inflater.getBytesWritten() > 0) {
+                    this.ratio("Inflated " + inflater.getBytesRead() + " to " + inflater.getBytesWritten(),
+                            inflater.getBytesRead(), inflater.getBytesWritten());
+                }
+                if(deflater.getBytesRead() > 0) {
+                    this.ratio("Deflated " + deflater.getBytesRead() + " to " + deflater.getBytesWritten(),
+                            deflater.getBytesWritten(), deflater.getBytesRead());
+                }
+                inflater.end();
+                deflater.end();
+            }
+        }
+
+        private void ratio(String message, long compressed, long uncompressed) {
+            _commandSupport_.fireReplyReceived(-1, message + " bytes (" + (compressed * 100 / uncompressed) + "%)");
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed || proxy.isClosed();
+        }
+
+        @Override
+        public boolean isConnected() {
+            return proxy.isConnected();
+        }
+
+        @Override
+        public InetAddress getInetAddress() {
+            return proxy.getInetAddress();
+        }
+
+        @Override
+        public int getPort() {
+            return proxy.getPort();
+        }
+
+        @Override
+        public int getLocalPort() {
+            return proxy.getLocalPort();
+        }
+
+        @Override
+        public void setSoTimeout(int timeout) throws SocketException {
+            proxy.setSoTimeout(timeout);
+        }
+
+        @Override
+        public int getSoTimeout() throws SocketException {
+            return proxy.getSoTimeout();
+        }
+
+        @Override
+        public void shutdownInput() throws IOException {
+            proxy.shutdownInput();
+        }
+
+        @Override
+        public void shutdownOutput() throws IOException {
+            proxy.shutdownOutput();
+        }
+
+        @Override
+        public String toString() {
+            return "MODE Z " + proxy.toString();
+        }
+    }
+
     /**
      * SSL versions enabled.
      */
@@ -177,6 +341,13 @@ public class FTPClient extends FTPSClient {
     public void execPROT(String prot) throws SSLException, IOException {
         try {
             super.execPROT(prot);
+            if("P".equals(prot)) {
+                if(Preferences.instance().getBoolean("ftp.tls.datachannel.resume")) {
+                    if(_socket_ instanceof SSLSocket) {
+                        this.setSocketFactory(new SessionResumingSocketFactory(context, (SSLSocket) _socket_));
+                    }
+                }
+            }
         }
         catch(SSLException e) {
             if("P".equals(prot)) {
@@ -195,6 +366,9 @@ public class FTPClient extends FTPSClient {
             return;
         }
         super.sslNegotiation();
+        if(_socket_ instanceof SSLSocket) {
+            SSLHandshakeCounter.handshake((SSLSocket) _socket_);
+        }
     }
 
     /**
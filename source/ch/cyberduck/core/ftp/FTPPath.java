@@ -24,6 +24,7 @@ import ch.cyberduck.core.io.BandwidthThrottle;
 import ch.cyberduck.ui.DateFormatterFactory;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.ProxyInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.net.ftp.*;
 import org.apache.log4j.Logger;
@@ -241,21 +242,16 @@ public class FTPPath extends Path {
                         }
                     });
                 }
+                // Types of files in this directory to resolve symbolic links pointing to siblings
+                final Map<String, Integer> siblings = new HashMap<String, Integer>();
+                for(Path child : children) {
+                    if(!child.attributes().isSymbolicLink()) {
+                        siblings.put(child.getAbsolute(), child.attributes().isDirectory() ? Path.DIRECTORY_TYPE : Path.FILE_TYPE);
+                    }
+                }
                 for(Path child : children) {
                     if(child.attributes().isSymbolicLink()) {
-                        if(this.getSession().getClient().changeWorkingDirectory(child.getAbsolute())) {
-                            child.attributes().setType(Path.SYMBOLIC_LINK_TYPE | Path.DIRECTORY_TYPE);
-                        }
-                        else {
-                            // Try if CWD to symbolic link target succeeds
-                            if(this.getSession().getClient().changeWorkingDirectory(child.getSymlinkTarget().getAbsolute())) {
-                                // Workdir change succeeded
-                                child.attributes().setType(Path.SYMBOLIC_LINK_TYPE | Path.DIRECTORY_TYPE);
-                            }
-                            else {
-                                child.attributes().setType(Path.SYMBOLIC_LINK_TYPE | Path.FILE_TYPE);
-                            }
-                        }
+                        this.resolve(child, siblings);
                     }
                 }
                 if(success) {
@@ -277,6 +273,38 @@ public class FTPPath extends Path {
         return children;
     }
 
+    /**
+     * Determine if the target of the symbolic link is a file or directory. The type is looked
+     * up in the listing of the directory and the targets already resolved in this session
+     * before trying to change the working directory to the link.
+     *
+     * @param link     Symbolic link
+     * @param siblings Types of files in the same directory by absolute path
+     * @throws IOException
+     */
+    private void resolve(final Path link, final Map<String, Integer> siblings) throws IOException {
+        final String target = link.getSymlinkTarget().getAbsolute();
+        Integer type = siblings.get(target);
+        if(null == type) {
+            type = this.getSession().getSymlinkTargetType(target);
+        }
+        if(null == type) {
+            if(this.getSession().getClient().changeWorkingDirectory(link.getAbsolute())) {
+                type = Path.DIRECTORY_TYPE;
+            }
+            // Try if CWD to symbolic link target succeeds
+            else if(this.getSession().getClient().changeWorkingDirectory(target)) {
+                // Workdir change succeeded
+                type = Path.DIRECTORY_TYPE;
+            }
+            else {
+                type = Path.FILE_TYPE;
+            }
+            this.getSession().setSymlinkTargetType(target, type);
+        }
+        link.attributes().setType(Path.SYMBOLIC_LINK_TYPE | type);
+    }
+
     /**
      * The "facts" for a file in a reply to a MLSx command consist of
      * information about that file.  The facts are a series of keyword=value
@@ -390,6 +418,11 @@ public class FTPPath extends Path {
                     else if("file".equals(facts.get("type").toLowerCase())) {
                         parsed.attributes().setType(Path.FILE_TYPE);
                     }
+                    else if(facts.get("type").toLowerCase().matches("os\\.unix=s(ym)?link:.+")) {
+                        // Symbolic link with target. Type of target is resolved after parsing the listing
+                        parsed.setSymlinkTarget(StringUtils.substringAfter(facts.get("type"), ":"));
+                        parsed.attributes().setType(Path.SYMBOLIC_LINK_TYPE | Path.FILE_TYPE);
+                    }
                     else {
                         log.warn("Ignored type: " + line);
                         break;
@@ -916,6 +949,81 @@ public class FTPPath extends Path {
         }
     }
 
+    /**
+     * Sessions to read segments of a download on concurrently
+     */
+    SessionPool segments;
+
+    /**
+     * @return True if the server supports restarting a download at an offset
+     */
+    @Override
+    protected boolean isSegmentedDownloadSupported() {
+        try {
+            return this.getSession().getClient().isFeatureSupported("REST STREAM");
+        }
+        catch(IOException e) {
+            log.warn("Cannot determine REST STREAM support:" + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Retrieve the file from the offset on its own control and data connection. The transfer
+     * is aborted by closing the data connection when the stream is closed before the end of the
+     * file is reached.
+     *
+     * @param offset Start of byte range
+     * @param length Number of bytes to read
+     * @return Stream of the byte range
+     * @throws IOException
+     */
+    @Override
+    protected InputStream read(final long offset, final long length) throws IOException {
+        final FTPSession session;
+        try {
+            session = (FTPSession) segments.borrow();
+        }
+        catch(InterruptedException e) {
+            throw new ConnectionCanceledException(e.getMessage());
+        }
+        try {
+            session.check();
+            final FTPClient client = session.getClient();
+            if(!client.setFileType(FTP.BINARY_FILE_TYPE)) {
+                throw new FTPException(client.getReplyString());
+            }
+            client.setRestartOffset(offset);
+            final InputStream in = client.retrieveFileStream(this.getAbsolute());
+            if(null == in) {
+                throw new FTPException(client.getReplyString());
+            }
+            final boolean eof = offset + length >= this.attributes().getSize();
+            return new ProxyInputStream(in) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                        // Read the reply to RETR. Transfer aborted unless the end of the file is reached
+                        if(!client.completePendingCommand()) {
+                            if(eof) {
+                                throw new FTPException(client.getReplyString());
+                            }
+                            log.debug("Aborted transfer of segment at offset " + offset + ":" + client.getReplyString());
+                        }
+                    }
+                    finally {
+                        segments.release(session);
+                    }
+                }
+            };
+        }
+        catch(IOException e) {
+            segments.release(session);
+            throw e;
+        }
+    }
+
     @Override
     protected void download(final BandwidthThrottle throttle, final StreamListener listener, final boolean check) {
         if(this.attributes().isFile()) {
@@ -923,6 +1031,19 @@ public class FTPPath extends Path {
                 if(check) {
                     this.getSession().check();
                 }
+                final int connections = this.getSession().getSegmentConnections();
+                if(connections > 0 && this.isSegmentedDownload()) {
+                    // Additional connections each downloading a segment
+                    segments = new SessionPool(this.getSession(), connections);
+                    try {
+                        this.download(throttle, listener, connections);
+                    }
+                    finally {
+                        segments.close();
+                        segments = null;
+                    }
+                    return;
+                }
                 this.data(new DataConnectionAction() {
                     @Override
                     public boolean run() throws IOException {
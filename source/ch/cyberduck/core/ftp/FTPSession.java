@@ -35,7 +35,6 @@ import org.apache.commons.net.ftp.parser.UnixFTPEntryParser;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
 import java.util.*;
 
@@ -246,6 +245,7 @@ public class FTPSession extends SSLSession {
                 FTP.removeProtocolCommandListener(listener);
             }
             FTP = null;
+            symlinks.clear();
             this.fireConnectionDidCloseEvent();
         }
     }
@@ -316,7 +316,6 @@ public class FTPSession extends SSLSession {
                 protocols.add(protocol.trim());
             }
             client.setEnabledProtocols(protocols.toArray(new String[protocols.size()]));
-            client.setTrustManager(host.getProtocol().isSecure() ? this.getTrustManager() : null);
         }
     }
 
@@ -337,14 +336,8 @@ public class FTPSession extends SSLSession {
         }
         this.fireConnectionWillOpenEvent();
 
-        try {
-            this.FTP = new FTPClient();
-        }
-        catch(NoSuchAlgorithmException e) {
-            IOException failure = new IOException(e.getMessage());
-            failure.initCause(e);
-            throw failure;
-        }
+        // Context of the session to resume the TLS session when reconnecting
+        this.FTP = new FTPClient(this.getSSLContext());
         this.configure(this.getClient());
         this.getClient().connect(host.getHostname(true), host.getPort());
         if(!this.isConnected()) {
@@ -359,6 +352,10 @@ public class FTPSession extends SSLSession {
             // Negotiate data connection security
             this.getClient().execPROT(Preferences.instance().getProperty("ftp.tls.datachannel"));
         }
+        if(null == host.getCompression() ?
+                Preferences.instance().getBoolean("ftp.compression") : host.getCompression()) {
+            this.getClient().enterDeflateTransferMode();
+        }
 
         this.fireConnectionDidOpenEvent();
         if("UTF-8".equals(this.getEncoding())) {
@@ -538,6 +535,47 @@ public class FTPSession extends SSLSession {
         return extendedListEnabled;
     }
 
+    /**
+     * Types of symbolic link targets resolved by absolute path
+     */
+    private Map<String, Integer> symlinks = new HashMap<String, Integer>();
+
+    /**
+     * @param target Absolute path of symbolic link target
+     * @return Path.DIRECTORY_TYPE or Path.FILE_TYPE or null if not yet resolved
+     */
+    public Integer getSymlinkTargetType(String target) {
+        return symlinks.get(target);
+    }
+
+    /**
+     * @param target Absolute path of symbolic link target
+     * @param type   Path.DIRECTORY_TYPE or Path.FILE_TYPE
+     */
+    public void setSymlinkTargetType(String target, int type) {
+        symlinks.put(target, type);
+    }
+
+    /**
+     * Segments of large downloads are read on additional connections, one login each.
+     *
+     * @return Number of additional connections to download a file in segments within the
+     *         maximum number of connections to the host
+     */
+    @Override
+    public int getSegmentConnections() {
+        if(!Preferences.instance().getBoolean("queue.download.segments")) {
+            return 0;
+        }
+        final int connections = Preferences.instance().getInteger("queue.download.segments.connections");
+        final int max = this.getMaxConnections();
+        if(max > 0) {
+            // The session of the transfer keeps its connection
+            return Math.min(connections, max - 1);
+        }
+        return connections;
+    }
+
     private boolean utimeSupported = Preferences.instance().getBoolean("ftp.command.utime");
 
     public boolean isUtimeSupported() {
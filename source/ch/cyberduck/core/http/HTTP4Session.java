@@ -23,46 +23,60 @@ import ch.cyberduck.core.Host;
 import ch.cyberduck.core.Preferences;
 import ch.cyberduck.core.Proxy;
 import ch.cyberduck.core.ProxyFactory;
-import ch.cyberduck.core.ssl.CustomTrustSSLProtocolSocketFactory;
+import ch.cyberduck.core.ssl.SSLHandshakeCounter;
 import ch.cyberduck.core.ssl.SSLSession;
 
 import org.apache.http.*;
 import org.apache.http.auth.params.AuthParams;
 import org.apache.http.client.params.HttpClientParams;
-import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.params.ConnRouteParams;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ssl.X509HostnameVerifier;
 import org.apache.http.impl.client.AbstractHttpClient;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.SingleClientConnManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.params.HttpProtocolParams;
 import org.apache.http.protocol.HttpContext;
+import org.apache.log4j.Logger;
 
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocket;
 import java.io.IOException;
+import java.security.cert.X509Certificate;
 
 /**
  * @version $Id: HTTPSession.java 7171 2010-10-02 15:06:28Z dkocher $
  */
 public abstract class HTTP4Session extends SSLSession {
+    private static Logger log = Logger.getLogger(HTTP4Session.class);
 
     protected HTTP4Session(Host h) {
         super(h);
     }
 
+    /**
+     * Shared by all threads of the session. Guarded by this.
+     */
     private AbstractHttpClient http;
 
+    /**
+     * Maximum time to wait for a connection from the pool. Same key as
+     * ClientPNames.CONN_MANAGER_TIMEOUT of later HttpClient versions replacing the
+     * deprecated ConnManagerPNames.TIMEOUT.
+     */
+    private static final String CONN_MANAGER_TIMEOUT = "http.conn-manager.timeout";
+
     /**
      * Create new HTTP client with default configuration and custom trust manager.
      *
      * @return A new instance of a default HTTP client.
      */
-    protected AbstractHttpClient http() {
+    protected synchronized AbstractHttpClient http() {
         if(null == http) {
             final HttpParams params = new BasicHttpParams();
 
@@ -78,14 +92,17 @@ public abstract class HTTP4Session extends SSLSession {
 
             HttpClientParams.setRedirecting(params, true);
             HttpClientParams.setAuthenticating(params, true);
+            // Fail instead of waiting forever for a connection not released to the pool
+            params.setLongParameter(CONN_MANAGER_TIMEOUT, timeout());
 
             SchemeRegistry registry = new SchemeRegistry();
             // Always register HTTP for possible use with proxy
             registry.register(new Scheme("http", host.getPort(), PlainSocketFactory.getSocketFactory()));
             if("https".equals(this.getHost().getProtocol().getScheme())) {
+                // Context of the session to resume TLS sessions of previous connections
                 org.apache.http.conn.ssl.SSLSocketFactory factory = new SSLSocketFactory(
-                        new CustomTrustSSLProtocolSocketFactory(this.getTrustManager()).getSSLContext(),
-                        org.apache.http.conn.ssl.SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
+                        this.getSSLContext(),
+                        new HandshakeHostnameVerifier());
                 registry.register(new Scheme(host.getProtocol().getScheme(), host.getPort(), factory));
             }
             if(Preferences.instance().getBoolean("connection.proxy.enable")) {
@@ -101,13 +118,44 @@ public abstract class HTTP4Session extends SSLSession {
                     }
                 }
             }
-            ClientConnectionManager manager = new SingleClientConnManager(registry);
+            // Concurrent requests with connections kept alive for reuse
+            final int max = this.getMaxConnections();
+            final PooledClientConnectionManager manager = new PooledClientConnectionManager(registry,
+                    max > 0 ? max : Preferences.instance().getInteger("http.connections.route"),
+                    Preferences.instance().getInteger("http.connections.total"),
+                    Preferences.instance().getInteger("http.connections.idle"));
             http = new DefaultHttpClient(manager, params);
             this.configure(http);
         }
         return http;
     }
 
+    /**
+     * Accepts any hostname as the certificate is verified by the trust manager. Records
+     * whether the TLS session of a new connection was resumed.
+     */
+    private static final class HandshakeHostnameVerifier implements X509HostnameVerifier {
+        private final X509HostnameVerifier proxy
+                = org.apache.http.conn.ssl.SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER;
+
+        public void verify(String host, SSLSocket ssl) throws IOException {
+            proxy.verify(host, ssl);
+            SSLHandshakeCounter.handshake(ssl);
+        }
+
+        public void verify(String host, X509Certificate cert) throws SSLException {
+            proxy.verify(host, cert);
+        }
+
+        public void verify(String host, String[] cns, String[] subjectAlts) throws SSLException {
+            proxy.verify(host, cns, subjectAlts);
+        }
+
+        public boolean verify(String host, javax.net.ssl.SSLSession session) {
+            return proxy.verify(host, session);
+        }
+    }
+
     protected void configure(AbstractHttpClient client) {
         http.addRequestInterceptor(new HttpRequestInterceptor() {
             public void process(final HttpRequest request, final HttpContext context) throws HttpException, IOException {
@@ -130,11 +178,15 @@ public abstract class HTTP4Session extends SSLSession {
     }
 
     @Override
-    public void close() {
+    public synchronized void close() {
         try {
             // When HttpClient instance is no longer needed, shut down the connection manager to ensure
             // immediate deallocation of all system resources
             if(null != http) {
+                if(log.isDebugEnabled()) {
+                    log.debug("Shutdown connection pool "
+                            + ((PooledClientConnectionManager) http.getConnectionManager()).getStatistics());
+                }
                 http.getConnectionManager().shutdown();
             }
         }
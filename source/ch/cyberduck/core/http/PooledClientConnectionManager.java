@@ -0,0 +1,151 @@
+package ch.cyberduck.core.http;
+
+/*
+ *  Copyright (c) 2010 David Kocher. All rights reserved.
+ *  http://cyberduck.ch/
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Bug fixes, suggestions and comments should be sent to:
+ *  dkocher@cyberduck.ch
+ */
+
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.params.ConnPerRoute;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.tsccm.ConnPoolByRoute;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Thread safe pool of persistent connections reused for subsequent requests to the same route.
+ * Connections idle for longer than the timeout given are closed before a connection is leased
+ * instead of being reused after the server may have dropped them.
+ *
+ * @version $Id$
+ */
+public class PooledClientConnectionManager extends ThreadSafeClientConnManager {
+    private static Logger log = Logger.getLogger(PooledClientConnectionManager.class);
+
+    /**
+     * Seconds a connection may be idle in the pool before it is closed
+     */
+    private int idle;
+
+    /**
+     * @param registry Schemes supported
+     * @param route    Maximum number of connections per route
+     * @param total    Maximum number of connections for all routes
+     * @param idle     Seconds a connection may be idle in the pool before it is closed
+     */
+    public PooledClientConnectionManager(SchemeRegistry registry, int route, int total, int idle) {
+        super(registry);
+        this.setMaxTotal(total);
+        this.setDefaultMaxPerRoute(route);
+        this.idle = idle;
+    }
+
+    @Override
+    protected ConnPoolByRoute createConnectionPool(long connTTL, TimeUnit connTTLTimeUnit) {
+        return new StatisticsConnPoolByRoute(connOperator, connPerRoute, 20, connTTL, connTTLTimeUnit);
+    }
+
+    @Override
+    public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+        this.closeExpiredConnections();
+        this.closeIdleConnections(idle, TimeUnit.SECONDS);
+        if(log.isDebugEnabled()) {
+            log.debug("Request connection for " + route + " " + this.getStatistics());
+        }
+        return super.requestConnection(route, state);
+    }
+
+    /**
+     * @return Current number of connections leased, available and requests waiting for a connection
+     */
+    public Statistics getStatistics() {
+        return ((StatisticsConnPoolByRoute) pool).getStatistics();
+    }
+
+    /**
+     * Snapshot of the state of the pool
+     */
+    public static final class Statistics {
+        private final int leased;
+        private final int available;
+        private final int pending;
+        private final int max;
+
+        private Statistics(int leased, int available, int pending, int max) {
+            this.leased = leased;
+            this.available = available;
+            this.pending = pending;
+            this.max = max;
+        }
+
+        /**
+         * @return Connections currently in use
+         */
+        public int getLeased() {
+            return leased;
+        }
+
+        /**
+         * @return Idle connections ready to be reused
+         */
+        public int getAvailable() {
+            return available;
+        }
+
+        /**
+         * @return Requests waiting for a connection to be released
+         */
+        public int getPending() {
+            return pending;
+        }
+
+        /**
+         * @return Maximum number of connections for all routes
+         */
+        public int getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "[leased: " + leased + "; available: " + available + "; pending: " + pending + "; max: " + max + "]";
+        }
+    }
+
+    private static final class StatisticsConnPoolByRoute extends ConnPoolByRoute {
+        private StatisticsConnPoolByRoute(ClientConnectionOperator operator, ConnPerRoute connPerRoute,
+                                          int maxTotalConnections, long connTTL, TimeUnit connTTLTimeUnit) {
+            super(operator, connPerRoute, maxTotalConnections, connTTL, connTTLTimeUnit);
+        }
+
+        private Statistics getStatistics() {
+            final Lock lock = this.getLock();
+            lock.lock();
+            try {
+                return new Statistics(leasedConnections.size(), freeConnections.size(), waitingThreads.size(),
+                        maxTotalConnections);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+}
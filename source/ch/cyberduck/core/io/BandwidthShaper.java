@@ -0,0 +1,150 @@
+package ch.cyberduck.core.io;
+
+/*
+ *  Copyright (c) 2010 David Kocher. All rights reserved.
+ *  http://cyberduck.ch/
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Bug fixes, suggestions and comments should be sent to:
+ *  dkocher@cyberduck.ch
+ */
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hierarchy of bandwidth throttles shared by all transfers in one direction. The throttle
+ * of a transfer has the throttle of its host as parent, which in turn has the global
+ * throttle as parent.
+ *
+ * @version $Id$
+ */
+public class BandwidthShaper {
+    private static Logger log = Logger.getLogger(BandwidthShaper.class);
+
+    private static BandwidthShaper upload;
+
+    private static BandwidthShaper download;
+
+    private static final Object lock = new Object();
+
+    /**
+     * @return Throttles for uploads
+     */
+    public static BandwidthShaper upload() {
+        synchronized(lock) {
+            if(null == upload) {
+                upload = new BandwidthShaper("upload");
+            }
+            return upload;
+        }
+    }
+
+    /**
+     * @return Throttles for downloads
+     */
+    public static BandwidthShaper download() {
+        synchronized(lock) {
+            if(null == download) {
+                download = new BandwidthShaper("download");
+            }
+            return download;
+        }
+    }
+
+    private final String name;
+
+    /**
+     * Limit for all transfers
+     */
+    private final BandwidthThrottle global
+            = new BandwidthThrottle(BandwidthThrottle.UNLIMITED);
+
+    /**
+     * Limit applied to new hosts
+     */
+    private volatile float hostRate = BandwidthThrottle.UNLIMITED;
+
+    /**
+     * Limit per host
+     */
+    private final ConcurrentMap<String, BandwidthThrottle> hosts
+            = new ConcurrentHashMap<String, BandwidthThrottle>();
+
+    protected BandwidthShaper(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param bytesPerSecond Limit for all transfers together
+     */
+    public void setRate(float bytesPerSecond) {
+        if(log.isDebugEnabled()) {
+            log.debug("setRate:" + name + "," + bytesPerSecond);
+        }
+        global.setRate(bytesPerSecond);
+    }
+
+    /**
+     * @return Limit for all transfers together
+     */
+    public float getRate() {
+        return global.getRate();
+    }
+
+    /**
+     * @param bytesPerSecond Limit for all transfers to a single host
+     */
+    public void setHostRate(float bytesPerSecond) {
+        if(log.isDebugEnabled()) {
+            log.debug("setHostRate:" + name + "," + bytesPerSecond);
+        }
+        hostRate = bytesPerSecond;
+        for(BandwidthThrottle throttle : hosts.values()) {
+            throttle.setRate(bytesPerSecond);
+        }
+    }
+
+    /**
+     * @return Limit for all transfers to a single host
+     */
+    public float getHostRate() {
+        return hostRate;
+    }
+
+    /**
+     * @param host Identifier of the host
+     * @return Throttle shared by all transfers to the host
+     */
+    public BandwidthThrottle getThrottle(String host) {
+        BandwidthThrottle throttle = hosts.get(host);
+        if(null == throttle) {
+            throttle = new BandwidthThrottle(hostRate, global);
+            final BandwidthThrottle previous = hosts.putIfAbsent(host, throttle);
+            if(null != previous) {
+                return previous;
+            }
+        }
+        return throttle;
+    }
+
+    /**
+     * @param host           Identifier of the host
+     * @param bytesPerSecond Limit of the transfer
+     * @return New throttle for a single transfer limited by the host and global throttle
+     */
+    public BandwidthThrottle create(String host, float bytesPerSecond) {
+        return new BandwidthThrottle(bytesPerSecond, this.getThrottle(host));
+    }
+}
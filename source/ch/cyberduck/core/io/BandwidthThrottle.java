@@ -3,13 +3,13 @@ package ch.cyberduck.core.io;
 import org.apache.log4j.Logger;
 
 /**
- * Limits throughput of a stream to at most N bytes per T seconds.  Mutable and
+ * Limits throughput of a stream to at most N bytes per second.  Mutable and
  * thread-safe.<p>
  * <p/>
  * In the following example, <tt>throttle</tt> is used to send the contents of
- * <tt>buf</tt> to <tt>out</tt> at no more than <tt>N/T</tt> bytes per second:
+ * <tt>buf</tt> to <tt>out</tt> at no more than <tt>N</tt> bytes per second:
  * <pre>
- *      BandwidthThrottle throttle=new BandwidthThrottle(N, T);
+ *      BandwidthThrottle throttle=new BandwidthThrottle(N);
  *      OutputStream out=...;
  *      byte[] buf=...;
  *      for (int i=0; i<buf.length; ) {
@@ -19,39 +19,34 @@ import org.apache.log4j.Logger;
  *      }
  * </pre>
  * <p/>
- * This class works by allowing exactly N bytes to be sent every T seconds.  If
- * the number of bytes for a given window have been exceeded, subsequent calls
- * to request(..) will block.  The default value of T is 100 milliseconds.
- * Smaller window values T allow fairer bandwidth sharing and less noticeable
- * pauses but may decrease efficiency slightly.<p>
+ * This class works as a token bucket refilled continuously at the given rate. The
+ * bucket holds at most the tokens accumulated in 100 milliseconds to limit bursts.
+ * If no tokens are available, subsequent calls to request(..) will sleep until
+ * enough tokens have accumulated. No lock is held while sleeping such that a throttle
+ * can be shared by any number of threads.<p>
  * <p/>
- * Note that throttles are <i>not</i> cumulative.  In the future, this may allow
- * enable fancier control.  Also, BandwidthThrottle may be able delegate to
- * other throttles.  This would allow, for example, a 15 KB/s Gnutella messaging
- * throttle, with no more than 10 KB/s devoted to uploads.<p>
+ * Throttles are cumulative: a throttle may have a parent throttle such as a limit
+ * for all transfers to a host or for all transfers in total. Bytes granted by a throttle
+ * are additionally requested from its parent.<p>
  * <p/>
  * This implementation is based on the <a href="http://cvs.sourceforge.net/cgi-bin/viewcvs.cgi/freenet/freenet/src/freenet/support/io/Bandwidth.java">Bandwidth</a>
  * class from
- * the Freenet project.  It has been simplified and better documented.<p>
+ * the Freenet project.<p>
  *
  * @version $Id$
+ * @see BandwidthShaper
  */
 public class BandwidthThrottle {
     protected static Logger log = Logger.getLogger(BandwidthThrottle.class);
 
     /**
-     * The number of windows per second.
+     * The number of windows per second determining the maximum burst.
      */
     private static final int TICKS_PER_SECOND = 10;
-    /**
-     * The value of T, in milliseconds.
-     */
-    private static final int MILLIS_PER_TICK = 1000 / TICKS_PER_SECOND;
 
-    /**
-     * The bytes to send per tick.  Modified by setThrottle.
-     */
-    private volatile int _bytesPerTick;
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
 
     /**
      * Whether or not we're only allowing bandwidth to be used every other
@@ -60,18 +55,22 @@ public class BandwidthThrottle {
     private volatile boolean _switching = false;
 
     /**
-     * The number of bytes remaining in this window.
+     * The number of bytes remaining in the bucket.
      */
-    private int _availableBytes;
+    private double _availableBytes;
+
+    /**
+     * The system time in nanoseconds the bucket was last refilled.
+     */
+    private long _lastRefillTime = System.nanoTime();
+
     /**
-     * The system time when the window is reset so more bytes can be sent.
+     * Limit applied additionally to this throttle. May be null.
      */
-    private long _nextTickTime;
+    private volatile BandwidthThrottle _parent;
 
     /**
      * Creates a new bandwidth throttle at the given throttle rate.
-     * The default windows size T is used.  The bytes per windows N
-     * is calculated from bytesPerSecond.
      *
      * @param bytesPerSecond the limits in bytes (not bits!) per second
      *                       (not milliseconds!)
@@ -84,8 +83,6 @@ public class BandwidthThrottle {
      * Creates a new bandwidth throttle at the given throttle rate,
      * only allowing bandwidth to be used every other second if
      * switching is true.
-     * The default windows size T is used.  The bytes per windows N
-     * is calculated from bytesPerSecond.
      *
      * @param bytesPerSecond the limits in bytes (not bits!) per second
      *                       (not milliseconds!)
@@ -95,7 +92,19 @@ public class BandwidthThrottle {
     public BandwidthThrottle(float bytesPerSecond, boolean switching) {
         this.setRate(bytesPerSecond);
         this.setSwitching(switching);
+    }
 
+    /**
+     * Creates a new bandwidth throttle at the given throttle rate limited
+     * additionally by the parent throttle.
+     *
+     * @param bytesPerSecond the limits in bytes (not bits!) per second
+     *                       (not milliseconds!)
+     * @param parent         Throttle shared with other streams
+     */
+    public BandwidthThrottle(float bytesPerSecond, BandwidthThrottle parent) {
+        this.setRate(bytesPerSecond);
+        this.setParent(parent);
     }
 
     /**
@@ -106,31 +115,30 @@ public class BandwidthThrottle {
     /**
      * Bytes per second allowed
      */
-    private float _rate = UNLIMITED;
+    private volatile float _rate = UNLIMITED;
 
     /**
-     * Sets the throttle to the given throttle rate.  The default windows size
-     * T is used.  The bytes per windows N is calculated from bytesPerSecond.
+     * Sets the throttle to the given throttle rate. Takes effect immediately
+     * also for threads currently waiting for bandwidth.
      *
      * @param bytesPerSecond the limits in bytes (not bits!) per second
      *                       (not milliseconds!)
      */
     public void setRate(float bytesPerSecond) {
-        log.debug("setRate:"+bytesPerSecond);
-        if(bytesPerSecond < 0) {
-            _rate = UNLIMITED;
-        }
-        else {
-            _rate = bytesPerSecond;
-            _bytesPerTick = (int) (bytesPerSecond / TICKS_PER_SECOND);
-        }
-        if(_switching) {
-            this.fixBytesPerTick(true);
+        log.debug("setRate:" + bytesPerSecond);
+        synchronized(this) {
+            this.refill(System.nanoTime());
+            if(bytesPerSecond < 0) {
+                _rate = UNLIMITED;
+            }
+            else {
+                _rate = bytesPerSecond;
+                _availableBytes = Math.min(_availableBytes, this.getCapacity());
+            }
         }
     }
 
     /**
-     *
      * @return Transfer rate in bytes per second allowed by this throttle
      */
     public float getRate() {
@@ -139,61 +147,75 @@ public class BandwidthThrottle {
 
     /**
      * Sets whether or not this throttle is switching bandwidth on/off.
+     * The rate is doubled while bandwidth is available to keep the average.
      */
     public void setSwitching(boolean switching) {
-        log.debug("setSwitching:"+switching);
-        if(_switching != switching) {
-            fixBytesPerTick(switching);
-        }
+        log.debug("setSwitching:" + switching);
         _switching = switching;
     }
 
     /**
-     * Modifies bytesPerTick to either be double or half of what it was.
-     * This is necessary because of the 'switching', which can effectively
-     * reduce or raise the amount of data transferred.
+     * @param parent Throttle to request granted bytes from additionally or null
+     */
+    public void setParent(BandwidthThrottle parent) {
+        for(BandwidthThrottle p = parent; p != null; p = p.getParent()) {
+            if(p == this) {
+                throw new IllegalArgumentException("Cyclic throttle hierarchy");
+            }
+        }
+        _parent = parent;
+    }
+
+    /**
+     * @return Throttle shared with other streams or null
      */
-    private void fixBytesPerTick(boolean raise) {
-        int newBytesPerTick = _bytesPerTick;
-        if(raise)
-            newBytesPerTick *= 2;
-        else
-            newBytesPerTick /= 2;
-        if(newBytesPerTick < 0) // overflowed?
-            newBytesPerTick = Integer.MAX_VALUE;
-        _bytesPerTick = newBytesPerTick;
+    public BandwidthThrottle getParent() {
+        return _parent;
     }
 
     /**
      * Blocks until the caller can send at least one byte without violating
-     * bandwidth constraints.  Records the number of byte sent.
+     * bandwidth constraints of this throttle and all its parents.  Records
+     * the number of byte sent.
      *
      * @param desired the number of bytes the caller would like to send
      * @return the number of bytes the sender is expected to send, which
      *         is always greater than one and less than or equal to desired
      */
-    synchronized public int request(int desired) {
-        if(UNLIMITED == _rate) {
-            return desired;
+    public int request(int desired) {
+        int granted = desired;
+        if(UNLIMITED != _rate) {
+            granted = this.waitForBandwidth(desired);
+        }
+        final BandwidthThrottle parent = _parent;
+        if(null == parent) {
+            return granted;
         }
-        waitForBandwidth();
-        int result = Math.min(desired, _availableBytes);
-        _availableBytes -= result;
-        return result;
+        final int allowed = parent.request(granted);
+        if(allowed < granted) {
+            // Give back what cannot be sent because of the parent limit
+            this.release(granted - allowed);
+        }
+        return allowed;
     }
 
     /**
-     * Waits until data is _availableBytes.
+     * Waits until bytes are available in the bucket.
+     *
+     * @param desired the number of bytes the caller would like to send
+     * @return Number of bytes taken from the bucket
      */
-    private void waitForBandwidth() {
+    private int waitForBandwidth(int desired) {
         for(; ;) {
-            long now = System.currentTimeMillis();
-            updateWindow(now);
-            if(_availableBytes != 0)
-                break;
+            final long wait = this.acquire(desired);
+            if(wait <= 0) {
+                return (int) -wait;
+            }
             try {
-                log.info("Throttling bandwidth for "+(_nextTickTime - now) +" milliseconds");
-                Thread.sleep(_nextTickTime - now);
+                if(log.isDebugEnabled()) {
+                    log.debug("Throttling bandwidth for " + wait / NANOS_PER_MILLI + " milliseconds");
+                }
+                Thread.sleep(wait / NANOS_PER_MILLI, (int) (wait % NANOS_PER_MILLI));
             }
             catch(InterruptedException e) {
                 log.error(e.getMessage());
@@ -202,21 +224,85 @@ public class BandwidthThrottle {
     }
 
     /**
-     * Updates _availableBytes and _nextTickTime if possible.
+     * Take bytes from the bucket without blocking.
+     *
+     * @param desired the number of bytes the caller would like to send
+     * @return The negated number of bytes granted or the number of nanoseconds
+     *         to wait until at least one byte is available
      */
-    private void updateWindow(long now) {
-        if(now >= _nextTickTime) {
-            if(!_switching || ((now / 1000) % 2) == 0) {
-                _availableBytes = _bytesPerTick;
-                _nextTickTime = now + MILLIS_PER_TICK;
-            }
-            else {
-                _availableBytes = 0;
-                // the next tick time is the time we'll hit
-                // the next second.
-                long diff = 1000 - (now % 1000);
-                _nextTickTime = now + diff;
-            }
+    private synchronized long acquire(int desired) {
+        final float rate = _rate;
+        if(UNLIMITED == rate) {
+            return -desired;
+        }
+        final long now = System.nanoTime();
+        this.refill(now);
+        if(_availableBytes >= 1) {
+            final int granted = (int) Math.min(desired, Math.floor(_availableBytes));
+            _availableBytes -= granted;
+            return -granted;
+        }
+        if(_switching && this.isOff()) {
+            // The time we'll hit the next second
+            final long millis = System.currentTimeMillis();
+            return Math.max(1, 1000 - millis % 1000) * NANOS_PER_MILLI;
+        }
+        if(0 == rate) {
+            return NANOS_PER_SECOND / TICKS_PER_SECOND;
+        }
+        return Math.max(NANOS_PER_MILLI,
+                (long) ((1 - _availableBytes) * NANOS_PER_SECOND / this.getEffectiveRate()));
+    }
+
+    /**
+     * Return unused bytes to the bucket
+     *
+     * @param bytes Number of bytes previously granted but not sent
+     */
+    private synchronized void release(int bytes) {
+        if(UNLIMITED == _rate) {
+            return;
+        }
+        _availableBytes = Math.min(_availableBytes + bytes, this.getCapacity());
+    }
+
+    /**
+     * Add the tokens accumulated since the last refill. Must hold the lock.
+     *
+     * @param now System time in nanoseconds
+     */
+    private void refill(long now) {
+        final long elapsed = now - _lastRefillTime;
+        _lastRefillTime = now;
+        if(UNLIMITED == _rate) {
+            return;
+        }
+        if(_switching && this.isOff()) {
+            _availableBytes = 0;
+            return;
+        }
+        _availableBytes = Math.min(this.getCapacity(),
+                _availableBytes + elapsed * (double) this.getEffectiveRate() / NANOS_PER_SECOND);
+    }
+
+    /**
+     * @return True if switching and no bandwidth is allowed in the current second
+     */
+    private boolean isOff() {
+        return ((System.currentTimeMillis() / 1000) % 2) != 0;
+    }
+
+    private float getEffectiveRate() {
+        if(_switching) {
+            return _rate * 2;
         }
+        return _rate;
+    }
+
+    /**
+     * @return Maximum number of bytes in the bucket
+     */
+    private double getCapacity() {
+        return Math.max(1, this.getEffectiveRate() / TICKS_PER_SECOND);
     }
-}
\ No newline at end of file
+}
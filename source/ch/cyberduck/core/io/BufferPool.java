@@ -0,0 +1,89 @@
+package ch.cyberduck.core.io;
+
+/*
+ *  Copyright (c) 2010 David Kocher. All rights reserved.
+ *  http://cyberduck.ch/
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Bug fixes, suggestions and comments should be sent to:
+ *  dkocher@cyberduck.ch
+ */
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buffers of a fixed size to reuse for copying file contents instead of allocating
+ * a new buffer for every file transferred. Safe to use from concurrent threads.
+ *
+ * @version $Id$
+ */
+public class BufferPool {
+
+    /**
+     * Capacity of a single buffer
+     */
+    private final int size;
+
+    /**
+     * Maximum number of idle buffers to keep
+     */
+    private final int capacity;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> idle
+            = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    /**
+     * Number of idle buffers
+     */
+    private final AtomicInteger count
+            = new AtomicInteger();
+
+    /**
+     * @param size     Capacity of a single buffer in bytes
+     * @param capacity Maximum number of idle buffers to keep
+     */
+    public BufferPool(int size, int capacity) {
+        this.size = size;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return Cleared buffer backed by an array. Must be returned using #release
+     *         when no longer used.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = idle.poll();
+        if(null == buffer) {
+            return ByteBuffer.allocate(size);
+        }
+        count.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * @param buffer Buffer obtained from #acquire not used by the caller afterwards
+     */
+    public void release(ByteBuffer buffer) {
+        if(buffer.capacity() != size) {
+            return;
+        }
+        if(count.incrementAndGet() > capacity) {
+            // Let the garbage collector take care of it
+            count.decrementAndGet();
+            return;
+        }
+        idle.offer(buffer);
+    }
+}
@@ -48,6 +48,7 @@ import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @version $Id$
@@ -55,6 +56,21 @@ import java.util.concurrent.*;
 public class S3Path extends CloudPath {
     private static Logger log = Logger.getLogger(S3Path.class);
 
+    /**
+     * Reads the next chunk of directory listings while the current chunk is added. Idle
+     * threads are discarded.
+     */
+    private static final ExecutorService prefetch = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger(1);
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setName("listing-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     private static class Factory extends PathFactory<S3Session> {
         @Override
         protected Path create(S3Session session, String path, int type) {
@@ -435,6 +451,42 @@ public class S3Path extends CloudPath {
         }
     }
 
+    /**
+     * The client is safe to use from multiple threads
+     *
+     * @return True
+     */
+    @Override
+    protected boolean isSegmentedDownloadSupported() {
+        return true;
+    }
+
+    @Override
+    protected InputStream read(long offset, long length) throws IOException {
+        try {
+            if(this.attributes().isDuplicate()) {
+                return this.getSession().getClient().getVersionedObject(attributes().getVersionId(),
+                        this.getContainerName(), this.getKey(),
+                        null, // ifModifiedSince
+                        null, // ifUnmodifiedSince
+                        null, // ifMatch
+                        null, // ifNoneMatch
+                        offset, offset + length - 1).getDataInputStream();
+            }
+            return this.getSession().getClient().getObject(this.getContainerName(), this.getKey(),
+                    null, // ifModifiedSince
+                    null, // ifUnmodifiedSince
+                    null, // ifMatch
+                    null, // ifNoneMatch
+                    offset, offset + length - 1).getDataInputStream();
+        }
+        catch(ServiceException e) {
+            IOException failure = new IOException(e.getMessage());
+            failure.initCause(e);
+            throw failure;
+        }
+    }
+
     @Override
     protected void download(BandwidthThrottle throttle, final StreamListener listener, final boolean check) {
         if(attributes().isFile()) {
@@ -444,6 +496,10 @@ public class S3Path extends CloudPath {
                 if(check) {
                     this.getSession().check();
                 }
+                if(this.isSegmentedDownload()) {
+                    this.download(throttle, listener, Preferences.instance().getInteger("queue.download.segments.connections"));
+                    return;
+                }
                 if(this.attributes().isDuplicate()) {
                     in = this.getSession().getClient().getVersionedObject(attributes().getVersionId(),
                             this.getContainerName(), this.getKey(),
@@ -871,11 +927,39 @@ public class S3Path extends CloudPath {
 
     @Override
     public AttributedList<Path> list(final AttributedList<Path> children) {
+        return this.list(children, true);
+    }
+
+    /**
+     * List this directory on a thread of its own. The working directory of the session is not
+     * changed and no progress or errors are reported.
+     *
+     * @see S3Session#list(java.util.List)
+     */
+    protected void prefetch() {
+        if(!this.isCached()) {
+            final AttributedList<Path> children = this.list(new AttributedList<Path>(), false);
+            if(!children.attributes().isReadable()) {
+                // Listed again and the error reported when traversed
+                children.attributes().setInvalid(true);
+            }
+            this.cache().put(this.getReference(), children);
+        }
+    }
+
+    /**
+     * @param children    The listing to add the objects and common prefixes to
+     * @param interactive Change the working directory of the session and report progress
+     * @return The listing
+     */
+    private AttributedList<Path> list(final AttributedList<Path> children, final boolean interactive) {
         if(this.attributes().isDirectory()) {
             try {
-                this.getSession().check();
-                this.getSession().message(MessageFormat.format(Locale.localizedString("Listing directory {0}", "Status"),
-                        this.getName()));
+                if(interactive) {
+                    this.getSession().check();
+                    this.getSession().message(MessageFormat.format(Locale.localizedString("Listing directory {0}", "Status"),
+                            this.getName()));
+                }
 
                 if(this.isRoot()) {
                     // List all buckets
@@ -895,28 +979,14 @@ public class S3Path extends CloudPath {
                 }
                 else {
                     final String container = this.getContainerName();
-                    // Keys can be listed by prefix. By choosing a common prefix
-                    // for the names of related keys and marking these keys with
-                    // a special character that delimits hierarchy, you can use the list
-                    // operation to select and browse keys hierarchically
-                    String prefix = StringUtils.EMPTY;
-                    if(!this.isContainer()) {
-                        // estricts the response to only contain results that begin with the
-                        // specified prefix. If you omit this optional argument, the value
-                        // of Prefix for your query will be the empty string.
-                        // In other words, the results will be not be restricted by prefix.
-                        prefix = this.getKey();
-                        if(!prefix.endsWith(String.valueOf(Path.DELIMITER))) {
-                            prefix += Path.DELIMITER;
-                        }
-                    }
+                    final String prefix = this.getPrefix();
                     // If this optional, Unicode string parameter is included with your request,
                     // then keys that contain the same string between the prefix and the first
                     // occurrence of the delimiter will be rolled up into a single result
                     // element in the CommonPrefixes collection. These rolled-up keys are
                     // not returned elsewhere in the response.
                     final String delimiter = String.valueOf(Path.DELIMITER);
-                    children.addAll(this.listObjects(container, prefix, delimiter));
+                    this.listObjects(container, prefix, delimiter, children, interactive);
                     if(Preferences.instance().getBoolean("s3.revisions.enable")) {
                         if(this.getSession().isVersioning(container)) {
                             String priorLastKey = null;
@@ -933,19 +1003,21 @@ public class S3Path extends CloudPath {
                     }
 
                 }
-                this.getSession().setWorkdir(this);
+                if(interactive) {
+                    this.getSession().setWorkdir(this);
+                }
             }
             catch(ServiceException e) {
                 log.warn("Listing directory failed:" + e.getMessage());
                 children.attributes().setReadable(false);
-                if(this.cache().isEmpty()) {
+                if(interactive && this.cache().isEmpty()) {
                     this.error(e.getMessage(), e);
                 }
             }
             catch(IOException e) {
                 log.warn("Listing directory failed:" + e.getMessage());
                 children.attributes().setReadable(false);
-                if(this.cache().isEmpty()) {
+                if(interactive && this.cache().isEmpty()) {
                     this.error(e.getMessage(), e);
                 }
             }
@@ -953,71 +1025,165 @@ public class S3Path extends CloudPath {
         return children;
     }
 
-    protected AttributedList<Path> listObjects(String bucket, String prefix, String delimiter)
+    /**
+     * Keys can be listed by prefix. By choosing a common prefix for the names of related keys
+     * and marking these keys with a special character that delimits hierarchy, you can use the
+     * list operation to select and browse keys hierarchically.
+     *
+     * @return Prefix of all keys below this directory. Empty for a bucket.
+     */
+    protected String getPrefix() {
+        if(this.isContainer()) {
+            // If you omit this optional argument, the value of Prefix for your query will
+            // be the empty string. In other words, the results will be not be restricted by prefix.
+            return StringUtils.EMPTY;
+        }
+        String prefix = this.getKey();
+        if(!prefix.endsWith(String.valueOf(Path.DELIMITER))) {
+            prefix += Path.DELIMITER;
+        }
+        return prefix;
+    }
+
+    /**
+     * Read the directory listing in chunks. The next chunk is already requested while the objects
+     * of the current chunk are added. If this directory is not cached yet, the incomplete listing
+     * is published to the cache after the first chunk to display it while the remaining chunks are
+     * read. It is marked invalid until complete and remains invalid if reading a chunk fails.
+     *
+     * @param bucket      The bucket name
+     * @param prefix      Only list keys starting with the prefix
+     * @param delimiter   Roll up keys containing the delimiter after the prefix
+     * @param children    The listing to add the objects and common prefixes to
+     * @param interactive Report the number of files listed
+     * @throws IOException      I/O failure
+     * @throws ServiceException Listing any chunk failed
+     */
+    protected void listObjects(final String bucket, final String prefix, final String delimiter,
+                               final AttributedList<Path> children, final boolean interactive)
             throws IOException, ServiceException {
-        final AttributedList<Path> children = new AttributedList<Path>();
-        // Null if listing is complete
-        String priorLastKey = null;
-        do {
-            // Read directory listing in chunks. List results are always returned
-            // in lexicographic (alphabetical) order.
-            StorageObjectsChunk chunk = this.getSession().getClient().listObjectsChunked(
-                    bucket, prefix, delimiter,
-                    Preferences.instance().getInteger("s3.listing.chunksize"), priorLastKey);
-
-            final StorageObject[] objects = chunk.getObjects();
-            for(StorageObject object : objects) {
-                final S3Path p = (S3Path) PathFactory.createPath(this.getSession(), bucket,
-                        object.getKey(), Path.FILE_TYPE);
-                p.setParent(this);
-                p.attributes().setSize(object.getContentLength());
-                p.attributes().setModificationDate(object.getLastModifiedDate().getTime());
-                // Directory placholders
-                if(object.isDirectoryPlaceholder()) {
-                    p.attributes().setType(Path.DIRECTORY_TYPE);
-                    p.attributes().setPlaceholder(true);
-                }
-                else if(0 == object.getContentLength()) {
-                    if("application/x-directory".equals(p.getDetails().getContentType())) {
-                        p.attributes().setType(Path.DIRECTORY_TYPE);
-                        p.attributes().setPlaceholder(true);
+        final int chunksize = Preferences.instance().getInteger("s3.listing.chunksize");
+        final boolean publish = !this.cache().containsKey(this.getReference());
+        // Read directory listing in chunks. List results are always returned
+        // in lexicographic (alphabetical) order.
+        StorageObjectsChunk chunk = this.getSession().getClient().listObjectsChunked(
+                bucket, prefix, delimiter, chunksize, null);
+        while(true) {
+            // Null if listing is complete
+            final String priorLastKey = chunk.getPriorLastKey();
+            Future<StorageObjectsChunk> next = null;
+            if(null != priorLastKey) {
+                next = prefetch.submit(new Callable<StorageObjectsChunk>() {
+                    public StorageObjectsChunk call() throws Exception {
+                        return getSession().getClient().listObjectsChunked(
+                                bucket, prefix, delimiter, chunksize, priorLastKey);
                     }
+                });
+            }
+            try {
+                this.add(bucket, chunk, children);
+            }
+            catch(IOException e) {
+                if(null != next) {
+                    next.cancel(true);
                 }
-                Object etag = object.getMetadataMap().get(StorageObject.METADATA_HEADER_ETAG);
-                if(null != etag) {
-                    String s = etag.toString().replaceAll("\"", "");
-                    p.attributes().setChecksum(s);
-                    if(s.equals("d66759af42f282e1ba19144df2d405d0")) {
-                        // Fix #5374 s3sync.rb interoperability
-                        p.attributes().setType(Path.DIRECTORY_TYPE);
-                        p.attributes().setPlaceholder(true);
-                    }
+                throw e;
+            }
+            catch(ServiceException e) {
+                if(null != next) {
+                    next.cancel(true);
+                }
+                throw e;
+            }
+            if(null == next) {
+                break;
+            }
+            if(publish && !this.cache().containsKey(this.getReference())) {
+                children.attributes().setInvalid(true);
+                this.cache().put(this.getReference(), children);
+            }
+            if(interactive) {
+                this.getSession().message(MessageFormat.format(Locale.localizedString("Listing directory {0} ({1} files)", "Status"),
+                        this.getName(), children.size()));
+            }
+            try {
+                chunk = next.get();
+            }
+            catch(InterruptedException e) {
+                next.cancel(true);
+                throw new ConnectionCanceledException(e.getMessage());
+            }
+            catch(ExecutionException e) {
+                log.warn("Listing chunk failed:" + e.getMessage());
+                if(e.getCause() instanceof ServiceException) {
+                    throw (ServiceException) e.getCause();
                 }
-                p.attributes().setStorageClass(object.getStorageClass());
-                if(object instanceof S3Object) {
-                    p.attributes().setVersionId(((S3Object) object).getVersionId());
+                if(e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
                 }
-                children.add(p);
+                throw new ConnectionCanceledException(e.getMessage());
             }
-            final String[] prefixes = chunk.getCommonPrefixes();
-            for(String common : prefixes) {
-                if(common.equals(String.valueOf(Path.DELIMITER))) {
-                    log.warn("Skipping prefix " + common);
-                    continue;
+        }
+        if(publish) {
+            // Complete after the last chunk
+            children.attributes().setInvalid(false);
+        }
+    }
+
+    /**
+     * Add the objects and common prefixes of a chunk to the listing
+     */
+    private void add(String bucket, StorageObjectsChunk chunk, AttributedList<Path> children)
+            throws IOException, ServiceException {
+        final StorageObject[] objects = chunk.getObjects();
+        for(StorageObject object : objects) {
+            final S3Path p = (S3Path) PathFactory.createPath(this.getSession(), bucket,
+                    object.getKey(), Path.FILE_TYPE);
+            p.setParent(this);
+            p.attributes().setSize(object.getContentLength());
+            p.attributes().setModificationDate(object.getLastModifiedDate().getTime());
+            // Directory placholders
+            if(object.isDirectoryPlaceholder()) {
+                p.attributes().setType(Path.DIRECTORY_TYPE);
+                p.attributes().setPlaceholder(true);
+            }
+            else if(0 == object.getContentLength()) {
+                if("application/x-directory".equals(p.getDetails().getContentType())) {
+                    p.attributes().setType(Path.DIRECTORY_TYPE);
+                    p.attributes().setPlaceholder(true);
                 }
-                final Path p = PathFactory.createPath(this.getSession(),
-                        bucket, common, Path.DIRECTORY_TYPE);
-                p.setParent(this);
-                if(children.contains(p.getReference())) {
-                    continue;
+            }
+            Object etag = object.getMetadataMap().get(StorageObject.METADATA_HEADER_ETAG);
+            if(null != etag) {
+                String s = etag.toString().replaceAll("\"", "");
+                p.attributes().setChecksum(s);
+                if(s.equals("d66759af42f282e1ba19144df2d405d0")) {
+                    // Fix #5374 s3sync.rb interoperability
+                    p.attributes().setType(Path.DIRECTORY_TYPE);
+                    p.attributes().setPlaceholder(true);
                 }
-                p.attributes().setPlaceholder(false);
-                children.add(p);
             }
-            priorLastKey = chunk.getPriorLastKey();
+            p.attributes().setStorageClass(object.getStorageClass());
+            if(object instanceof S3Object) {
+                p.attributes().setVersionId(((S3Object) object).getVersionId());
+            }
+            children.add(p);
+        }
+        final String[] prefixes = chunk.getCommonPrefixes();
+        for(String common : prefixes) {
+            if(common.equals(String.valueOf(Path.DELIMITER))) {
+                log.warn("Skipping prefix " + common);
+                continue;
+            }
+            final Path p = PathFactory.createPath(this.getSession(),
+                    bucket, common, Path.DIRECTORY_TYPE);
+            p.setParent(this);
+            if(children.contains(p.getReference())) {
+                continue;
+            }
+            p.attributes().setPlaceholder(false);
+            children.add(p);
         }
-        while(priorLastKey != null);
-        return children;
     }
 
     private List<Path> listVersions(String bucket, List<BaseVersionOrDeleteMarker> versionOrDeleteMarkers)
@@ -1199,29 +1365,50 @@ public class S3Path extends CloudPath {
                 this.delete(container, this.getKey(), this.attributes().getVersionId());
             }
             else if(attributes().isDirectory()) {
-                for(AbstractPath child : this.children()) {
-                    if(!this.getSession().isConnected()) {
-                        break;
+                if(this.getSession().isMultipleDeleteSupported()
+                        && !this.getSession().isMultiFactorAuthentication(container)) {
+                    final List<S3Session.ObjectKeyAndVersion> keys = new ArrayList<S3Session.ObjectKeyAndVersion>();
+                    final List<String> failures = new ArrayList<String>();
+                    // Delete keys in batches while traversing the tree
+                    this.delete(container, this, keys, failures);
+                    this.getSession().message(MessageFormat.format(Locale.localizedString("Deleting {0}", "Status"),
+                            this.getName()));
+                    this.delete(container, keys, failures);
+                    if(!failures.isEmpty()) {
+                        for(String failure : failures) {
+                            log.warn("Delete failed:" + failure);
+                        }
+                        throw new ServiceException(failures.size() + " objects not deleted. " + failures.get(0));
+                    }
+                    if(this.isContainer()) {
+                        this.getSession().getClient().deleteBucket(container);
                     }
-                    child.delete();
-                }
-                this.getSession().message(MessageFormat.format(Locale.localizedString("Deleting {0}", "Status"),
-                        this.getName()));
-                if(this.isContainer()) {
-                    this.getSession().getClient().deleteBucket(container);
                 }
                 else {
-                    try {
-                        // Because we normalize paths and remove a trailing delimiter we add it here again as the
-                        // default directory placeholder formats has the format `/placeholder/' as a key.
-                        this.delete(container, this.getKey() + Path.DELIMITER, this.attributes().getVersionId());
-                        // Always returning 204 even if the key does not exist.
-                        // Fallback to legacy directory placeholders with metadata instead of key with trailing delimiter
-                        this.delete(container, this.getKey(), attributes().getVersionId());
+                    for(AbstractPath child : this.children()) {
+                        if(!this.getSession().isConnected()) {
+                            break;
+                        }
+                        child.delete();
                     }
-                    catch(ServiceException e) {
-                        // AWS might change their mind and return 404 at some point for non-existing keys
-                        log.warn("Delete failed:" + e.getMessage());
+                    this.getSession().message(MessageFormat.format(Locale.localizedString("Deleting {0}", "Status"),
+                            this.getName()));
+                    if(this.isContainer()) {
+                        this.getSession().getClient().deleteBucket(container);
+                    }
+                    else {
+                        try {
+                            // Because we normalize paths and remove a trailing delimiter we add it here again as the
+                            // default directory placeholder formats has the format `/placeholder/' as a key.
+                            this.delete(container, this.getKey() + Path.DELIMITER, this.attributes().getVersionId());
+                            // Always returning 204 even if the key does not exist.
+                            // Fallback to legacy directory placeholders with metadata instead of key with trailing delimiter
+                            this.delete(container, this.getKey(), attributes().getVersionId());
+                        }
+                        catch(ServiceException e) {
+                            // AWS might change their mind and return 404 at some point for non-existing keys
+                            log.warn("Delete failed:" + e.getMessage());
+                        }
                     }
                 }
             }
@@ -1236,6 +1423,80 @@ public class S3Path extends CloudPath {
         }
     }
 
+    /**
+     * Maximum number of keys in a Multi-Object Delete request
+     */
+    private static final int MULTIPLE_DELETE_MAX = 1000;
+
+    /**
+     * Queue all files and directory placeholders below the directory for deletion.
+     *
+     * @param container The bucket name
+     * @param directory Directory to traverse
+     * @param keys      Keys not yet deleted
+     * @param failures  Keys that could not be deleted
+     * @throws ConnectionCanceledException
+     * @throws ServiceException
+     */
+    private void delete(String container, S3Path directory, List<S3Session.ObjectKeyAndVersion> keys,
+                        List<String> failures) throws ConnectionCanceledException, ServiceException {
+        for(AbstractPath c : directory.children()) {
+            if(!this.getSession().isConnected()) {
+                throw new ConnectionCanceledException();
+            }
+            final S3Path child = (S3Path) c;
+            if(child.attributes().isDirectory()) {
+                this.delete(container, child, keys, failures);
+            }
+            else {
+                this.getSession().message(MessageFormat.format(Locale.localizedString("Deleting {0}", "Status"),
+                        child.getName()));
+                this.delete(container, new S3Session.ObjectKeyAndVersion(child.getKey(),
+                        child.attributes().getVersionId()), keys, failures);
+            }
+        }
+        if(!directory.isContainer()) {
+            // Latest placeholder with and without trailing delimiter. Either may not exist.
+            this.delete(container, new S3Session.ObjectKeyAndVersion(directory.getKey() + Path.DELIMITER,
+                    null, true), keys, failures);
+            this.delete(container, new S3Session.ObjectKeyAndVersion(directory.getKey(),
+                    null, true), keys, failures);
+        }
+        directory.invalidate();
+    }
+
+    /**
+     * Add key to the batch and send the request when full.
+     */
+    private void delete(String container, S3Session.ObjectKeyAndVersion key, List<S3Session.ObjectKeyAndVersion> keys,
+                        List<String> failures) throws ConnectionCanceledException, ServiceException {
+        keys.add(key);
+        if(keys.size() == MULTIPLE_DELETE_MAX) {
+            this.delete(container, keys, failures);
+        }
+    }
+
+    /**
+     * Delete all keys of the batch with a single request.
+     *
+     * @param container The bucket name
+     * @param keys      Keys to delete. Cleared when deleted.
+     * @param failures  Keys that could not be deleted
+     * @throws ConnectionCanceledException
+     * @throws ServiceException            The request failed
+     */
+    private void delete(String container, List<S3Session.ObjectKeyAndVersion> keys,
+                        List<String> failures) throws ConnectionCanceledException, ServiceException {
+        if(keys.isEmpty()) {
+            return;
+        }
+        if(log.isInfoEnabled()) {
+            log.info("Delete " + keys.size() + " keys in " + container);
+        }
+        failures.addAll(this.getSession().getClient().deleteMultipleObjects(container, keys));
+        keys.clear();
+    }
+
     /**
      * @param container
      * @param key
@@ -1274,29 +1535,26 @@ public class S3Path extends CloudPath {
                 this.getSession().message(MessageFormat.format(Locale.localizedString("Renaming {0} to {1}", "Status"),
                         this.getName(), renamed));
 
-                final S3Object destination = new S3Object(((S3Path) renamed).getKey());
-                // Keep same storage class
-                destination.setStorageClass(this.attributes().getStorageClass());
-                // Apply non standard ACL
-                if(Acl.EMPTY.equals(this.attributes().getAcl())) {
-                    this.readAcl();
-                }
-                destination.setAcl(this.convert(this.attributes().getAcl()));
                 // Moving the object retaining the metadata of the original.
-                this.getSession().getClient().moveObject(this.getContainerName(), this.getKey(), ((S3Path) renamed).getContainerName(),
-                        destination, false);
+                this.copy(((S3Path) renamed).getContainerName(), ((S3Path) renamed).getKey(), true);
                 // The directory listing of the target is no more current
                 renamed.getParent().invalidate();
                 // The directory listing of the source is no more current
                 this.getParent().invalidate();
             }
             if(attributes().isDirectory()) {
-                for(AbstractPath i : this.children()) {
-                    if(!this.getSession().isConnected()) {
-                        break;
+                final int connections = Preferences.instance().getInteger("cloud.copy.connections");
+                if(connections > 1) {
+                    this.copy((S3Path) renamed, true, connections);
+                }
+                else {
+                    for(AbstractPath i : this.children()) {
+                        if(!this.getSession().isConnected()) {
+                            break;
+                        }
+                        i.rename(PathFactory.createPath(this.getSession(), renamed.getAbsolute(),
+                                i.getName(), i.attributes().getType()));
                     }
-                    i.rename(PathFactory.createPath(this.getSession(), renamed.getAbsolute(),
-                            i.getName(), i.attributes().getType()));
                 }
             }
         }
@@ -1318,28 +1576,25 @@ public class S3Path extends CloudPath {
                         this.getName(), copy));
 
                 if(this.attributes().isFile()) {
-                    S3Object destination = new S3Object(((S3Path) copy).getKey());
-                    // Keep same storage class
-                    destination.setStorageClass(this.attributes().getStorageClass());
-                    // Apply non standard ACL
-                    if(Acl.EMPTY.equals(this.attributes().getAcl())) {
-                        this.readAcl();
-                    }
-                    destination.setAcl(this.convert(this.attributes().getAcl()));
                     // Copying object applying the metadata of the original
-                    this.getSession().getClient().copyObject(this.getContainerName(), this.getKey(),
-                            ((S3Path) copy).getContainerName(), destination, false);
+                    this.copy(((S3Path) copy).getContainerName(), ((S3Path) copy).getKey(), false);
                 }
                 else if(this.attributes().isDirectory()) {
-                    for(AbstractPath i : this.children()) {
-                        if(!this.getSession().isConnected()) {
-                            break;
+                    final int connections = Preferences.instance().getInteger("cloud.copy.connections");
+                    if(connections > 1) {
+                        this.copy((S3Path) copy, false, connections);
+                    }
+                    else {
+                        for(AbstractPath i : this.children()) {
+                            if(!this.getSession().isConnected()) {
+                                break;
+                            }
+                            S3Path destination = (S3Path) PathFactory.createPath(this.getSession(), copy.getAbsolute(),
+                                    i.getName(), i.attributes().getType());
+                            // Apply storage class of parent directory
+                            ((S3Path) i).attributes().setStorageClass(this.attributes().getStorageClass());
+                            i.copy(destination);
                         }
-                        S3Path destination = (S3Path) PathFactory.createPath(this.getSession(), copy.getAbsolute(),
-                                i.getName(), i.attributes().getType());
-                        // Apply storage class of parent directory
-                        ((S3Path) i).attributes().setStorageClass(this.attributes().getStorageClass());
-                        i.copy(destination);
                     }
                 }
                 // The directory listing is no more current
@@ -1358,6 +1613,114 @@ public class S3Path extends CloudPath {
         }
     }
 
+    /**
+     * Maximum size of an object copied with a single PUT Object - Copy request
+     */
+    private static final long MAXIMUM_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+
+    /**
+     * Minimum part size when copying objects larger than the maximum size of a single copy request
+     */
+    private static final long DEFAULT_COPY_PART_SIZE = 512L * 1024 * 1024;
+
+    /**
+     * Server side copy of this file or placeholder retaining the metadata of the original. Keeps
+     * the storage class and applies the ACL of the original.
+     *
+     * @param bucket Bucket of the copy
+     * @param key    Key of the copy
+     * @param move   Delete the original after it has been copied
+     * @throws ServiceException The request failed
+     * @throws IOException      I/O failure
+     */
+    private void copy(String bucket, String key, boolean move) throws ServiceException, IOException {
+        final S3Object destination = new S3Object(key);
+        // Keep same storage class
+        destination.setStorageClass(this.attributes().getStorageClass());
+        // Apply non standard ACL
+        if(Acl.EMPTY.equals(this.attributes().getAcl())) {
+            this.readAcl();
+        }
+        destination.setAcl(this.convert(this.attributes().getAcl()));
+        final long size = this.attributes().getSize();
+        if(size > MAXIMUM_COPY_SIZE && this.getSession().isMultipartUploadSupported()) {
+            this.getSession().getClient().multipartCopyObject(this.getContainerName(), this.getKey(),
+                    bucket, destination, size, Math.max(DEFAULT_COPY_PART_SIZE, size / MAXIMUM_UPLOAD_PARTS + 1));
+            if(move) {
+                this.getSession().getClient().deleteObject(this.getContainerName(), this.getKey());
+            }
+        }
+        else if(move) {
+            this.getSession().getClient().moveObject(this.getContainerName(), this.getKey(), bucket, destination, false);
+        }
+        else {
+            this.getSession().getClient().copyObject(this.getContainerName(), this.getKey(), bucket, destination, false);
+        }
+    }
+
+    /**
+     * Copy all files below this directory concurrently with pooled sessions.
+     *
+     * @param destination Target directory
+     * @param move        Delete the originals after they have been copied including placeholders
+     * @param connections Number of sessions to send copy requests on
+     * @throws IOException Copying any of the objects failed
+     */
+    private void copy(final S3Path destination, final boolean move, final int connections) throws IOException {
+        final SessionPoolExecutor executor = new SessionPoolExecutor(this.getSession(), connections);
+        try {
+            this.copy(this, destination, move, executor);
+        }
+        finally {
+            executor.await();
+        }
+    }
+
+    private void copy(final S3Path directory, final S3Path destination, final boolean move,
+                      final SessionPoolExecutor executor) throws ConnectionCanceledException {
+        for(AbstractPath c : directory.children()) {
+            if(!this.getSession().isConnected()) {
+                throw new ConnectionCanceledException();
+            }
+            final S3Path child = (S3Path) c;
+            final S3Path target = (S3Path) PathFactory.createPath(this.getSession(), destination.getAbsolute(),
+                    child.getName(), child.attributes().getType());
+            if(!move) {
+                // Apply storage class of parent directory
+                child.attributes().setStorageClass(directory.attributes().getStorageClass());
+            }
+            if(child.attributes().isFile() || (move && child.attributes().isPlaceholder())) {
+                this.getSession().message(MessageFormat.format(Locale.localizedString("Copying {0} to {1}", "Status"),
+                        child.getName(), target));
+                final String bucket = target.getContainerName();
+                final String key = target.getKey();
+                executor.execute(child.getKey(), new SessionPoolExecutor.Request() {
+                    public void run(Session session) throws IOException {
+                        final S3Path source = (S3Path) PathFactory.createPath(session, child.getAbsolute(),
+                                child.attributes().getType());
+                        source.attributes().setSize(child.attributes().getSize());
+                        source.attributes().setStorageClass(child.attributes().getStorageClass());
+                        source.attributes().setAcl(child.attributes().getAcl());
+                        source.attributes().setVersionId(child.attributes().getVersionId());
+                        try {
+                            source.copy(bucket, key, move);
+                        }
+                        catch(ServiceException e) {
+                            throw new IOException(e.getMessage());
+                        }
+                    }
+                });
+            }
+            if(child.attributes().isDirectory()) {
+                this.copy(child, target, move, executor);
+            }
+        }
+        if(move) {
+            // The directory listing is no more current
+            directory.invalidate();
+        }
+    }
+
     /**
      * Overwritten to provide publicy accessible URL of given object
      *
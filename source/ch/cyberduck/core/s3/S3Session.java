@@ -27,13 +27,20 @@ import ch.cyberduck.core.cloudfront.CloudFrontDistributionConfiguration;
 import ch.cyberduck.core.i18n.Locale;
 import ch.cyberduck.core.threading.BackgroundException;
 
+import org.apache.commons.httpclient.HttpMethodBase;
 import org.apache.commons.httpclient.auth.AuthScheme;
 import org.apache.commons.httpclient.auth.CredentialsNotAvailableException;
 import org.apache.commons.httpclient.auth.CredentialsProvider;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
+import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.RequestEntity;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.Element;
+import org.dom4j.io.SAXReader;
 import org.jets3t.service.Jets3tProperties;
 import org.jets3t.service.S3ServiceException;
 import org.jets3t.service.ServiceException;
@@ -43,11 +50,19 @@ import org.jets3t.service.model.*;
 import org.jets3t.service.model.cloudfront.CustomOrigin;
 import org.jets3t.service.security.AWSCredentials;
 import org.jets3t.service.security.ProviderCredentials;
+import org.jets3t.service.utils.RestUtils;
 import org.jets3t.service.utils.ServiceUtils;
 
+import com.jamesmurty.utils.XMLBuilder;
+
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Connecting to S3 service with plain HTTP.
@@ -119,6 +134,206 @@ public class S3Session extends CloudHTTP3Session {
         public void verifyExpectedAndActualETagValues(String expectedETag, StorageObject uploadedObject) throws ServiceException {
             super.verifyExpectedAndActualETagValues(expectedETag, uploadedObject);
         }
+
+        /**
+         * Include the Multi-Object Delete sub-resource in the signature
+         */
+        @Override
+        public List<String> getResourceParameterNames() {
+            final List<String> names = new ArrayList<String>(super.getResourceParameterNames());
+            names.add("delete");
+            return names;
+        }
+
+        /**
+         * Delete multiple objects with a single request using the Multi-Object Delete API.
+         * Only keys that could not be deleted are returned by the server.
+         *
+         * @param bucketName The bucket name
+         * @param keys       Up to 1000 keys with optional version
+         * @return Failure description for every key not deleted. Empty if all keys are deleted.
+         *         Optional keys not found are not included.
+         * @throws ServiceException The request failed as a whole
+         */
+        public List<String> deleteMultipleObjects(String bucketName, List<ObjectKeyAndVersion> keys) throws ServiceException {
+            final byte[] body;
+            final Set<String> optional = new HashSet<String>();
+            try {
+                XMLBuilder builder = XMLBuilder.create("Delete").e("Quiet").t("true").up();
+                for(ObjectKeyAndVersion key : keys) {
+                    if(key.isOptional()) {
+                        optional.add(key.getKey());
+                    }
+                    XMLBuilder object = builder.e("Object").e("Key").t(key.getKey()).up();
+                    if(StringUtils.isNotEmpty(key.getVersion())) {
+                        object.e("VersionId").t(key.getVersion());
+                    }
+                }
+                body = builder.asString().getBytes("UTF-8");
+            }
+            catch(Exception e) {
+                throw new ServiceException("Failed to build request document", e);
+            }
+            final Map<String, Object> metadata = new HashMap<String, Object>();
+            metadata.put("Content-Type", "application/xml");
+            try {
+                metadata.put("Content-MD5", ServiceUtils.toBase64(ServiceUtils.computeMD5Hash(body)));
+            }
+            catch(Exception e) {
+                throw new ServiceException("Failed to compute checksum", e);
+            }
+            final Map<String, String> parameters = new HashMap<String, String>();
+            parameters.put("delete", "");
+            final PostMethod method = this.performRestPost(bucketName, null, metadata, parameters,
+                    new ByteArrayRequestEntity(body, "application/xml"), false);
+            try {
+                final Document document = new SAXReader().read(method.getResponseBodyAsStream());
+                final List<String> failures = new ArrayList<String>();
+                for(Object e : document.getRootElement().elements("Error")) {
+                    final Element error = (Element) e;
+                    if("NoSuchKey".equals(error.elementText("Code")) && optional.contains(error.elementText("Key"))) {
+                        log.debug("Ignore missing key " + error.elementText("Key"));
+                        continue;
+                    }
+                    failures.add(error.elementText("Key") + " (" + error.elementText("Code") + "): "
+                            + error.elementText("Message"));
+                }
+                return failures;
+            }
+            catch(DocumentException e) {
+                throw new ServiceException("Failed to parse response", e);
+            }
+            catch(IOException e) {
+                throw new ServiceException(e.getMessage(), e);
+            }
+            finally {
+                method.releaseConnection();
+            }
+        }
+
+        /**
+         * Server side copy of an object larger than the maximum size supported by a single PUT Object - Copy
+         * request. Ranges of the original are copied to the parts of a multipart upload with Upload Part - Copy
+         * requests.
+         *
+         * @param sourceBucketName      Bucket of the original
+         * @param sourceObjectKey       Key of the original
+         * @param destinationBucketName Bucket of the copy
+         * @param destination           Key, storage class and ACL of the copy
+         * @param length                Size of the original
+         * @param partSize              Number of bytes to copy with a single request
+         * @throws ServiceException Copying any of the parts failed
+         */
+        public void multipartCopyObject(String sourceBucketName, String sourceObjectKey,
+                                        String destinationBucketName, S3Object destination,
+                                        long length, long partSize) throws ServiceException {
+            // Metadata is not copied to a multipart upload
+            final StorageObject original = this.getObjectDetails(sourceBucketName, sourceObjectKey);
+            final MultipartUpload upload = this.multipartStartUpload(destinationBucketName, destination.getKey(),
+                    original.getModifiableMetadata(), destination.getAcl(), destination.getStorageClass());
+            try {
+                final List<MultipartPart> parts = new ArrayList<MultipartPart>();
+                int partNumber = 1;
+                for(long offset = 0; offset < length; offset += partSize) {
+                    parts.add(this.multipartUploadPartCopy(upload, partNumber++, sourceBucketName, sourceObjectKey,
+                            offset, Math.min(length, offset + partSize) - 1));
+                }
+                this.multipartCompleteUpload(upload, parts);
+            }
+            catch(ServiceException e) {
+                log.warn("Cancel multipart copy:" + upload.getUploadId());
+                this.multipartAbortUpload(upload);
+                throw e;
+            }
+        }
+
+        /**
+         * Upload Part - Copy
+         *
+         * @param upload           The multipart upload of the copy
+         * @param partNumber       Part number starting with 1
+         * @param sourceBucketName Bucket of the original
+         * @param sourceObjectKey  Key of the original
+         * @param start            First byte of the range to copy
+         * @param end              Last byte of the range to copy
+         * @return The part copied
+         * @throws ServiceException The request failed
+         */
+        public MultipartPart multipartUploadPartCopy(MultipartUpload upload, Integer partNumber,
+                                                     String sourceBucketName, String sourceObjectKey,
+                                                     long start, long end) throws ServiceException {
+            final Map<String, Object> metadata = new HashMap<String, Object>();
+            metadata.put(this.getRestHeaderPrefix() + "copy-source",
+                    RestUtils.encodeUrlString(sourceBucketName + "/" + sourceObjectKey));
+            metadata.put(this.getRestHeaderPrefix() + "copy-source-range", "bytes=" + start + "-" + end);
+            final Map<String, String> parameters = new HashMap<String, String>();
+            parameters.put("partNumber", String.valueOf(partNumber));
+            parameters.put("uploadId", upload.getUploadId());
+            final HttpMethodBase method = this.performRestPut(upload.getBucketName(), upload.getObjectKey(),
+                    metadata, parameters, null, false).getHttpMethod();
+            try {
+                // Failures may be returned with status 200 OK
+                final Element result = new SAXReader().read(method.getResponseBodyAsStream()).getRootElement();
+                if(!"CopyPartResult".equals(result.getName())) {
+                    throw new ServiceException("Copy of part " + partNumber + " failed: "
+                            + result.elementText("Code") + " " + result.elementText("Message"));
+                }
+                return new MultipartPart(partNumber, new Date(), result.elementText("ETag"), end - start + 1);
+            }
+            catch(DocumentException e) {
+                throw new ServiceException("Failed to parse response", e);
+            }
+            catch(IOException e) {
+                throw new ServiceException(e.getMessage(), e);
+            }
+            finally {
+                method.releaseConnection();
+            }
+        }
+    }
+
+    /**
+     * Object to delete with a Multi-Object Delete request
+     */
+    public static class ObjectKeyAndVersion {
+        private String key;
+        private String version;
+
+        /**
+         * Not reported as failure if the key does not exist
+         */
+        private boolean optional;
+
+        /**
+         * @param key     The object key
+         * @param version Version or null to delete the latest version
+         */
+        public ObjectKeyAndVersion(String key, String version) {
+            this(key, version, false);
+        }
+
+        /**
+         * @param key      The object key
+         * @param version  Version or null to delete the latest version
+         * @param optional Ignore if the key does not exist
+         */
+        public ObjectKeyAndVersion(String key, String version, boolean optional) {
+            this.key = key;
+            this.version = version;
+            this.optional = optional;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public boolean isOptional() {
+            return optional;
+        }
     }
 
     /**
@@ -499,6 +714,67 @@ public class S3Session extends CloudHTTP3Session {
         return false;
     }
 
+    /**
+     * @return True if multiple objects can be deleted with a single request
+     * @see RequestEntityRestStorageService#deleteMultipleObjects(String, java.util.List)
+     */
+    public boolean isMultipleDeleteSupported() {
+        if(host.getHostname().equals(Protocol.S3_SSL.getDefaultHostname())) {
+            return Preferences.instance().getBoolean("s3.delete.multiple");
+        }
+        return false;
+    }
+
+    /**
+     * List the directories concurrently on multiple connections of the client. The listings of
+     * subdirectories are partitioned by their common prefix.
+     *
+     * @param directories Directories of this session not cached yet
+     */
+    @Override
+    public void list(List<Path> directories) {
+        final int concurrency = Math.min(directories.size(),
+                Preferences.instance().getInteger("s3.listing.concurrency"));
+        if(concurrency < 2) {
+            return;
+        }
+        if(Preferences.instance().getBoolean("s3.revisions.enable")) {
+            for(Path directory : directories) {
+                // Versioning status is not read concurrently
+                this.isVersioning(((S3Path) directory).getContainerName());
+            }
+        }
+        final ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        try {
+            final List<Future<Void>> listings = new ArrayList<Future<Void>>();
+            for(final Path directory : directories) {
+                listings.add(pool.submit(new Callable<Void>() {
+                    public Void call() {
+                        // Leave the working directory and progress to the thread traversing
+                        ((S3Path) directory).prefetch();
+                        return null;
+                    }
+                }));
+            }
+            for(Future<Void> listing : listings) {
+                try {
+                    listing.get();
+                }
+                catch(InterruptedException e) {
+                    log.warn("Listing directories interrupted:" + e.getMessage());
+                    break;
+                }
+                catch(ExecutionException e) {
+                    // Listed again when traversed
+                    log.warn("Listing directory failed:" + e.getMessage());
+                }
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
     /**
      * Creating files is only possible inside a bucket.
      *
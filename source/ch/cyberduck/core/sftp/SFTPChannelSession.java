@@ -0,0 +1,96 @@
+package ch.cyberduck.core.sftp;
+
+/*
+ *  Copyright (c) 2010 David Kocher. All rights reserved.
+ *  http://cyberduck.ch/
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Bug fixes, suggestions and comments should be sent to:
+ *  dkocher@cyberduck.ch
+ */
+
+import ch.cyberduck.core.ConnectionCanceledException;
+import ch.cyberduck.core.LoginCanceledException;
+import ch.ethz.ssh2.Connection;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+
+/**
+ * Session with its own SFTP subsystem channel multiplexed over the authenticated
+ * SSH connection of a parent session. Allows concurrent SFTP operations without
+ * additional logins and key exchanges. The connection is only ever opened and closed
+ * by the parent session.
+ *
+ * @version $Id$
+ */
+public class SFTPChannelSession extends SFTPSession {
+    private static Logger log = Logger.getLogger(SFTPChannelSession.class);
+
+    private SFTPSession parent;
+
+    public SFTPChannelSession(SFTPSession parent) {
+        super(parent.getHost());
+        this.parent = parent;
+    }
+
+    @Override
+    protected Connection getClient() throws ConnectionCanceledException {
+        return parent.getClient();
+    }
+
+    /**
+     * Does not reconnect if the connection of the parent session has been closed.
+     *
+     * @throws ConnectionCanceledException The parent session is not connected
+     * @throws LoginCanceledException      The parent session is not authenticated
+     */
+    @Override
+    protected void connect() throws IOException {
+        if(!this.getClient().isAuthenticationComplete()) {
+            throw new LoginCanceledException();
+        }
+    }
+
+    /**
+     * Only closes the SFTP subsystem channel of this session.
+     */
+    @Override
+    public void close() {
+        if(log.isDebugEnabled()) {
+            log.debug("Close channel for " + this.getHost());
+        }
+        this.closeSubsystem();
+    }
+
+    /**
+     * Only closes the SFTP subsystem channel of this session.
+     */
+    @Override
+    public void interrupt() {
+        this.closeSubsystem();
+    }
+
+    /**
+     * @return Zero as channels cannot be nested
+     */
+    @Override
+    public int getMaxChannels() {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Channel " + super.toString();
+    }
+}
@@ -422,6 +422,19 @@ public class SFTPPath extends Path {
         }
     }
 
+    /**
+     * Log the number of bytes in flight achieved by the SFTP request pipeline
+     *
+     * @throws IOException
+     */
+    private void statistics() throws IOException {
+        final SFTPv3Client client = this.getSession().sftp();
+        log.debug("Pipeline statistics for " + this.getName() + ": average " + client.getAverageBytesInflight()
+                + " bytes in flight, maximum " + client.getMaxBytesInflight() + " bytes, round trip time "
+                + client.getRoundTripTime() + "ms, request size " + client.getRequestSize()
+                + " bytes, channel window " + client.getWindowSize() + " bytes");
+    }
+
     @Override
     protected void download(BandwidthThrottle throttle, StreamListener listener, final boolean check) {
         if(this.attributes().isFile()) {
@@ -454,6 +467,9 @@ public class SFTPPath extends Path {
                         (int) (this.attributes().getSize() / Preferences.instance().getInteger("connection.chunksize")) + 1
                 );
                 this.download(in, out, throttle, listener);
+                if(log.isDebugEnabled()) {
+                    this.statistics();
+                }
             }
             catch(IOException e) {
                 this.error("Download failed", e);
@@ -563,6 +579,9 @@ public class SFTPPath extends Path {
                         (int) (this.attributes().getSize() / Preferences.instance().getInteger("connection.chunksize")) + 1
                 );
                 this.upload(out, in, throttle, listener);
+                if(log.isDebugEnabled()) {
+                    this.statistics();
+                }
             }
             catch(IOException e) {
                 this.error("Upload failed", e);
@@ -23,10 +23,12 @@ import ch.cyberduck.core.Session;
 import ch.cyberduck.core.i18n.Locale;
 import ch.ethz.ssh2.*;
 import ch.ethz.ssh2.channel.ChannelClosedException;
+import ch.ethz.ssh2.crypto.JCEProvider;
 import ch.ethz.ssh2.crypto.PEMDecoder;
 import ch.ethz.ssh2.crypto.PEMDecryptException;
 import ch.ethz.ssh2.sftp.PacketListener;
 import ch.ethz.ssh2.sftp.SFTPv3Client;
+import ch.ethz.ssh2.sftp.SFTPv3FileAttributes;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -35,6 +37,8 @@ import org.kohsuke.putty.PuTTYKey;
 import org.spearce.jgit.transport.OpenSshConfig;
 
 import java.io.*;
+import java.text.MessageFormat;
+import java.util.List;
 
 /**
  * @version $Id$
@@ -108,10 +112,74 @@ public class SFTPSession extends Session {
             });
             this.message(Locale.localizedString("SFTP subsystem ready", "Status"));
             SFTP.setCharset(this.getEncoding());
+            SFTP.setAdaptivePipelining(Preferences.instance().getBoolean("ssh.sftp.pipeline.adaptive"),
+                    Preferences.instance().getInteger("ssh.sftp.pipeline.request.max"));
         }
         return SFTP;
     }
 
+    /**
+     * Close the SFTP subsystem channel leaving the SSH connection open.
+     */
+    protected void closeSubsystem() {
+        try {
+            if(SFTP != null) {
+                SFTP.close();
+            }
+        }
+        finally {
+            SFTP = null;
+        }
+    }
+
+    @Override
+    public int getMaxChannels() {
+        return Preferences.instance().getInteger("ssh.sftp.channels.max");
+    }
+
+    /**
+     * @return A session opening its own SFTP subsystem over the connection of this session
+     */
+    @Override
+    public Session createPooledSession() {
+        if(this.getMaxChannels() > 0) {
+            return new SFTPChannelSession(this);
+        }
+        return super.createPooledSession();
+    }
+
+    /**
+     * Pipeline SSH_FXP_STAT requests for all files instead of a round trip per file.
+     *
+     * @param files Files of this session with unknown attributes
+     */
+    @Override
+    public void readAttributes(List<Path> files) {
+        if(files.isEmpty()) {
+            return;
+        }
+        try {
+            this.check();
+            this.message(MessageFormat.format(Locale.localizedString("Getting timestamp of {0}", "Status"),
+                    files.get(0).getParent().getName()));
+            final String[] paths = new String[files.size()];
+            for(int i = 0; i < paths.length; i++) {
+                paths[i] = files.get(i).getAbsolute();
+            }
+            final SFTPv3FileAttributes[] attributes = this.sftp().stat(paths, true,
+                    Preferences.instance().getInteger("ssh.sftp.pipeline.stat"));
+            for(int i = 0; i < attributes.length; i++) {
+                if(null == attributes[i]) {
+                    continue;
+                }
+                ((SFTPPath) files.get(i)).readAttributes(attributes[i]);
+            }
+        }
+        catch(IOException e) {
+            this.error("Cannot read file attributes", e);
+        }
+    }
+
     /**
      * Opens a new, dedicated SCP channel for this SSH session
      *
@@ -136,6 +204,7 @@ public class SFTPSession extends Session {
         }
         this.fireConnectionWillOpenEvent();
 
+        JCEProvider.setEnabled(Preferences.instance().getBoolean("ssh.crypto.jce"));
         SSH = new Connection(this.getHostname(), host.getPort(), this.getUserAgent());
         SSH.addConnectionMonitor(new ConnectionMonitor() {
             public void connectionLost(Throwable reason) {
@@ -143,6 +212,10 @@ public class SFTPSession extends Session {
                 interrupt();
             }
         });
+        SSH.setChannelWindowSize(Preferences.instance().getInteger("ssh.channel.window"),
+                Preferences.instance().getInteger("ssh.channel.window.max"));
+        SSH.setCompression(null == host.getCompression() ?
+                Preferences.instance().getBoolean("ssh.compression") : host.getCompression());
 
         final int timeout = this.timeout();
         this.getClient().connect(HostKeyControllerFactory.instance(this), timeout, timeout);
@@ -364,6 +437,9 @@ public class SFTPSession extends Session {
     public void close() {
         try {
             this.fireConnectionWillCloseEvent();
+            if(log.isInfoEnabled() && this.isConnected()) {
+                log.info("Compression:" + this.getClient().getCompressionStatistics());
+            }
             if(SFTP != null) {
                 SFTP.close();
             }
@@ -0,0 +1,104 @@
+package ch.cyberduck.core.ssl;
+
+/*
+ *  Copyright (c) 2010 David Kocher. All rights reserved.
+ *  http://cyberduck.ch/
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Bug fixes, suggestions and comments should be sent to:
+ *  dkocher@cyberduck.ch
+ */
+
+import org.apache.log4j.Logger;
+
+import javax.net.ssl.SSLSocket;
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts TLS handshakes negotiating a new session and handshakes resuming a session
+ * negotiated previously.
+ *
+ * @version $Id$
+ */
+public final class SSLHandshakeCounter {
+    private static Logger log = Logger.getLogger(SSLHandshakeCounter.class);
+
+    private SSLHandshakeCounter() {
+        //
+    }
+
+    /**
+     * Number of handshakes negotiating a new session
+     */
+    private static final AtomicInteger full = new AtomicInteger();
+
+    /**
+     * Number of handshakes resuming a cached session
+     */
+    private static final AtomicInteger abbreviated = new AtomicInteger();
+
+    /**
+     * Identifiers of sessions negotiated recently
+     */
+    private static final Map<String, Boolean> sessions = new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return this.size() > 100;
+        }
+    };
+
+    /**
+     * Completes the handshake if not done already and counts whether the session was resumed.
+     *
+     * @param socket Connected socket
+     */
+    public static void handshake(SSLSocket socket) {
+        final javax.net.ssl.SSLSession session = socket.getSession();
+        if(!session.isValid()) {
+            log.warn("Handshake failed for " + socket);
+            return;
+        }
+        final String id = new BigInteger(1, session.getId()).toString(16);
+        final boolean resumed;
+        synchronized(sessions) {
+            resumed = null != sessions.put(id, Boolean.TRUE);
+        }
+        if(resumed) {
+            abbreviated.incrementAndGet();
+        }
+        else {
+            full.incrementAndGet();
+        }
+        if(log.isDebugEnabled()) {
+            log.debug((resumed ? "Resumed" : "Negotiated") + " TLS session " + id + " with "
+                    + session.getPeerHost() + ":" + session.getPeerPort()
+                    + " [full: " + full.get() + "; abbreviated: " + abbreviated.get() + "]");
+        }
+    }
+
+    /**
+     * @return Number of handshakes negotiating a new session
+     */
+    public static int getFullHandshakes() {
+        return full.get();
+    }
+
+    /**
+     * @return Number of handshakes resuming a previous session
+     */
+    public static int getAbbreviatedHandshakes() {
+        return abbreviated.get();
+    }
+}
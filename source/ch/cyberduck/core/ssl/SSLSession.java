@@ -19,8 +19,12 @@ package ch.cyberduck.core.ssl;
  */
 
 import ch.cyberduck.core.Host;
+import ch.cyberduck.core.Preferences;
 import ch.cyberduck.core.Session;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.X509TrustManager;
+import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.*;
 
@@ -44,15 +48,62 @@ public abstract class SSLSession extends Session {
     }
 
     public AbstractX509TrustManager getTrustManager(final String hostname) {
-        if(!trust.containsKey(hostname)) {
-            trust.put(hostname, new KeychainX509TrustManager() {
-                @Override
-                public String getHostname() {
-                    return hostname;
+        synchronized(trust) {
+            if(!trust.containsKey(hostname)) {
+                trust.put(hostname, new KeychainX509TrustManager() {
+                    @Override
+                    public String getHostname() {
+                        return hostname;
+                    }
+                });
+            }
+            return trust.get(hostname);
+        }
+    }
+
+    /**
+     * Context of all connections of this session. A TLS session is only resumed by the context
+     * that negotiated it.
+     */
+    private SSLContext context;
+
+    /**
+     * @return Context reused when reconnecting and shared with pooled sessions to resume the
+     *         TLS session. Certificates are verified by the trust manager of this session.
+     */
+    public synchronized SSLContext getSSLContext() {
+        if(null == context || !Preferences.instance().getBoolean("connection.ssl.session.cache")) {
+            context = new CustomTrustSSLProtocolSocketFactory(new X509TrustManager() {
+                public void checkClientTrusted(X509Certificate[] x509Certificates, String authType)
+                        throws CertificateException {
+                    SSLSession.this.getTrustManager().checkClientTrusted(x509Certificates, authType);
+                }
+
+                public void checkServerTrusted(X509Certificate[] x509Certificates, String authType)
+                        throws CertificateException {
+                    SSLSession.this.getTrustManager().checkServerTrusted(x509Certificates, authType);
                 }
-            });
+
+                public X509Certificate[] getAcceptedIssuers() {
+                    return SSLSession.this.getTrustManager().getAcceptedIssuers();
+                }
+            }).getSSLContext();
         }
-        return trust.get(hostname);
+        return context;
+    }
+
+    /**
+     * @return A session to the same host sharing the SSL context of this session
+     */
+    @Override
+    public Session createPooledSession() {
+        final Session session = super.createPooledSession();
+        if(session instanceof SSLSession) {
+            synchronized(session) {
+                ((SSLSession) session).context = this.getSSLContext();
+            }
+        }
+        return session;
     }
 
     /**
@@ -60,15 +111,19 @@ public abstract class SSLSession extends Session {
      */
     public List<X509Certificate> getAcceptedIssuers() {
         List<X509Certificate> accepted = new ArrayList<X509Certificate>();
-        for(AbstractX509TrustManager m : trust.values()) {
-            accepted.addAll(Arrays.asList(m.getAcceptedIssuers()));
+        synchronized(trust) {
+            for(AbstractX509TrustManager m : trust.values()) {
+                accepted.addAll(Arrays.asList(m.getAcceptedIssuers()));
+            }
         }
         return accepted;
     }
 
     @Override
     protected void fireConnectionDidCloseEvent() {
-        trust.clear();
+        synchronized(trust) {
+            trust.clear();
+        }
         super.fireConnectionDidCloseEvent();
     }
 }
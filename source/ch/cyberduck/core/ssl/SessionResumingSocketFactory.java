@@ -0,0 +1,106 @@
+package ch.cyberduck.core.ssl;
+
+/*
+ *  Copyright (c) 2010 David Kocher. All rights reserved.
+ *  http://cyberduck.ch/
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Bug fixes, suggestions and comments should be sent to:
+ *  dkocher@cyberduck.ch
+ */
+
+import org.apache.log4j.Logger;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Opens secure connections resuming the TLS session of another connection such as the data
+ * connections of a FTPS control connection. Some servers refuse data connections not reusing
+ * the session of the control connection. JSSE looks up the session to resume by the host and
+ * port of the peer. Every connection is therefore layered over a socket reporting the port
+ * of the connection whose session is resumed.
+ *
+ * @version $Id$
+ */
+public class SessionResumingSocketFactory extends SocketFactory {
+    private static Logger log = Logger.getLogger(SessionResumingSocketFactory.class);
+
+    /**
+     * Context that negotiated the session to resume
+     */
+    private SSLContext context;
+
+    /**
+     * Connection whose session is resumed
+     */
+    private SSLSocket control;
+
+    /**
+     * @param context Context of the connection whose session is resumed
+     * @param control Connection whose session is resumed
+     */
+    public SessionResumingSocketFactory(SSLContext context, SSLSocket control) {
+        this.context = context;
+        this.control = control;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return this.createSocket(host, port, null, 0);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return this.layer(new InetSocketAddress(host, port), localHost, localPort);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return this.createSocket(host, port, null, 0);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port, InetAddress localHost, int localPort) throws IOException {
+        return this.layer(new InetSocketAddress(host, port), localHost, localPort);
+    }
+
+    private Socket layer(InetSocketAddress address, InetAddress localHost, int localPort) throws IOException {
+        final javax.net.ssl.SSLSession session = control.getSession();
+        if(null == session.getPeerHost() || session.getPeerPort() < 0) {
+            log.warn("No session to resume for connection to " + address);
+            final Socket socket = new Socket();
+            socket.bind(new InetSocketAddress(localHost, localPort));
+            socket.connect(address);
+            return context.getSocketFactory().createSocket(socket, address.getAddress().getHostAddress(), address.getPort(), true);
+        }
+        final int port = session.getPeerPort();
+        final Socket socket = new Socket() {
+            @Override
+            public int getPort() {
+                // Key of the session in the cache of the context
+                return port;
+            }
+        };
+        socket.bind(new InetSocketAddress(localHost, localPort));
+        socket.connect(address);
+        if(log.isDebugEnabled()) {
+            log.debug("Resume session with " + session.getPeerHost() + ":" + port + " for connection to " + address);
+        }
+        return context.getSocketFactory().createSocket(socket, session.getPeerHost(), port, true);
+    }
+}
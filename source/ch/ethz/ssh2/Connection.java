@@ -11,7 +11,10 @@ import java.security.SecureRandom;
 import java.util.Vector;
 
 import ch.ethz.ssh2.auth.AuthenticationManager;
+import ch.ethz.ssh2.channel.Channel;
 import ch.ethz.ssh2.channel.ChannelManager;
+import ch.ethz.ssh2.compression.CompressionFactory;
+import ch.ethz.ssh2.compression.CompressionStatistics;
 import ch.ethz.ssh2.crypto.CryptoWishList;
 import ch.ethz.ssh2.crypto.cipher.BlockCipherFactory;
 import ch.ethz.ssh2.crypto.digest.MAC;
@@ -98,6 +101,10 @@ public class Connection
 
 	private boolean tcpNoDelay = false;
 
+	private int channelWindowSize = Channel.CHANNEL_BUFFER_SIZE;
+
+	private int channelMaxWindowSize = Channel.CHANNEL_BUFFER_SIZE;
+
 	private ProxyData proxyData = null;
 
 	private Vector connectionMonitors = new Vector();
@@ -1026,7 +1033,27 @@ public class Connection
 		if (!authenticated)
 			throw new IllegalStateException("Cannot open session, connection is not authenticated.");
 
-		return new Session(cm, getOrCreateSecureRND());
+		return new Session(cm, getOrCreateSecureRND(), channelWindowSize, channelMaxWindowSize);
+	}
+
+	/**
+	 * Set the size of the local window of session channels opened after this call. The
+	 * window limits how much data the server may send before waiting for a window adjustment
+	 * and should be at least the bandwidth-delay product of the link for bulk transfers.
+	 * <p>
+	 * The window of a channel is grown up to <code>maximum</code> while the consumer keeps
+	 * up with the data received. The default for both values is 192 KB.
+	 * 
+	 * @param size initial window size in bytes.
+	 * @param maximum maximum window size in bytes.
+	 */
+	public synchronized void setChannelWindowSize(int size, int maximum)
+	{
+		if (size <= 0)
+			throw new IllegalArgumentException("Window size must be positive.");
+
+		channelWindowSize = size;
+		channelMaxWindowSize = Math.max(size, maximum);
 	}
 
 	/**
@@ -1116,6 +1143,39 @@ public class Connection
 		return tmp;
 	}
 
+	/**
+	 * Enable or disable compression of packet payloads. Must be called before
+	 * the connection is established. If enabled, <code>zlib@openssh.com</code>
+	 * (compression only after authentication) is preferred over
+	 * <code>zlib</code>. Uncompressed transport is still accepted if the server
+	 * does not support compression.
+	 * <p>
+	 * Compression requires Java 7 or later and is silently ignored otherwise.
+	 * 
+	 * @param enabled
+	 */
+	public synchronized void setCompression(boolean enabled)
+	{
+		String[] algos = enabled ? CompressionFactory.getCompressorList() : CompressionFactory
+				.getDefaultCompressorList();
+		cryptoWishList.c2s_comp_algos = algos;
+		cryptoWishList.s2c_comp_algos = algos;
+	}
+
+	/**
+	 * Number of payload bytes before and after compression since the connection
+	 * was established.
+	 * 
+	 * @return Counters for both directions
+	 */
+	public synchronized CompressionStatistics getCompressionStatistics()
+	{
+		if (tm == null)
+			throw new IllegalStateException(
+					"Cannot get details of connection, you need to establish a connection first.");
+		return tm.getCompressionStatistics();
+	}
+
 	/**
 	 * Unless you know what you are doing, you will never need this.
 	 * 
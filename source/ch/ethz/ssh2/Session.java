@@ -40,6 +40,13 @@ public class Session
 		this.rnd = rnd;
 	}
 
+	Session(ChannelManager cm, SecureRandom rnd, int windowSize, int maxWindowSize) throws IOException
+	{
+		this.cm = cm;
+		this.cn = cm.openSessionChannel(windowSize, maxWindowSize);
+		this.rnd = rnd;
+	}
+
 	/**
 	 * Basically just a wrapper for lazy people - identical to calling
 	 * <code>requestPTY("dumb", 0, 0, 0, 0, null)</code>.
@@ -312,6 +319,13 @@ public class Session
         return cn.getState();
     }
 
+    /**
+     * @return Current size of the local window of the channel in bytes
+     */
+    public int getWindowSize() {
+        return cn.getWindowSize();
+    }
+
     public InputStream getStdout()
 	{
 		return cn.getStdoutStream();
@@ -38,7 +38,7 @@ public class Channel {
     public static final int STATE_OPEN = 2;
     public static final int STATE_CLOSED = 4;
 
-    static final int CHANNEL_BUFFER_SIZE = 32 * 1024 * 3 * 2;
+    public static final int CHANNEL_BUFFER_SIZE = 32 * 1024 * 3 * 2;
 
     /*
       * To achieve correctness, the following rules have to be respected when
@@ -96,6 +96,13 @@ public class Channel {
 
     final byte[] msgWindowAdjust = new byte[9];
 
+    /*
+      * Reused for SSH_MSG_CHANNEL_DATA messages. Grown to the largest
+      * message sent. May only be used while holding the channelSendLock
+      */
+
+    byte[] msgData;
+
     // If you access (read or write) any of the following fields, then you have
     // to synchronize on the channel.
 
@@ -115,8 +122,14 @@ public class Channel {
     int localMaxPacketSize = -1;
     int remoteMaxPacketSize = -1;
 
-    final byte[] stdoutBuffer = new byte[CHANNEL_BUFFER_SIZE];
-    final byte[] stderrBuffer = new byte[CHANNEL_BUFFER_SIZE];
+    /* The local window never exceeds the size of the buffers. The buffers
+      * are grown up to maxBufferSize if the window turns out to be the
+      * bottleneck (see ChannelManager.getChannelData()).
+      */
+    byte[] stdoutBuffer;
+    byte[] stderrBuffer;
+
+    final int maxBufferSize;
 
     int stdoutReadpos = 0;
     int stdoutWritepos = 0;
@@ -142,9 +155,22 @@ public class Channel {
     private String reasonClosed = null;
 
     public Channel(ChannelManager cm) {
+        this(cm, CHANNEL_BUFFER_SIZE, CHANNEL_BUFFER_SIZE);
+    }
+
+    /**
+     * @param cm            Channel manager
+     * @param bufferSize    Initial size of the local window
+     * @param maxBufferSize Maximum size the local window may be grown to
+     */
+    public Channel(ChannelManager cm, int bufferSize, int maxBufferSize) {
         this.cm = cm;
 
-        this.localWindow = CHANNEL_BUFFER_SIZE;
+        this.stdoutBuffer = new byte[bufferSize];
+        this.stderrBuffer = new byte[bufferSize];
+        this.maxBufferSize = Math.max(bufferSize, maxBufferSize);
+
+        this.localWindow = bufferSize;
         this.localMaxPacketSize = 32 * 1024;
 
         this.stdinStream = new ChannelOutputStream(this);
@@ -152,8 +178,39 @@ public class Channel {
         this.stderrStream = new ChannelInputStream(this, true);
     }
 
+    /**
+     * Double the size of the receive buffers up to the maximum buffer size. Must
+     * only be called while holding the lock on the channel.
+     *
+     * @return False if the buffers have already reached the maximum size
+     */
+    boolean growBuffers() {
+        if(stdoutBuffer.length >= maxBufferSize) {
+            return false;
+        }
+        final int size = (int) Math.min((long) stdoutBuffer.length * 2, maxBufferSize);
+
+        byte[] stdout = new byte[size];
+        System.arraycopy(stdoutBuffer, 0, stdout, 0, stdoutWritepos);
+        stdoutBuffer = stdout;
+
+        byte[] stderr = new byte[size];
+        System.arraycopy(stderrBuffer, 0, stderr, 0, stderrWritepos);
+        stderrBuffer = stderr;
+        return true;
+    }
+
     /* Methods to allow access from classes outside of this package */
 
+    /**
+     * @return The current size of the local window in bytes
+     */
+    public int getWindowSize() {
+        synchronized(this) {
+            return stdoutBuffer.length;
+        }
+    }
+
     public ChannelInputStream getStderrStream() {
         return stderrStream;
     }
@@ -365,7 +365,6 @@ public class ChannelManager implements MessageHandler
 		while (len > 0)
 		{
 			int thislen = 0;
-			byte[] msg;
 
 			synchronized (c)
 			{
@@ -406,8 +405,17 @@ public class ChannelManager implements MessageHandler
 					thislen = estimatedMaxDataLen;
 
 				c.remoteWindow -= thislen;
+			}
+
+			synchronized (c.channelSendLock)
+			{
+				if (c.closeMessageSent == true)
+                    throw new ChannelClosedException("SSH channel is closed. (" + c.getReasonClosed() + ")");
+
+				if (c.msgData == null || c.msgData.length < 1 + 8 + thislen)
+					c.msgData = new byte[1 + 8 + thislen];
 
-				msg = new byte[1 + 8 + thislen];
+				byte[] msg = c.msgData;
 
 				msg[0] = Packets.SSH_MSG_CHANNEL_DATA;
 				msg[1] = (byte) (c.remoteID >> 24);
@@ -420,14 +428,8 @@ public class ChannelManager implements MessageHandler
 				msg[8] = (byte) (thislen);
 
 				System.arraycopy(buffer, pos, msg, 9, thislen);
-			}
-
-			synchronized (c.channelSendLock)
-			{
-				if (c.closeMessageSent == true)
-                    throw new ChannelClosedException("SSH channel is closed. (" + c.getReasonClosed() + ")");
 
-				tm.sendMessage(msg);
+				tm.sendMessage(msg, 0, 1 + 8 + thislen);
 			}
 
 			pos += thislen;
@@ -551,7 +553,17 @@ public class ChannelManager implements MessageHandler
 
 	public Channel openSessionChannel() throws IOException
 	{
-		Channel c = new Channel(this);
+		return openSessionChannel(Channel.CHANNEL_BUFFER_SIZE, Channel.CHANNEL_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param windowSize initial size of the local window
+	 * @param maxWindowSize the local window is grown up to this size if the consumer
+	 *            keeps up with the data received but the window runs low
+	 */
+	public Channel openSessionChannel(int windowSize, int maxWindowSize) throws IOException
+	{
+		Channel c = new Channel(this, windowSize, maxWindowSize);
 
 		synchronized (c)
 		{
@@ -959,9 +971,23 @@ public class ChannelManager implements MessageHandler
 			if (c.state != Channel.STATE_OPEN)
 				return copylen;
 
-			if (c.localWindow < ((Channel.CHANNEL_BUFFER_SIZE + 1) / 2))
+			if (c.localWindow < ((c.stdoutBuffer.length + 1) / 2))
 			{
-				int minFreeSpace = Math.min(Channel.CHANNEL_BUFFER_SIZE - c.stdoutWritepos, Channel.CHANNEL_BUFFER_SIZE
+				/*
+				 * The consumer has read all data received but most of the window is
+				 * in use. The remote side is likely stalled by our window rather than
+				 * by the consumer, so enlarge the window.
+				 */
+				if ((c.stdoutWritepos == 0) && (c.stderrWritepos == 0))
+				{
+					if (c.growBuffers())
+					{
+						if (log.isEnabled())
+							log.log(80, "Increased window of channel " + c.localID + " to " + c.stdoutBuffer.length);
+					}
+				}
+
+				int minFreeSpace = Math.min(c.stdoutBuffer.length - c.stdoutWritepos, c.stderrBuffer.length
 						- c.stderrWritepos);
 
 				increment = minFreeSpace - c.localWindow;
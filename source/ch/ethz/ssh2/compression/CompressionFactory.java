@@ -0,0 +1,87 @@
+package ch.ethz.ssh2.compression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * CompressionFactory.
+ *
+ * @version $Id$
+ */
+public class CompressionFactory {
+
+    public static final String NONE = "none";
+    public static final String ZLIB = "zlib";
+    public static final String ZLIB_OPENSSH = "zlib@openssh.com";
+
+    private static Boolean available;
+
+    /**
+     * Compression requires a partial flush after every packet which is only supported
+     * by the deflater of Java 7 and later.
+     *
+     * @return True if zlib compression can be used in this runtime
+     */
+    public static synchronized boolean isAvailable() {
+        if(null == available) {
+            try {
+                Deflater.class.getMethod("deflate", byte[].class, int.class, int.class, int.class);
+                available = true;
+            }
+            catch(NoSuchMethodException e) {
+                available = false;
+            }
+        }
+        return available;
+    }
+
+    /**
+     * @return Compression is disabled by default
+     */
+    public static String[] getDefaultCompressorList() {
+        return new String[]{NONE};
+    }
+
+    /**
+     * @return All supported algorithms with delayed compression preferred
+     */
+    public static String[] getCompressorList() {
+        final List<String> list = new ArrayList<String>();
+        if(isAvailable()) {
+            list.add(ZLIB_OPENSSH);
+            list.add(ZLIB);
+        }
+        list.add(NONE);
+        return list.toArray(new String[list.size()]);
+    }
+
+    public static void checkCompressorList(String[] compressorCandidates) {
+        for(String candidate : compressorCandidates) {
+            if(NONE.equals(candidate)) {
+                continue;
+            }
+            if(isAvailable() && (ZLIB.equals(candidate) || ZLIB_OPENSSH.equals(candidate))) {
+                continue;
+            }
+            throw new IllegalArgumentException("Unknown compression algorithm '" + candidate + "'");
+        }
+    }
+
+    /**
+     * @param type Negotiated algorithm
+     * @return Null if no compression is used
+     */
+    public static Compressor createCompressor(String type) {
+        if(ZLIB.equals(type)) {
+            return new Zlib(false);
+        }
+        if(ZLIB_OPENSSH.equals(type)) {
+            return new Zlib(true);
+        }
+        if(NONE.equals(type)) {
+            return null;
+        }
+        throw new IllegalArgumentException("Unknown compression algorithm '" + type + "'");
+    }
+}
@@ -0,0 +1,66 @@
+package ch.ethz.ssh2.compression;
+
+/**
+ * Number of payload bytes before and after compression for both directions.
+ *
+ * @version $Id$
+ */
+public class CompressionStatistics {
+
+    private final long uncompressedSent;
+    private final long compressedSent;
+    private final long compressedReceived;
+    private final long uncompressedReceived;
+
+    public CompressionStatistics(long uncompressedSent, long compressedSent,
+                                 long compressedReceived, long uncompressedReceived) {
+        this.uncompressedSent = uncompressedSent;
+        this.compressedSent = compressedSent;
+        this.compressedReceived = compressedReceived;
+        this.uncompressedReceived = uncompressedReceived;
+    }
+
+    public long getUncompressedSent() {
+        return uncompressedSent;
+    }
+
+    public long getCompressedSent() {
+        return compressedSent;
+    }
+
+    public long getCompressedReceived() {
+        return compressedReceived;
+    }
+
+    public long getUncompressedReceived() {
+        return uncompressedReceived;
+    }
+
+    /**
+     * @return Uncompressed divided by compressed bytes sent or 1 if nothing was compressed
+     */
+    public double getSendRatio() {
+        return ratio(uncompressedSent, compressedSent);
+    }
+
+    /**
+     * @return Uncompressed divided by compressed bytes received or 1 if nothing was compressed
+     */
+    public double getReceiveRatio() {
+        return ratio(uncompressedReceived, compressedReceived);
+    }
+
+    private static double ratio(long uncompressed, long compressed) {
+        if(0 == compressed) {
+            return 1d;
+        }
+        return (double) uncompressed / compressed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("sent %d/%d bytes (%.2f), received %d/%d bytes (%.2f)",
+                uncompressedSent, compressedSent, this.getSendRatio(),
+                uncompressedReceived, compressedReceived, this.getReceiveRatio());
+    }
+}
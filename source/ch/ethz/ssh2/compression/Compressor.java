@@ -0,0 +1,54 @@
+package ch.ethz.ssh2.compression;
+
+import java.io.IOException;
+
+/**
+ * Compression of packet payloads for one direction of the transport. The compression
+ * context is kept across packets.
+ *
+ * @version $Id$
+ */
+public interface Compressor {
+
+    /**
+     * @return True if compression is only enabled after successful user authentication
+     */
+    public boolean isDelayed();
+
+    /**
+     * @param in  Payload
+     * @param off Offset of payload
+     * @param len Length of payload
+     * @return Number of compressed bytes available in #getBuffer
+     */
+    public int compress(byte[] in, int off, int len);
+
+    /**
+     * @param in  Compressed payload
+     * @param off Offset of payload
+     * @param len Length of payload
+     * @return Number of uncompressed bytes available in #getBuffer
+     * @throws IOException Invalid compressed data
+     */
+    public int uncompress(byte[] in, int off, int len) throws IOException;
+
+    /**
+     * @return Output of the last operation
+     */
+    public byte[] getBuffer();
+
+    /**
+     * @return Total number of payload bytes before compression or after decompression
+     */
+    public long getUncompressedBytes();
+
+    /**
+     * @return Total number of payload bytes after compression or before decompression
+     */
+    public long getCompressedBytes();
+
+    /**
+     * Release native resources
+     */
+    public void close();
+}
@@ -0,0 +1,125 @@
+package ch.ethz.ssh2.compression;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * zlib and zlib@openssh.com compression as specified in RFC 4253. Every packet is
+ * terminated with a partial flush such that it can be decompressed on its own.
+ *
+ * @version $Id$
+ */
+public class Zlib implements Compressor {
+
+    /**
+     * Upper limit for the size of a decompressed payload
+     */
+    private static final int MAX_PAYLOAD = 262144;
+
+    private final boolean delayed;
+
+    private Deflater deflater;
+
+    private Inflater inflater;
+
+    private byte[] buffer = new byte[35000];
+
+    private long uncompressed;
+
+    private long compressed;
+
+    /**
+     * @param delayed True for zlib@openssh.com
+     */
+    public Zlib(boolean delayed) {
+        this.delayed = delayed;
+    }
+
+    public boolean isDelayed() {
+        return delayed;
+    }
+
+    public int compress(byte[] in, int off, int len) {
+        if(null == deflater) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        }
+        deflater.setInput(in, off, len);
+        int total = 0;
+        while(true) {
+            final int n = deflater.deflate(buffer, total, buffer.length - total, Deflater.SYNC_FLUSH);
+            total += n;
+            if(total < buffer.length) {
+                break;
+            }
+            // Output buffer exhausted. Must be invoked again with more space
+            this.grow();
+        }
+        uncompressed += len;
+        compressed += total;
+        return total;
+    }
+
+    public int uncompress(byte[] in, int off, int len) throws IOException {
+        if(null == inflater) {
+            inflater = new Inflater();
+        }
+        inflater.setInput(in, off, len);
+        int total = 0;
+        try {
+            while(true) {
+                if(total == buffer.length) {
+                    if(buffer.length >= MAX_PAYLOAD) {
+                        throw new IOException("Decompressed payload exceeds " + MAX_PAYLOAD + " bytes");
+                    }
+                    this.grow();
+                }
+                final int n = inflater.inflate(buffer, total, buffer.length - total);
+                total += n;
+                if(total < buffer.length && inflater.needsInput()) {
+                    break;
+                }
+                if(inflater.finished() || inflater.needsDictionary()) {
+                    throw new IOException("Unexpected end of compressed stream");
+                }
+                if(0 == n && total < buffer.length) {
+                    throw new IOException("Invalid compressed data");
+                }
+            }
+        }
+        catch(DataFormatException e) {
+            throw (IOException) new IOException("Invalid compressed data").initCause(e);
+        }
+        compressed += len;
+        uncompressed += total;
+        return total;
+    }
+
+    private void grow() {
+        final byte[] b = new byte[buffer.length * 2];
+        System.arraycopy(buffer, 0, b, 0, buffer.length);
+        buffer = b;
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressed;
+    }
+
+    public long getCompressedBytes() {
+        return compressed;
+    }
+
+    public void close() {
+        if(deflater != null) {
+            deflater.end();
+        }
+        if(inflater != null) {
+            inflater.end();
+        }
+    }
+}
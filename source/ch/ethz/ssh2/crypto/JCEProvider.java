@@ -0,0 +1,95 @@
+package ch.ethz.ssh2.crypto;
+
+import java.security.GeneralSecurityException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+
+/**
+ * Selects the ciphers and MACs of the Java Cryptography Extension instead of the bundled
+ * implementations where available. The JCE implementations make use of hardware acceleration
+ * such as AES-NI where supported by the virtual machine.
+ *
+ * @version $Id$
+ */
+public class JCEProvider {
+
+    private static volatile boolean enabled = true;
+
+    /**
+     * Cached result of probing an algorithm with a given key length
+     */
+    private static final Map<String, Boolean> available
+            = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * @param enabled Use the JCE where available. Otherwise always use the bundled implementations.
+     */
+    public static void setEnabled(boolean enabled) {
+        JCEProvider.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param transformation Cipher transformation such as <code>AES/CTR/NoPadding</code>
+     * @param keysize        Key length in bytes
+     * @return True if enabled and the transformation can be used with the key length
+     *         given the installed jurisdiction policy.
+     */
+    public static boolean isCipherAvailable(String transformation, int keysize) {
+        if(!enabled) {
+            return false;
+        }
+        return isCipherSupported(transformation, keysize);
+    }
+
+    /**
+     * @param transformation Cipher transformation such as <code>AES/GCM/NoPadding</code>
+     * @param keysize        Key length in bytes
+     * @return True if the transformation can be used with the key length regardless if the JCE
+     *         is preferred over bundled implementations. Used for algorithms without bundled implementation.
+     */
+    public static boolean isCipherSupported(String transformation, int keysize) {
+        final String key = transformation + "/" + keysize;
+        Boolean result = available.get(key);
+        if(null == result) {
+            try {
+                Cipher.getInstance(transformation);
+                final String algorithm = transformation.substring(0, transformation.indexOf('/'));
+                result = Cipher.getMaxAllowedKeyLength(algorithm) >= keysize * 8;
+            }
+            catch(GeneralSecurityException e) {
+                result = false;
+            }
+            available.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * @param algorithm MAC algorithm such as <code>HmacSHA1</code>
+     * @return True if enabled and the algorithm is supported by an installed provider
+     */
+    public static boolean isMacAvailable(String algorithm) {
+        if(!enabled) {
+            return false;
+        }
+        Boolean result = available.get(algorithm);
+        if(null == result) {
+            try {
+                Mac.getInstance(algorithm);
+                result = true;
+            }
+            catch(GeneralSecurityException e) {
+                result = false;
+            }
+            available.put(algorithm, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,102 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * aes128-gcm@openssh.com and aes256-gcm@openssh.com as specified in RFC 5647 with the
+ * packet length sent in the clear as additional authenticated data. Backed by the Java
+ * Cryptography Extension.
+ *
+ * @version $Id$
+ */
+public class AESGCM implements AuthenticatedCipher {
+
+    public static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    public static final int IV_SIZE = 12;
+
+    private static final int TAG_SIZE = 16;
+
+    private final Cipher cipher;
+
+    private final SecretKeySpec key;
+
+    private final boolean encrypt;
+
+    /**
+     * Fixed field followed by the 64 bit invocation counter
+     */
+    private final byte[] iv = new byte[IV_SIZE];
+
+    /**
+     * @param encrypt True for encryption
+     * @param key     16 or 32 byte key
+     * @param iv      12 byte initial nonce
+     * @throws GeneralSecurityException Transformation not available
+     */
+    public AESGCM(boolean encrypt, byte[] key, byte[] iv) throws GeneralSecurityException {
+        if(iv.length != IV_SIZE) {
+            throw new IllegalArgumentException("IV must be " + IV_SIZE + " bytes long");
+        }
+        this.cipher = Cipher.getInstance(TRANSFORMATION);
+        this.key = new SecretKeySpec(key, "AES");
+        this.encrypt = encrypt;
+        System.arraycopy(iv, 0, this.iv, 0, IV_SIZE);
+    }
+
+    public int getBlockSize() {
+        return 16;
+    }
+
+    public int getTagSize() {
+        return TAG_SIZE;
+    }
+
+    public int getPacketLength(int seq, byte[] packet, int off) {
+        return ((packet[off] & 0xff) << 24) | ((packet[off + 1] & 0xff) << 16) | ((packet[off + 2] & 0xff) << 8)
+                | (packet[off + 3] & 0xff);
+    }
+
+    public void encrypt(int seq, byte[] packet, int off, int len) {
+        try {
+            this.init();
+            cipher.updateAAD(packet, off, 4);
+            cipher.doFinal(packet, off + 4, len - 4, packet, off + 4);
+        }
+        catch(GeneralSecurityException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    public void decrypt(int seq, byte[] packet, int off, int len) throws IOException {
+        try {
+            this.init();
+            cipher.updateAAD(packet, off, 4);
+            cipher.doFinal(packet, off + 4, len - 4 + TAG_SIZE, packet, off + 4);
+        }
+        catch(AEADBadTagException e) {
+            throw new IOException("Remote sent corrupt MAC.");
+        }
+        catch(GeneralSecurityException e) {
+            throw (IOException) new IOException("Error while decrypting packet.").initCause(e);
+        }
+    }
+
+    /**
+     * Initialize the cipher with the current nonce and increment the invocation counter.
+     */
+    private void init() throws GeneralSecurityException {
+        cipher.init(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE * 8, iv));
+        for(int i = IV_SIZE - 1; i >= 4; i--) {
+            if(++iv[i] != 0) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+import java.io.IOException;
+
+/**
+ * Cipher providing encryption and integrity of whole packets. No separate MAC is used
+ * together with an authenticated cipher. Packets are laid out as the 4 byte packet length
+ * followed by the encrypted payload and the authentication tag.
+ *
+ * @version $Id$
+ */
+public interface AuthenticatedCipher {
+
+    /**
+     * @return Multiple the packet length excluding the length field must be padded to
+     */
+    public int getBlockSize();
+
+    /**
+     * @return Number of bytes of the authentication tag
+     */
+    public int getTagSize();
+
+    /**
+     * @param seq    Sequence number of the packet
+     * @param packet Buffer with the 4 byte packet length as received. Not modified.
+     * @param off    Offset of the length field
+     * @return Length of the packet excluding the length field and tag
+     */
+    public int getPacketLength(int seq, byte[] packet, int off);
+
+    /**
+     * Encrypt a packet in place and append the authentication tag.
+     *
+     * @param seq    Sequence number of the packet
+     * @param packet Buffer with the plain packet including the length field and room for the tag
+     * @param off    Offset of the length field
+     * @param len    Length of the packet including the length field
+     */
+    public void encrypt(int seq, byte[] packet, int off, int len);
+
+    /**
+     * Verify the authentication tag following the packet and decrypt the packet in place.
+     *
+     * @param seq    Sequence number of the packet
+     * @param packet Buffer with the packet as received including the length field and tag
+     * @param off    Offset of the length field
+     * @param len    Length of the packet including the length field but excluding the tag
+     * @throws IOException Authentication failed
+     */
+    public void decrypt(int seq, byte[] packet, int off, int len) throws IOException;
+}
@@ -1,5 +1,8 @@
 package ch.ethz.ssh2.crypto.cipher;
 
+import ch.ethz.ssh2.crypto.JCEProvider;
+
+import java.security.GeneralSecurityException;
 import java.util.Vector;
 
 /**
@@ -14,12 +17,46 @@ public class BlockCipherFactory {
         int blocksize;
         int keysize;
         String cipherClass;
+        /**
+         * Algorithm name in the Java Cryptography Extension or null if not available
+         */
+        String jceAlgorithm;
+        /**
+         * Length of the initial IV derived from the key exchange
+         */
+        int ivsize;
+        /**
+         * Implements AuthenticatedCipher and is used without MAC
+         */
+        boolean authenticated;
 
         public CipherEntry(String type, int blockSize, int keySize, String cipherClass) {
+            this(type, blockSize, keySize, cipherClass, null);
+        }
+
+        public CipherEntry(String type, int blockSize, int keySize, String cipherClass, String jceAlgorithm) {
+            this(type, blockSize, keySize, blockSize, cipherClass, jceAlgorithm, false);
+        }
+
+        public CipherEntry(String type, int blockSize, int keySize, int ivSize, String cipherClass,
+                           String jceAlgorithm, boolean authenticated) {
             this.type = type;
             this.blocksize = blockSize;
             this.keysize = keySize;
+            this.ivsize = ivSize;
             this.cipherClass = cipherClass;
+            this.jceAlgorithm = jceAlgorithm;
+            this.authenticated = authenticated;
+        }
+
+        /**
+         * @return False if the cipher requires an algorithm not available in this runtime
+         */
+        boolean isAvailable() {
+            if(authenticated && jceAlgorithm != null) {
+                return JCEProvider.isCipherSupported(jceAlgorithm, keysize);
+            }
+            return true;
         }
     }
 
@@ -27,14 +64,21 @@ public class BlockCipherFactory {
 
     static {
         /* Higher Priority First */
-        ciphers.addElement(new CipherEntry("aes128-ctr", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES"));
-        ciphers.addElement(new CipherEntry("aes192-ctr", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES"));
-        ciphers.addElement(new CipherEntry("aes256-ctr", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES"));
+        ciphers.addElement(new CipherEntry("aes128-gcm@openssh.com", 16, 16, AESGCM.IV_SIZE,
+                "ch.ethz.ssh2.crypto.cipher.AESGCM", AESGCM.TRANSFORMATION, true));
+        ciphers.addElement(new CipherEntry("aes256-gcm@openssh.com", 16, 32, AESGCM.IV_SIZE,
+                "ch.ethz.ssh2.crypto.cipher.AESGCM", AESGCM.TRANSFORMATION, true));
+        ciphers.addElement(new CipherEntry("chacha20-poly1305@openssh.com", 8, ChaCha20Poly1305.KEY_SIZE, 0,
+                "ch.ethz.ssh2.crypto.cipher.ChaCha20Poly1305", null, true));
+
+        ciphers.addElement(new CipherEntry("aes128-ctr", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+        ciphers.addElement(new CipherEntry("aes192-ctr", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+        ciphers.addElement(new CipherEntry("aes256-ctr", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
         ciphers.addElement(new CipherEntry("blowfish-ctr", 8, 16, "ch.ethz.ssh2.crypto.cipher.BlowFish"));
 
-        ciphers.addElement(new CipherEntry("aes128-cbc", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES"));
-        ciphers.addElement(new CipherEntry("aes192-cbc", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES"));
-        ciphers.addElement(new CipherEntry("aes256-cbc", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES"));
+        ciphers.addElement(new CipherEntry("aes128-cbc", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+        ciphers.addElement(new CipherEntry("aes192-cbc", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+        ciphers.addElement(new CipherEntry("aes256-cbc", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
         ciphers.addElement(new CipherEntry("blowfish-cbc", 8, 16, "ch.ethz.ssh2.crypto.cipher.BlowFish"));
 
         ciphers.addElement(new CipherEntry("3des-ctr", 8, 24, "ch.ethz.ssh2.crypto.cipher.DESede"));
@@ -42,12 +86,14 @@ public class BlockCipherFactory {
     }
 
     public static String[] getDefaultCipherList() {
-        String list[] = new String[ciphers.size()];
+        Vector<String> list = new Vector<String>();
         for(int i = 0; i < ciphers.size(); i++) {
             CipherEntry ce = ciphers.elementAt(i);
-            list[i] = ce.type;
+            if(ce.isAvailable()) {
+                list.addElement(ce.type);
+            }
         }
-        return list;
+        return list.toArray(new String[list.size()]);
     }
 
     public static void checkCipherList(String[] cipherCandidates) {
@@ -56,9 +102,39 @@ public class BlockCipherFactory {
         }
     }
 
+    /**
+     * @return True if the cipher must be created with #createAuthenticatedCipher and no MAC is used
+     */
+    public static boolean isAuthenticated(String type) {
+        return getEntry(type).authenticated;
+    }
+
+    public static AuthenticatedCipher createAuthenticatedCipher(String type, boolean encrypt, byte[] key, byte[] iv) {
+        CipherEntry ce = getEntry(type);
+        if(!ce.authenticated) {
+            throw new IllegalArgumentException("Not an authenticated cipher " + type);
+        }
+        try {
+            if(AESGCM.class.getName().equals(ce.cipherClass)) {
+                return new AESGCM(encrypt, key, iv);
+            }
+            return new ChaCha20Poly1305(key);
+        }
+        catch(GeneralSecurityException e) {
+            throw new IllegalArgumentException("Cannot instantiate " + type);
+        }
+    }
+
     public static BlockCipher createCipher(String type, boolean encrypt, byte[] key, byte[] iv) {
         try {
             CipherEntry ce = getEntry(type);
+            if(ce.authenticated) {
+                throw new IllegalArgumentException("Authenticated cipher " + type);
+            }
+            BlockCipher jce = createJCECipher(ce, encrypt, key, iv);
+            if(jce != null) {
+                return jce;
+            }
             Class cc = Class.forName(ce.cipherClass);
             BlockCipher bc = (BlockCipher) cc.newInstance();
 
@@ -77,6 +153,35 @@ public class BlockCipherFactory {
         }
     }
 
+    /**
+     * @return Cipher backed by the Java Cryptography Extension or null to use the bundled implementation
+     */
+    private static BlockCipher createJCECipher(CipherEntry ce, boolean encrypt, byte[] key, byte[] iv) {
+        if(ce.jceAlgorithm == null || ce.authenticated) {
+            return null;
+        }
+        String transformation;
+        if(ce.type.endsWith("-cbc")) {
+            transformation = ce.jceAlgorithm + "/CBC/NoPadding";
+        }
+        else if(ce.type.endsWith("-ctr")) {
+            transformation = ce.jceAlgorithm + "/CTR/NoPadding";
+        }
+        else {
+            return null;
+        }
+        if(!JCEProvider.isCipherAvailable(transformation, ce.keysize)) {
+            return null;
+        }
+        try {
+            return new JCECipher(transformation, encrypt, key, iv);
+        }
+        catch(GeneralSecurityException e) {
+            // Fallback to bundled implementation
+            return null;
+        }
+    }
+
     private static CipherEntry getEntry(String type) {
         for(int i = 0; i < ciphers.size(); i++) {
             CipherEntry ce = ciphers.elementAt(i);
@@ -92,6 +197,14 @@ public class BlockCipherFactory {
         return ce.blocksize;
     }
 
+    /**
+     * @return Length of the initial IV to derive from the key exchange
+     */
+    public static int getIVSize(String type) {
+        CipherEntry ce = getEntry(type);
+        return ce.ivsize;
+    }
+
     public static int getKeySize(String type) {
         CipherEntry ce = getEntry(type);
         return ce.keysize;
@@ -0,0 +1,18 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+/**
+ * Block cipher able to transform multiple consecutive blocks in one call.
+ *
+ * @version $Id$
+ */
+public interface BulkCipher extends BlockCipher {
+
+    /**
+     * @param src    Input
+     * @param srcoff Offset in input
+     * @param dst    Output. May be the same array as the input.
+     * @param dstoff Offset in output
+     * @param len    Number of bytes. Must be a multiple of the block size.
+     */
+    public void transform(byte[] src, int srcoff, byte[] dst, int dstoff, int len);
+}
@@ -0,0 +1,103 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+/**
+ * ChaCha20 stream cipher with 64 bit nonce and 64 bit block counter as originally
+ * specified by D. J. Bernstein.
+ *
+ * @version $Id$
+ */
+public final class ChaCha20 {
+
+    private static final int[] SIGMA = {
+            0x61707865, 0x3320646e, 0x79622d32, 0x6b206574
+    };
+
+    private final int[] state = new int[16];
+
+    private final int[] working = new int[16];
+
+    private final byte[] keystream = new byte[64];
+
+    /**
+     * Position in current keystream block
+     */
+    private int position = 64;
+
+    /**
+     * @param key 32 byte key
+     */
+    public ChaCha20(byte[] key, int off) {
+        System.arraycopy(SIGMA, 0, state, 0, 4);
+        for(int i = 0; i < 8; i++) {
+            state[4 + i] = littleEndian(key, off + i * 4);
+        }
+    }
+
+    /**
+     * Reset the keystream
+     *
+     * @param nonce   64 bit nonce
+     * @param counter Initial block counter
+     */
+    public void init(long nonce, long counter) {
+        state[12] = (int) counter;
+        state[13] = (int) (counter >>> 32);
+        // Nonce is encoded in network byte order
+        state[14] = Integer.reverseBytes((int) (nonce >>> 32));
+        state[15] = Integer.reverseBytes((int) nonce);
+        position = 64;
+    }
+
+    /**
+     * XOR input with the keystream
+     */
+    public void crypt(byte[] src, int srcoff, byte[] dst, int dstoff, int len) {
+        for(int i = 0; i < len; i++) {
+            if(position == 64) {
+                this.block();
+            }
+            dst[dstoff + i] = (byte) (src[srcoff + i] ^ keystream[position++]);
+        }
+    }
+
+    private void block() {
+        final int[] x = working;
+        System.arraycopy(state, 0, x, 0, 16);
+        for(int i = 0; i < 10; i++) {
+            quarterRound(x, 0, 4, 8, 12);
+            quarterRound(x, 1, 5, 9, 13);
+            quarterRound(x, 2, 6, 10, 14);
+            quarterRound(x, 3, 7, 11, 15);
+            quarterRound(x, 0, 5, 10, 15);
+            quarterRound(x, 1, 6, 11, 12);
+            quarterRound(x, 2, 7, 8, 13);
+            quarterRound(x, 3, 4, 9, 14);
+        }
+        for(int i = 0; i < 16; i++) {
+            final int v = x[i] + state[i];
+            keystream[i * 4] = (byte) v;
+            keystream[i * 4 + 1] = (byte) (v >>> 8);
+            keystream[i * 4 + 2] = (byte) (v >>> 16);
+            keystream[i * 4 + 3] = (byte) (v >>> 24);
+        }
+        if(++state[12] == 0) {
+            state[13]++;
+        }
+        position = 0;
+    }
+
+    private static void quarterRound(int[] x, int a, int b, int c, int d) {
+        x[a] += x[b];
+        x[d] = Integer.rotateLeft(x[d] ^ x[a], 16);
+        x[c] += x[d];
+        x[b] = Integer.rotateLeft(x[b] ^ x[c], 12);
+        x[a] += x[b];
+        x[d] = Integer.rotateLeft(x[d] ^ x[a], 8);
+        x[c] += x[d];
+        x[b] = Integer.rotateLeft(x[b] ^ x[c], 7);
+    }
+
+    private static int littleEndian(byte[] b, int off) {
+        return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8) | ((b[off + 2] & 0xff) << 16) | ((b[off + 3] & 0xff) << 24);
+    }
+}
@@ -0,0 +1,93 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+import ch.ethz.ssh2.crypto.digest.Poly1305;
+
+import java.io.IOException;
+
+/**
+ * chacha20-poly1305@openssh.com as specified in PROTOCOL.chacha20poly1305 of OpenSSH.
+ * The packet length is encrypted with a separate header key. The Poly1305 key is taken
+ * from the first block of the keystream of the main key and the payload is encrypted
+ * starting with the second block.
+ *
+ * @version $Id$
+ */
+public class ChaCha20Poly1305 implements AuthenticatedCipher {
+
+    public static final int KEY_SIZE = 64;
+
+    private final ChaCha20 main;
+
+    private final ChaCha20 header;
+
+    private final byte[] polyKey = new byte[32];
+
+    private final byte[] length = new byte[4];
+
+    private final byte[] tag = new byte[Poly1305.TAG_LENGTH];
+
+    /**
+     * @param key 64 bytes with the main key followed by the header key
+     */
+    public ChaCha20Poly1305(byte[] key) {
+        if(key.length != KEY_SIZE) {
+            throw new IllegalArgumentException("Key must be " + KEY_SIZE + " bytes long");
+        }
+        main = new ChaCha20(key, 0);
+        header = new ChaCha20(key, 32);
+    }
+
+    public int getBlockSize() {
+        return 8;
+    }
+
+    public int getTagSize() {
+        return Poly1305.TAG_LENGTH;
+    }
+
+    public int getPacketLength(int seq, byte[] packet, int off) {
+        header.init(seq & 0xffffffffL, 0);
+        header.crypt(packet, off, length, 0, 4);
+        return ((length[0] & 0xff) << 24) | ((length[1] & 0xff) << 16) | ((length[2] & 0xff) << 8)
+                | (length[3] & 0xff);
+    }
+
+    public void encrypt(int seq, byte[] packet, int off, int len) {
+        header.init(seq & 0xffffffffL, 0);
+        header.crypt(packet, off, packet, off, 4);
+        this.initPoly(seq);
+        main.init(seq & 0xffffffffL, 1);
+        main.crypt(packet, off + 4, packet, off + 4, len - 4);
+        this.authenticate(packet, off, len, packet, off + len);
+    }
+
+    public void decrypt(int seq, byte[] packet, int off, int len) throws IOException {
+        this.initPoly(seq);
+        this.authenticate(packet, off, len, tag, 0);
+        int diff = 0;
+        for(int i = 0; i < tag.length; i++) {
+            diff |= tag[i] ^ packet[off + len + i];
+        }
+        if(diff != 0) {
+            throw new IOException("Remote sent corrupt MAC.");
+        }
+        header.init(seq & 0xffffffffL, 0);
+        header.crypt(packet, off, packet, off, 4);
+        main.init(seq & 0xffffffffL, 1);
+        main.crypt(packet, off + 4, packet, off + 4, len - 4);
+    }
+
+    private void initPoly(int seq) {
+        for(int i = 0; i < polyKey.length; i++) {
+            polyKey[i] = 0;
+        }
+        main.init(seq & 0xffffffffL, 0);
+        main.crypt(polyKey, 0, polyKey, 0, polyKey.length);
+    }
+
+    private void authenticate(byte[] packet, int off, int len, byte[] out, int outoff) {
+        final Poly1305 poly = new Poly1305(polyKey, 0);
+        poly.update(packet, off, len);
+        poly.finish(out, outoff);
+    }
+}
@@ -94,6 +94,28 @@ public class CipherInputStream {
         int count = 0;
 
         while(len > 0) {
+            if(pos >= blockSize && len >= blockSize && currentCipher instanceof BulkCipher) {
+                // Decrypt whole blocks in place in the destination
+                int copy = len / blockSize * blockSize;
+                int n = 0;
+                while(n < copy) {
+                    int cnt = internal_read(dst, off + n, copy - n);
+                    if(cnt < 0) {
+                        throw new IOException("Cannot read full block, EOF reached.");
+                    }
+                    n += cnt;
+                }
+                try {
+                    ((BulkCipher) currentCipher).transform(dst, off, dst, off, copy);
+                }
+                catch(Exception e) {
+                    throw new IOException("Error while decrypting block.");
+                }
+                off += copy;
+                len -= copy;
+                count += copy;
+                continue;
+            }
             if(pos >= blockSize) {
                 getBlock();
             }
@@ -91,6 +91,26 @@ public class CipherOutputStream {
 
     public void write(byte[] src, int off, int len) throws IOException {
         while(len > 0) {
+            if(pos == 0 && len >= blockSize && currentCipher instanceof BulkCipher) {
+                // Encrypt whole blocks directly into the output buffer
+                int space = (BUFF_SIZE - out_buffer_pos) / blockSize * blockSize;
+                if(space == 0) {
+                    bo.write(out_buffer, 0, out_buffer_pos);
+                    out_buffer_pos = 0;
+                    continue;
+                }
+                int copy = Math.min(space, len / blockSize * blockSize);
+                try {
+                    ((BulkCipher) currentCipher).transform(src, off, out_buffer, out_buffer_pos, copy);
+                }
+                catch(Exception e) {
+                    throw (IOException) new IOException("Error while encrypting block.").initCause(e);
+                }
+                out_buffer_pos += copy;
+                off += copy;
+                len -= copy;
+                continue;
+            }
             int avail = blockSize - pos;
             int copy = Math.min(avail, len);
 
@@ -0,0 +1,59 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Block cipher in CBC or CTR mode backed by the Java Cryptography Extension.
+ *
+ * @version $Id$
+ */
+public class JCECipher implements BulkCipher {
+
+    private final Cipher cipher;
+
+    private final int blockSize;
+
+    /**
+     * @param transformation Cipher transformation such as <code>AES/CTR/NoPadding</code>
+     * @param encrypt        True for encryption
+     * @param key            Secret key
+     * @param iv             Initialization vector
+     * @throws GeneralSecurityException Transformation not available
+     */
+    public JCECipher(String transformation, boolean encrypt, byte[] key, byte[] iv)
+            throws GeneralSecurityException {
+        final String algorithm = transformation.substring(0, transformation.indexOf('/'));
+        cipher = Cipher.getInstance(transformation);
+        cipher.init(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE,
+                new SecretKeySpec(key, algorithm), new IvParameterSpec(iv));
+        blockSize = cipher.getBlockSize();
+    }
+
+    public void init(boolean forEncryption, byte[] key) {
+        //
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public void transformBlock(byte[] src, int srcoff, byte[] dst, int dstoff) {
+        this.transform(src, srcoff, dst, dstoff, blockSize);
+    }
+
+    public void transform(byte[] src, int srcoff, byte[] dst, int dstoff, int len) {
+        try {
+            if(cipher.update(src, srcoff, len, dst, dstoff) != len) {
+                throw new IllegalStateException("Incomplete block transformation");
+            }
+        }
+        catch(ShortBufferException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+}
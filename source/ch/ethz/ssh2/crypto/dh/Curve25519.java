@@ -0,0 +1,182 @@
+package ch.ethz.ssh2.crypto.dh;
+
+/**
+ * X25519 scalar multiplication on Curve25519 as specified in RFC 7748. Field elements
+ * are represented with 16 limbs of 16 bits. Ported from TweetNaCl (public domain).
+ *
+ * @version $Id$
+ */
+public final class Curve25519 {
+
+    public static final int KEY_SIZE = 32;
+
+    private static final byte[] BASEPOINT = new byte[KEY_SIZE];
+
+    static {
+        BASEPOINT[0] = 9;
+    }
+
+    private static final long[] _121665 = {0xDB41, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+
+    private Curve25519() {
+        //
+    }
+
+    /**
+     * @param privateKey 32 random bytes
+     * @return Public key for the private key
+     */
+    public static byte[] publicKey(byte[] privateKey) {
+        return scalarMult(privateKey, BASEPOINT);
+    }
+
+    /**
+     * @param n Scalar
+     * @param p u-coordinate of point
+     * @return u-coordinate of n * p
+     */
+    public static byte[] scalarMult(byte[] n, byte[] p) {
+        if(n.length != KEY_SIZE || p.length != KEY_SIZE) {
+            throw new IllegalArgumentException("Invalid key length");
+        }
+        final byte[] z = new byte[KEY_SIZE];
+        System.arraycopy(n, 0, z, 0, KEY_SIZE);
+        z[31] = (byte) ((n[31] & 127) | 64);
+        z[0] &= 248;
+
+        final long[] x = new long[16];
+        unpack(x, p);
+        final long[] a = new long[16];
+        final long[] b = new long[16];
+        final long[] c = new long[16];
+        final long[] d = new long[16];
+        final long[] e = new long[16];
+        final long[] f = new long[16];
+        System.arraycopy(x, 0, b, 0, 16);
+        a[0] = d[0] = 1;
+
+        for(int i = 254; i >= 0; --i) {
+            final int r = ((z[i >>> 3] & 0xff) >>> (i & 7)) & 1;
+            sel(a, b, r);
+            sel(c, d, r);
+            add(e, a, c);
+            sub(a, a, c);
+            add(c, b, d);
+            sub(b, b, d);
+            mul(d, e, e);
+            mul(f, a, a);
+            mul(a, c, a);
+            mul(c, b, e);
+            add(e, a, c);
+            sub(a, a, c);
+            mul(b, a, a);
+            sub(c, d, f);
+            mul(a, c, _121665);
+            add(a, a, d);
+            mul(c, c, a);
+            mul(a, d, f);
+            mul(d, b, x);
+            mul(b, e, e);
+            sel(a, b, r);
+            sel(c, d, r);
+        }
+        inv(c, c);
+        mul(a, a, c);
+        final byte[] q = new byte[KEY_SIZE];
+        pack(q, a);
+        return q;
+    }
+
+    private static void carry(long[] o) {
+        for(int i = 0; i < 16; i++) {
+            o[i] += (1L << 16);
+            final long c = o[i] >> 16;
+            if(i < 15) {
+                o[i + 1] += c - 1;
+            }
+            else {
+                o[0] += 38 * (c - 1);
+            }
+            o[i] -= c << 16;
+        }
+    }
+
+    private static void sel(long[] p, long[] q, int b) {
+        final long c = ~(b - 1);
+        for(int i = 0; i < 16; i++) {
+            final long t = c & (p[i] ^ q[i]);
+            p[i] ^= t;
+            q[i] ^= t;
+        }
+    }
+
+    private static void pack(byte[] o, long[] n) {
+        final long[] m = new long[16];
+        final long[] t = new long[16];
+        System.arraycopy(n, 0, t, 0, 16);
+        carry(t);
+        carry(t);
+        carry(t);
+        for(int j = 0; j < 2; j++) {
+            m[0] = t[0] - 0xffed;
+            for(int i = 1; i < 15; i++) {
+                m[i] = t[i] - 0xffff - ((m[i - 1] >> 16) & 1);
+                m[i - 1] &= 0xffff;
+            }
+            m[15] = t[15] - 0x7fff - ((m[14] >> 16) & 1);
+            final int b = (int) ((m[15] >> 16) & 1);
+            m[14] &= 0xffff;
+            sel(t, m, 1 - b);
+        }
+        for(int i = 0; i < 16; i++) {
+            o[2 * i] = (byte) t[i];
+            o[2 * i + 1] = (byte) (t[i] >> 8);
+        }
+    }
+
+    private static void unpack(long[] o, byte[] n) {
+        for(int i = 0; i < 16; i++) {
+            o[i] = (n[2 * i] & 0xff) + ((long) (n[2 * i + 1] & 0xff) << 8);
+        }
+        o[15] &= 0x7fff;
+    }
+
+    private static void add(long[] o, long[] a, long[] b) {
+        for(int i = 0; i < 16; i++) {
+            o[i] = a[i] + b[i];
+        }
+    }
+
+    private static void sub(long[] o, long[] a, long[] b) {
+        for(int i = 0; i < 16; i++) {
+            o[i] = a[i] - b[i];
+        }
+    }
+
+    private static void mul(long[] o, long[] a, long[] b) {
+        final long[] t = new long[31];
+        for(int i = 0; i < 16; i++) {
+            for(int j = 0; j < 16; j++) {
+                t[i + j] += a[i] * b[j];
+            }
+        }
+        for(int i = 0; i < 15; i++) {
+            t[i] += 38 * t[i + 16];
+        }
+        System.arraycopy(t, 0, o, 0, 16);
+        carry(o);
+        carry(o);
+    }
+
+    private static void inv(long[] o, long[] i) {
+        final long[] c = new long[16];
+        System.arraycopy(i, 0, c, 0, 16);
+        for(int a = 253; a >= 0; a--) {
+            mul(c, c, c);
+            if(a != 2 && a != 4) {
+                mul(c, c, i);
+            }
+        }
+        System.arraycopy(c, 0, o, 0, 16);
+    }
+}
@@ -0,0 +1,44 @@
+package ch.ethz.ssh2.crypto.dh;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * Key exchange using X25519 as specified in RFC 8731.
+ *
+ * @version $Id$
+ */
+public class Curve25519Exchange extends EcDhExchange {
+
+    private byte[] x;
+
+    @Override
+    public void init(SecureRandom rnd) {
+        k = null;
+        x = new byte[Curve25519.KEY_SIZE];
+        rnd.nextBytes(x);
+        e = Curve25519.publicKey(x);
+    }
+
+    @Override
+    public void setF(byte[] f) {
+        if(e == null) {
+            throw new IllegalStateException("Not initialized!");
+        }
+        if(f.length != Curve25519.KEY_SIZE) {
+            throw new IllegalArgumentException("Invalid f specified!");
+        }
+        final byte[] shared = Curve25519.scalarMult(x, f);
+        // Reject low order points resulting in an all-zero secret
+        int acc = 0;
+        for(byte b : shared) {
+            acc |= b;
+        }
+        if(acc == 0) {
+            throw new IllegalArgumentException("Invalid f specified!");
+        }
+        this.f = f;
+        // The X25519 output is interpreted as an unsigned integer in network byte order
+        this.k = new BigInteger(1, shared);
+    }
+}
@@ -0,0 +1,111 @@
+package ch.ethz.ssh2.crypto.dh;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+import ch.ethz.ssh2.crypto.digest.HashForSSH2Types;
+
+/**
+ * Elliptic curve Diffie-Hellman key exchange as specified in RFC 5656 where the
+ * ephemeral public keys are exchanged as octet strings and the exchange hash is SHA-256.
+ *
+ * @version $Id$
+ */
+public abstract class EcDhExchange {
+
+    public static final String CURVE25519_SHA256 = "curve25519-sha256";
+    public static final String CURVE25519_SHA256_LIBSSH = "curve25519-sha256@libssh.org";
+    public static final String ECDH_SHA2_NISTP256 = "ecdh-sha2-nistp256";
+
+    /**
+     * Client public key
+     */
+    protected byte[] e;
+
+    /**
+     * Server public key
+     */
+    protected byte[] f;
+
+    /**
+     * Shared secret
+     */
+    protected BigInteger k;
+
+    /**
+     * @param kex Key exchange algorithm name
+     * @return True if the algorithm is an elliptic curve key exchange
+     */
+    public static boolean isEcDhExchange(String kex) {
+        return CURVE25519_SHA256.equals(kex) || CURVE25519_SHA256_LIBSSH.equals(kex)
+                || ECDH_SHA2_NISTP256.equals(kex);
+    }
+
+    /**
+     * @param kex Key exchange algorithm name
+     * @return True if the curve is available in this runtime
+     */
+    public static boolean isAvailable(String kex) {
+        if(ECDH_SHA2_NISTP256.equals(kex)) {
+            return NistP256Exchange.isAvailable();
+        }
+        return isEcDhExchange(kex);
+    }
+
+    public static EcDhExchange getInstance(String kex) {
+        if(CURVE25519_SHA256.equals(kex) || CURVE25519_SHA256_LIBSSH.equals(kex)) {
+            return new Curve25519Exchange();
+        }
+        if(ECDH_SHA2_NISTP256.equals(kex)) {
+            return new NistP256Exchange();
+        }
+        throw new IllegalArgumentException("Unknown kex algorithm " + kex);
+    }
+
+    /**
+     * Generate the ephemeral key pair
+     */
+    public abstract void init(SecureRandom rnd);
+
+    /**
+     * Compute the shared secret from the public key of the server
+     *
+     * @param f Encoded public key of the server
+     * @throws IllegalArgumentException Invalid public key
+     */
+    public abstract void setF(byte[] f);
+
+    /**
+     * @return Encoded public key of the client
+     */
+    public byte[] getE() {
+        if(e == null) {
+            throw new IllegalStateException("Not initialized!");
+        }
+        return e;
+    }
+
+    /**
+     * @return Returns the shared secret k.
+     */
+    public BigInteger getK() {
+        if(k == null) {
+            throw new IllegalStateException("Shared secret not yet known, need f first!");
+        }
+        return k;
+    }
+
+    public byte[] calculateH(byte[] clientversion, byte[] serverversion, byte[] clientKexPayload,
+                             byte[] serverKexPayload, byte[] hostKey) {
+        HashForSSH2Types hash = new HashForSSH2Types("SHA256");
+        hash.updateByteString(clientversion);
+        hash.updateByteString(serverversion);
+        hash.updateByteString(clientKexPayload);
+        hash.updateByteString(serverKexPayload);
+        hash.updateByteString(hostKey);
+        hash.updateByteString(e);
+        hash.updateByteString(f);
+        hash.updateBigInt(k);
+        return hash.getDigest();
+    }
+}
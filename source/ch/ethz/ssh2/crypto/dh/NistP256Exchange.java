@@ -0,0 +1,132 @@
+package ch.ethz.ssh2.crypto.dh;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.EllipticCurve;
+
+import javax.crypto.KeyAgreement;
+
+/**
+ * Key exchange on the NIST P-256 curve as specified in RFC 5656 using the
+ * elliptic curve implementation of the installed security providers.
+ *
+ * @version $Id$
+ */
+public class NistP256Exchange extends EcDhExchange {
+
+    private static final int FIELD_SIZE = 32;
+
+    private static Boolean available;
+
+    private KeyPair pair;
+
+    private ECParameterSpec params;
+
+    public static synchronized boolean isAvailable() {
+        if(null == available) {
+            try {
+                KeyPairGenerator.getInstance("EC").initialize(new ECGenParameterSpec("secp256r1"));
+                KeyAgreement.getInstance("ECDH");
+                available = true;
+            }
+            catch(GeneralSecurityException e) {
+                available = false;
+            }
+        }
+        return available;
+    }
+
+    @Override
+    public void init(SecureRandom rnd) {
+        k = null;
+        try {
+            final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"), rnd);
+            pair = generator.generateKeyPair();
+        }
+        catch(GeneralSecurityException ex) {
+            throw new IllegalStateException(ex.getMessage());
+        }
+        final ECPublicKey pub = (ECPublicKey) pair.getPublic();
+        params = pub.getParams();
+        e = encode(pub.getW());
+    }
+
+    @Override
+    public void setF(byte[] f) {
+        if(e == null) {
+            throw new IllegalStateException("Not initialized!");
+        }
+        final ECPoint point = decode(f, params.getCurve());
+        try {
+            final PublicKey server = KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(point, params));
+            final KeyAgreement agreement = KeyAgreement.getInstance("ECDH");
+            agreement.init(pair.getPrivate());
+            agreement.doPhase(server, true);
+            this.k = new BigInteger(1, agreement.generateSecret());
+        }
+        catch(GeneralSecurityException ex) {
+            throw new IllegalArgumentException("Invalid f specified!");
+        }
+        this.f = f;
+    }
+
+    /**
+     * Uncompressed point encoding of SEC1
+     */
+    private static byte[] encode(ECPoint point) {
+        final byte[] encoded = new byte[1 + 2 * FIELD_SIZE];
+        encoded[0] = 0x04;
+        copy(point.getAffineX(), encoded, 1);
+        copy(point.getAffineY(), encoded, 1 + FIELD_SIZE);
+        return encoded;
+    }
+
+    private static void copy(BigInteger value, byte[] dst, int off) {
+        final byte[] b = value.toByteArray();
+        if(b.length > FIELD_SIZE) {
+            // Strip sign byte
+            System.arraycopy(b, b.length - FIELD_SIZE, dst, off, FIELD_SIZE);
+        }
+        else {
+            System.arraycopy(b, 0, dst, off + FIELD_SIZE - b.length, b.length);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException Not an uncompressed point on the curve
+     */
+    private static ECPoint decode(byte[] encoded, EllipticCurve curve) {
+        if(encoded.length != 1 + 2 * FIELD_SIZE || encoded[0] != 0x04) {
+            throw new IllegalArgumentException("Invalid f specified!");
+        }
+        final byte[] bx = new byte[FIELD_SIZE];
+        final byte[] by = new byte[FIELD_SIZE];
+        System.arraycopy(encoded, 1, bx, 0, FIELD_SIZE);
+        System.arraycopy(encoded, 1 + FIELD_SIZE, by, 0, FIELD_SIZE);
+        final BigInteger x = new BigInteger(1, bx);
+        final BigInteger y = new BigInteger(1, by);
+        final BigInteger p = ((ECFieldFp) curve.getField()).getP();
+        if(x.compareTo(p) >= 0 || y.compareTo(p) >= 0) {
+            throw new IllegalArgumentException("Invalid f specified!");
+        }
+        // y^2 = x^3 + ax + b
+        final BigInteger lhs = y.multiply(y).mod(p);
+        final BigInteger rhs = x.multiply(x).multiply(x).add(curve.getA().multiply(x)).add(curve.getB()).mod(p);
+        if(!lhs.equals(rhs)) {
+            throw new IllegalArgumentException("Point not on curve!");
+        }
+        return new ECPoint(x, y);
+    }
+}
@@ -0,0 +1,60 @@
+package ch.ethz.ssh2.crypto.digest;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Message digest backed by the Java Cryptography Architecture.
+ *
+ * @version $Id$
+ */
+public final class JCEDigest implements Digest {
+
+    private final MessageDigest md;
+
+    /**
+     * @param algorithm Digest algorithm such as <code>SHA-256</code>
+     */
+    public JCEDigest(String algorithm) {
+        try {
+            this.md = MessageDigest.getInstance(algorithm);
+        }
+        catch(NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+        }
+    }
+
+    public int getDigestLength() {
+        return md.getDigestLength();
+    }
+
+    public void update(byte b) {
+        md.update(b);
+    }
+
+    public void update(byte[] b) {
+        md.update(b);
+    }
+
+    public void update(byte[] b, int off, int len) {
+        md.update(b, off, len);
+    }
+
+    public void reset() {
+        md.reset();
+    }
+
+    public void digest(byte[] out) {
+        this.digest(out, 0);
+    }
+
+    public void digest(byte[] out, int off) {
+        try {
+            md.digest(out, off, md.getDigestLength());
+        }
+        catch(DigestException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+}
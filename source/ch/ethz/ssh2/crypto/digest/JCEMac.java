@@ -0,0 +1,68 @@
+package ch.ethz.ssh2.crypto.digest;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * HMAC backed by the Java Cryptography Extension.
+ *
+ * @version $Id$
+ */
+public final class JCEMac implements Digest {
+
+    private final Mac mac;
+
+    private final byte[] tmp;
+
+    private final int size;
+
+    /**
+     * @param algorithm MAC algorithm such as <code>HmacSHA1</code>
+     * @param key       Secret key
+     * @param size      Number of bytes of the MAC to output
+     * @throws GeneralSecurityException Algorithm not available
+     */
+    public JCEMac(String algorithm, byte[] key, int size) throws GeneralSecurityException {
+        this.mac = Mac.getInstance(algorithm);
+        this.mac.init(new SecretKeySpec(key, algorithm));
+        this.tmp = new byte[mac.getMacLength()];
+        this.size = size;
+    }
+
+    public int getDigestLength() {
+        return size;
+    }
+
+    public void update(byte b) {
+        mac.update(b);
+    }
+
+    public void update(byte[] b) {
+        mac.update(b);
+    }
+
+    public void update(byte[] b, int off, int len) {
+        mac.update(b, off, len);
+    }
+
+    public void reset() {
+        mac.reset();
+    }
+
+    public void digest(byte[] out) {
+        this.digest(out, 0);
+    }
+
+    public void digest(byte[] out, int off) {
+        try {
+            mac.doFinal(tmp, 0);
+        }
+        catch(ShortBufferException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        System.arraycopy(tmp, 0, out, off, size);
+    }
+}
@@ -1,5 +1,9 @@
 package ch.ethz.ssh2.crypto.digest;
 
+import ch.ethz.ssh2.crypto.JCEProvider;
+
+import java.security.GeneralSecurityException;
+
 /**
  * MAC.
  *
@@ -14,6 +18,8 @@ public final class MAC {
         /* Higher Priority First */
 
         return new String[]{
+                "hmac-sha2-256",
+                "hmac-sha2-512",
                 "hmac-md5",
                 "hmac-md5-96",
                 "hmac-sha1",
@@ -28,6 +34,12 @@ public final class MAC {
     }
 
     public static int getKeyLen(String type) {
+        if(type.equals("hmac-sha2-256")) {
+            return 32;
+        }
+        if(type.equals("hmac-sha2-512")) {
+            return 64;
+        }
         if(type.equals("hmac-sha1")) {
             return 20;
         }
@@ -44,17 +56,23 @@ public final class MAC {
     }
 
     public MAC(String type, byte[] key) {
-        if(type.equals("hmac-sha1")) {
-            mac = new HMAC(new SHA1(), key, 20);
+        if(type.equals("hmac-sha2-256")) {
+            mac = create("HmacSHA256", null, key, 32);
+        }
+        else if(type.equals("hmac-sha2-512")) {
+            mac = create("HmacSHA512", null, key, 64);
+        }
+        else if(type.equals("hmac-sha1")) {
+            mac = create("HmacSHA1", new SHA1(), key, 20);
         }
         else if(type.equals("hmac-sha1-96")) {
-            mac = new HMAC(new SHA1(), key, 12);
+            mac = create("HmacSHA1", new SHA1(), key, 12);
         }
         else if(type.equals("hmac-md5")) {
-            mac = new HMAC(new MD5(), key, 16);
+            mac = create("HmacMD5", new MD5(), key, 16);
         }
         else if(type.equals("hmac-md5-96")) {
-            mac = new HMAC(new MD5(), key, 12);
+            mac = create("HmacMD5", new MD5(), key, 12);
         }
         else {
             throw new IllegalArgumentException("Unkown algorithm " + type);
@@ -63,6 +81,31 @@ public final class MAC {
         size = mac.getDigestLength();
     }
 
+    /**
+     * @param algorithm Name of the algorithm in the Java Cryptography Extension
+     * @param md        Bundled digest implementation to use if not available or null if there is none
+     * @return JCE implementation if available or bundled HMAC otherwise
+     */
+    private static Digest create(String algorithm, Digest md, byte[] key, int size) {
+        if(null == md) {
+            try {
+                return new JCEMac(algorithm, key, size);
+            }
+            catch(GeneralSecurityException e) {
+                throw new IllegalArgumentException("Cannot instantiate " + algorithm);
+            }
+        }
+        if(JCEProvider.isMacAvailable(algorithm)) {
+            try {
+                return new JCEMac(algorithm, key, size);
+            }
+            catch(GeneralSecurityException e) {
+                // Fallback to bundled implementation
+            }
+        }
+        return new HMAC(md, key, size);
+    }
+
     public final void initMac(int seq) {
         mac.reset();
         mac.update((byte) (seq >> 24));
@@ -0,0 +1,177 @@
+package ch.ethz.ssh2.crypto.digest;
+
+/**
+ * Poly1305 one-time authenticator as specified in RFC 7539. Computed with 26 bit limbs.
+ *
+ * @version $Id$
+ */
+public final class Poly1305 {
+
+    public static final int TAG_LENGTH = 16;
+
+    private static final int MASK = 0x3ffffff;
+
+    private final long r0, r1, r2, r3, r4;
+    private final long s1, s2, s3, s4;
+    private final long k0, k1, k2, k3;
+
+    private long h0, h1, h2, h3, h4;
+
+    private final byte[] buffer = new byte[16];
+
+    private int buffered;
+
+    /**
+     * @param key 32 byte one-time key
+     */
+    public Poly1305(byte[] key, int off) {
+        r0 = littleEndian(key, off) & 0x3ffffff;
+        r1 = (littleEndian(key, off + 3) >>> 2) & 0x3ffff03;
+        r2 = (littleEndian(key, off + 6) >>> 4) & 0x3ffc0ff;
+        r3 = (littleEndian(key, off + 9) >>> 6) & 0x3f03fff;
+        r4 = (littleEndian(key, off + 12) >>> 8) & 0x00fffff;
+        s1 = r1 * 5;
+        s2 = r2 * 5;
+        s3 = r3 * 5;
+        s4 = r4 * 5;
+        k0 = littleEndian(key, off + 16);
+        k1 = littleEndian(key, off + 20);
+        k2 = littleEndian(key, off + 24);
+        k3 = littleEndian(key, off + 28);
+    }
+
+    public void update(byte[] in, int off, int len) {
+        if(buffered > 0) {
+            final int copy = Math.min(len, 16 - buffered);
+            System.arraycopy(in, off, buffer, buffered, copy);
+            buffered += copy;
+            off += copy;
+            len -= copy;
+            if(buffered < 16) {
+                return;
+            }
+            this.block(buffer, 0, 1 << 24);
+            buffered = 0;
+        }
+        while(len >= 16) {
+            this.block(in, off, 1 << 24);
+            off += 16;
+            len -= 16;
+        }
+        System.arraycopy(in, off, buffer, 0, len);
+        buffered = len;
+    }
+
+    /**
+     * @param out Receives the 16 byte tag
+     */
+    public void finish(byte[] out, int off) {
+        if(buffered > 0) {
+            buffer[buffered] = 1;
+            for(int i = buffered + 1; i < 16; i++) {
+                buffer[i] = 0;
+            }
+            this.block(buffer, 0, 0);
+            buffered = 0;
+        }
+        long c;
+        c = h1 >>> 26;
+        h1 &= MASK;
+        h2 += c;
+        c = h2 >>> 26;
+        h2 &= MASK;
+        h3 += c;
+        c = h3 >>> 26;
+        h3 &= MASK;
+        h4 += c;
+        c = h4 >>> 26;
+        h4 &= MASK;
+        h0 += c * 5;
+        c = h0 >>> 26;
+        h0 &= MASK;
+        h1 += c;
+
+        // Compute h - p
+        long g0 = h0 + 5;
+        c = g0 >>> 26;
+        g0 &= MASK;
+        long g1 = h1 + c;
+        c = g1 >>> 26;
+        g1 &= MASK;
+        long g2 = h2 + c;
+        c = g2 >>> 26;
+        g2 &= MASK;
+        long g3 = h3 + c;
+        c = g3 >>> 26;
+        g3 &= MASK;
+        long g4 = h4 + c - (1 << 26);
+
+        // Select h if h < p or h - p otherwise
+        if(g4 >= 0) {
+            h0 = g0;
+            h1 = g1;
+            h2 = g2;
+            h3 = g3;
+            h4 = g4;
+        }
+
+        final long f0 = ((h0) | (h1 << 26)) & 0xffffffffL;
+        final long f1 = ((h1 >>> 6) | (h2 << 20)) & 0xffffffffL;
+        final long f2 = ((h2 >>> 12) | (h3 << 14)) & 0xffffffffL;
+        final long f3 = ((h3 >>> 18) | (h4 << 8)) & 0xffffffffL;
+
+        long f = f0 + k0;
+        writeLittleEndian((int) f, out, off);
+        f = f1 + k1 + (f >>> 32);
+        writeLittleEndian((int) f, out, off + 4);
+        f = f2 + k2 + (f >>> 32);
+        writeLittleEndian((int) f, out, off + 8);
+        f = f3 + k3 + (f >>> 32);
+        writeLittleEndian((int) f, out, off + 12);
+    }
+
+    private void block(byte[] m, int off, int hibit) {
+        h0 += littleEndian(m, off) & MASK;
+        h1 += (littleEndian(m, off + 3) >>> 2) & MASK;
+        h2 += (littleEndian(m, off + 6) >>> 4) & MASK;
+        h3 += (littleEndian(m, off + 9) >>> 6) & MASK;
+        h4 += (littleEndian(m, off + 12) >>> 8) | hibit;
+
+        final long d0 = h0 * r0 + h1 * s4 + h2 * s3 + h3 * s2 + h4 * s1;
+        long d1 = h0 * r1 + h1 * r0 + h2 * s4 + h3 * s3 + h4 * s2;
+        long d2 = h0 * r2 + h1 * r1 + h2 * r0 + h3 * s4 + h4 * s3;
+        long d3 = h0 * r3 + h1 * r2 + h2 * r1 + h3 * r0 + h4 * s4;
+        long d4 = h0 * r4 + h1 * r3 + h2 * r2 + h3 * r1 + h4 * r0;
+
+        long c = d0 >>> 26;
+        h0 = d0 & MASK;
+        d1 += c;
+        c = d1 >>> 26;
+        h1 = d1 & MASK;
+        d2 += c;
+        c = d2 >>> 26;
+        h2 = d2 & MASK;
+        d3 += c;
+        c = d3 >>> 26;
+        h3 = d3 & MASK;
+        d4 += c;
+        c = d4 >>> 26;
+        h4 = d4 & MASK;
+        h0 += c * 5;
+        c = h0 >>> 26;
+        h0 &= MASK;
+        h1 += c;
+    }
+
+    private static long littleEndian(byte[] b, int off) {
+        return ((b[off] & 0xff) | ((b[off + 1] & 0xff) << 8) | ((b[off + 2] & 0xff) << 16)
+                | ((long) (b[off + 3] & 0xff) << 24));
+    }
+
+    private static void writeLittleEndian(int v, byte[] out, int off) {
+        out[off] = (byte) v;
+        out[off + 1] = (byte) (v >>> 8);
+        out[off + 2] = (byte) (v >>> 16);
+        out[off + 3] = (byte) (v >>> 24);
+    }
+}
@@ -0,0 +1,30 @@
+package ch.ethz.ssh2.packets;
+
+/**
+ * PacketKexECDHInit.
+ *
+ * @version $Id$
+ */
+public class PacketKexECDHInit
+{
+	byte[] payload;
+
+	byte[] q_c;
+
+	public PacketKexECDHInit(byte[] q_c)
+	{
+		this.q_c = q_c;
+	}
+
+	public byte[] getPayload()
+	{
+		if (payload == null)
+		{
+			TypesWriter tw = new TypesWriter();
+			tw.writeByte(Packets.SSH_MSG_KEX_ECDH_INIT);
+			tw.writeString(q_c, 0, q_c.length);
+			payload = tw.getBytes();
+		}
+		return payload;
+	}
+}
@@ -0,0 +1,52 @@
+package ch.ethz.ssh2.packets;
+
+import java.io.IOException;
+
+/**
+ * PacketKexECDHReply.
+ *
+ * @version $Id$
+ */
+public class PacketKexECDHReply
+{
+	byte[] payload;
+
+	byte[] hostKey;
+	byte[] q_s;
+	byte[] signature;
+
+	public PacketKexECDHReply(byte payload[], int off, int len) throws IOException
+	{
+		this.payload = new byte[len];
+		System.arraycopy(payload, off, this.payload, 0, len);
+
+		TypesReader tr = new TypesReader(payload, off, len);
+
+		int packet_type = tr.readByte();
+
+		if (packet_type != Packets.SSH_MSG_KEX_ECDH_REPLY)
+			throw new IOException("This is not a SSH_MSG_KEX_ECDH_REPLY! ("
+					+ packet_type + ")");
+
+		hostKey = tr.readByteString();
+		q_s = tr.readByteString();
+		signature = tr.readByteString();
+
+		if (tr.remain() != 0) throw new IOException("PADDING IN SSH_MSG_KEX_ECDH_REPLY!");
+	}
+
+	public byte[] getQ_S()
+	{
+		return q_s;
+	}
+
+	public byte[] getHostKey()
+	{
+		return hostKey;
+	}
+
+	public byte[] getSignature()
+	{
+		return signature;
+	}
+}
@@ -33,6 +33,23 @@ public class TypesWriter
 		return pos;
 	}
 
+	/**
+	 * Discard the contents but keep the allocated buffer for reuse.
+	 */
+	public void reset()
+	{
+		pos = 0;
+	}
+
+	/**
+	 * @return The internal buffer without copying. Only the first
+	 *         {@link #length()} bytes are valid.
+	 */
+	public byte[] getBuffer()
+	{
+		return arr;
+	}
+
 	public byte[] getBytes()
 	{
 		byte[] dst = new byte[pos];
@@ -7,13 +7,14 @@ import ch.ethz.ssh2.log.Logger;
 import ch.ethz.ssh2.packets.TypesReader;
 import ch.ethz.ssh2.packets.TypesWriter;
 
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
@@ -81,6 +82,21 @@ public class SFTPv3Client {
      */
     private PacketListener listener;
 
+    /**
+     * Reused to encode requests including the packet header
+     */
+    private final TypesWriter request = new TypesWriter();
+
+    /**
+     * Length, type, request id and data length of a received packet
+     */
+    private final byte[] header = new byte[13];
+
+    /**
+     * Reused for responses not kept beyond parsing
+     */
+    private byte[] response = new byte[1024];
+
     /**
      * Create a SFTP v3 client.
      *
@@ -100,7 +116,8 @@ public class SFTPv3Client {
         sess.startSubSystem("sftp");
 
         is = sess.getStdout();
-        os = new BufferedOutputStream(sess.getStdin(), 2048);
+        // Every packet is written at once
+        os = sess.getStdin();
 
         if(is == null) {
             throw new IOException("There is a problem with the streams of the underlying channel.");
@@ -109,6 +126,18 @@ public class SFTPv3Client {
         init();
     }
 
+    /**
+     * Client on arbitrary streams without SSH session.
+     */
+    SFTPv3Client(InputStream is, OutputStream os, PacketListener listener) throws IOException {
+        this.conn = null;
+        this.sess = null;
+        this.listener = listener;
+        this.is = is;
+        this.os = os;
+        init();
+    }
+
     /**
      * Set the charset used to convert between Java Unicode Strings and byte encodings
      * used by the server for paths and file names. Unfortunately, the SFTP v3 draft
@@ -163,28 +192,35 @@ public class SFTPv3Client {
     }
 
     private void sendMessage(int type, int requestId, byte[] msg, int off, int len) throws IOException {
-        listener.write(Packet.forName(type));
-
-        int msglen = len + 1;
-
-        if(type != Packet.SSH_FXP_INIT) {
-            msglen += 4;
-        }
-
-        os.write(msglen >> 24);
-        os.write(msglen >> 16);
-        os.write(msglen >> 8);
-        os.write(msglen);
-        os.write(type);
+        TypesWriter tw = this.startRequest(type, requestId);
+        tw.writeBytes(msg, off, len);
+        this.sendRequest(tw);
+    }
 
+    /**
+     * Start encoding a request in the reused buffer
+     *
+     * @return Writer to append the request fields to
+     */
+    private TypesWriter startRequest(int type, int requestId) {
+        request.reset();
+        // Length is set when sent
+        request.writeUINT32(0);
+        request.writeByte(type);
         if(type != Packet.SSH_FXP_INIT) {
-            os.write(requestId >> 24);
-            os.write(requestId >> 16);
-            os.write(requestId >> 8);
-            os.write(requestId);
+            request.writeUINT32(requestId);
         }
+        return request;
+    }
 
-        os.write(msg, off, len);
+    /**
+     * Write a request started with #startRequest as a single packet
+     */
+    private void sendRequest(TypesWriter tw) throws IOException {
+        final byte[] packet = tw.getBuffer();
+        listener.write(Packet.forName(packet[4] & 0xff));
+        tw.writeUINT32(tw.length() - 4, 0);
+        os.write(packet, 0, tw.length());
         os.flush();
     }
 
@@ -218,21 +254,58 @@ public class SFTPv3Client {
      * @throws IOException
      */
     private byte[] receiveMessage(int maxlen) throws IOException {
-        byte[] msglen = new byte[4];
+        int len = this.receiveLength(maxlen);
 
-        readBytes(msglen, 0, 4);
+        byte[] msg = new byte[len];
+
+        readBytes(msg, 0, len);
 
-        int len = (((msglen[0] & 0xff) << 24) | ((msglen[1] & 0xff) << 16) | ((msglen[2] & 0xff) << 8) | (msglen[3] & 0xff));
+        return msg;
+    }
+
+    /**
+     * Read the length of the next message
+     */
+    private int receiveLength(int maxlen) throws IOException {
+        readBytes(header, 0, 4);
+
+        int len = decodeUINT32(header, 0);
 
         if((len > maxlen) || (len <= 0)) {
             throw new IOException("Illegal sftp packet len: " + len);
         }
+        return len;
+    }
 
-        byte[] msg = new byte[len];
+    /**
+     * Read a message into the reused response buffer. The contents is only
+     * valid until the next message is received.
+     *
+     * @return Length of the message in the response buffer
+     */
+    private int receiveResponse(int maxlen) throws IOException {
+        int len = this.receiveLength(maxlen);
+        this.readResponse(len);
+        return len;
+    }
 
-        readBytes(msg, 0, len);
+    private void readResponse(int len) throws IOException {
+        if(response.length < len) {
+            response = new byte[Math.max(len, response.length * 2)];
+        }
+        readBytes(response, 0, len);
+    }
 
-        return msg;
+    private void skipBytes(int len) throws IOException {
+        while(len > 0) {
+            int n = Math.min(len, response.length);
+            readBytes(response, 0, n);
+            len -= n;
+        }
+    }
+
+    private static int decodeUINT32(byte[] b, int off) {
+        return ((b[off] & 0xff) << 24) | ((b[off + 1] & 0xff) << 16) | ((b[off + 2] & 0xff) << 8) | (b[off + 3] & 0xff);
     }
 
     private int generateNextRequestID() {
@@ -416,6 +489,65 @@ public class SFTPv3Client {
         return statBoth(path, Packet.SSH_FXP_LSTAT);
     }
 
+    /**
+     * Retrieve the file attributes of multiple files. Up to <code>parallelism</code> requests
+     * are sent before waiting for a reply instead of a round trip per file.
+     *
+     * @param paths       See the {@link SFTPv3Client comment} for the class for more details.
+     * @param followLinks Send SSH_FXP_STAT if true and SSH_FXP_LSTAT otherwise
+     * @param parallelism Maximum number of outstanding requests
+     * @return The attributes in the order of <code>paths</code>. Null for files the server
+     *         replied with an error status such as SSH_FX_NO_SUCH_FILE.
+     * @throws IOException
+     * @see #stat(String)
+     * @see #lstat(String)
+     */
+    public SFTPv3FileAttributes[] stat(String[] paths, boolean followLinks, int parallelism) throws IOException {
+        final SFTPv3FileAttributes[] result = new SFTPv3FileAttributes[paths.length];
+        // Index of the path by request id
+        final Map<Integer, Integer> outstanding = new HashMap<Integer, Integer>();
+        int next = 0;
+        while(next < paths.length || !outstanding.isEmpty()) {
+            while(next < paths.length && outstanding.size() < Math.max(1, parallelism)) {
+                int req_id = generateNextRequestID();
+
+                TypesWriter tw = new TypesWriter();
+                tw.writeString(paths[next], charsetName);
+
+                sendMessage(followLinks ? Packet.SSH_FXP_STAT : Packet.SSH_FXP_LSTAT, req_id, tw.getBytes());
+                outstanding.put(req_id, next++);
+            }
+
+            byte[] resp = receiveMessage(34000);
+
+            TypesReader tr = new TypesReader(resp);
+
+            int t = tr.readByte();
+            listener.read(Packet.forName(t));
+
+            // Replies are not necessarily in the order of the requests
+            Integer index = outstanding.remove(tr.readUINT32());
+            if(null == index) {
+                throw new IOException("The server sent an invalid id field.");
+            }
+
+            if(t == Packet.SSH_FXP_ATTRS) {
+                result[index] = readAttrs(tr);
+                continue;
+            }
+
+            if(t != Packet.SSH_FXP_STATUS) {
+                throw new IOException("The SFTP server sent an unexpected packet type (" + t + ")");
+            }
+
+            int errorCode = tr.readUINT32();
+            String errorMessage = tr.readString();
+            listener.read(errorMessage);
+            log.log("Status " + errorCode + " for " + paths[index] + ": " + errorMessage);
+        }
+        return result;
+    }
+
     /**
      * Read the target of a symbolic link. Note: OpenSSH (as of version 4.4) gets very upset
      * (SSH_FX_BAD_MESSAGE error) if you want to read the target of a file that is not a
@@ -1117,7 +1249,8 @@ public class SFTPv3Client {
 
     /**
      * A read  is divided into multiple requests sent sequentially before
-     * reading any status from the server
+     * reading any status from the server. Responses are buffered until
+     * all data at lower file offsets has been returned.
      */
     private static class OutstandingReadRequest {
         int req_id;
@@ -1130,23 +1263,108 @@ public class SFTPv3Client {
          */
         int len;
         /**
-         * Offset in destination buffer
+         * Time the request was sent in nanoseconds
          */
-        int dstOffset;
+        long sent;
         /**
-         * Temporary buffer
+         * A response has been received for this request
+         */
+        boolean answered;
+        /**
+         * Response packet holding the data read
          */
         byte[] buffer;
+        /**
+         * Offset of data not yet returned in the response packet
+         */
+        int dataOffset;
+        /**
+         * Length of data not yet returned
+         */
+        int dataLength;
+        /**
+         * The server reported the end of the file
+         */
+        boolean eof;
+        /**
+         * Failure reported by the server
+         */
+        SFTPException error;
+        /**
+         * Number of bytes returned for the request this one requests the remaining data of
+         */
+        int shortRead;
     }
 
     private void sendReadRequest(int id, SFTPv3FileHandle handle, long offset, int len) throws IOException {
-        TypesWriter tw = new TypesWriter();
+        TypesWriter tw = this.startRequest(Packet.SSH_FXP_READ, id);
         tw.writeString(handle.fileHandle, 0, handle.fileHandle.length);
         tw.writeUINT64(offset);
         tw.writeUINT32(len);
 
-        log.log("Sending SSH_FXP_READ (" + id + ") " + offset + "/" + len);
-        sendMessage(Packet.SSH_FXP_READ, id, tw.getBytes());
+        if(log.isEnabled()) {
+            log.log("Sending SSH_FXP_READ (" + id + ") " + offset + "/" + len);
+        }
+        this.sendRequest(tw);
+    }
+
+    /**
+     * Buffers for data received ahead of the current read offset. Reused once
+     * the data has been returned.
+     */
+    private final byte[][] bufferPool = new byte[DEFAULT_MAX_PARALLELISM][];
+
+    private int pooledBuffers = 0;
+
+    /**
+     * Read request objects reused for subsequent requests
+     */
+    private final List<OutstandingReadRequest> requestPool
+            = new ArrayList<OutstandingReadRequest>();
+
+    /**
+     * @param len Minimum length
+     * @return Pooled buffer or a new buffer if none large enough is available
+     */
+    private byte[] allocate(int len) {
+        while(pooledBuffers > 0) {
+            final byte[] buffer = bufferPool[--pooledBuffers];
+            bufferPool[pooledBuffers] = null;
+            if(buffer.length >= len) {
+                return buffer;
+            }
+            // Request size increased. Drop smaller buffers
+        }
+        return new byte[Math.max(len, adaptive ? requestSize : len)];
+    }
+
+    private OutstandingReadRequest obtain() {
+        if(requestPool.isEmpty()) {
+            return new OutstandingReadRequest();
+        }
+        final OutstandingReadRequest req = requestPool.remove(requestPool.size() - 1);
+        req.answered = false;
+        req.eof = false;
+        req.error = null;
+        req.shortRead = 0;
+        req.dataOffset = 0;
+        req.dataLength = 0;
+        return req;
+    }
+
+    /**
+     * Return the request and its buffer to the pool once all data has been returned
+     */
+    private void recycle(OutstandingReadRequest req) {
+        if(req.buffer != null) {
+            if(pooledBuffers < bufferPool.length) {
+                bufferPool[pooledBuffers++] = req.buffer;
+            }
+            req.buffer = null;
+        }
+        if(requestPool.size() < DEFAULT_MAX_PARALLELISM) {
+            requestPool.add(req);
+        }
     }
 
     /**
@@ -1154,6 +1372,16 @@ public class SFTPv3Client {
      */
     private static final int DEFAULT_MAX_PARALLELISM = 64;
 
+    /**
+     * Smallest size of a read request in adaptive mode.
+     */
+    private static final int MIN_REQUEST_SIZE = 32768;
+
+    /**
+     * Smallest number of bytes allowed in flight in adaptive mode.
+     */
+    private static final long MIN_WINDOW = 8 * MIN_REQUEST_SIZE;
+
     /**
      * Parallel read requests.
      */
@@ -1168,11 +1396,255 @@ public class SFTPv3Client {
     }
 
     /**
-     * Mapping request ID to request.
+     * Size the pipeline from the measured round trip time and throughput instead of
+     * always keeping <code>parallelism</code> requests outstanding.
+     */
+    private boolean adaptive = false;
+
+    /**
+     * Largest size of a single read request in adaptive mode. Lowered if the server
+     * is found to return less data than requested.
+     */
+    private int maxRequestSize = MIN_REQUEST_SIZE;
+
+    /**
+     * Maximum length of a response to a read request.
+     */
+    private int maxResponseLength = 34000;
+
+    /**
+     * Size of read requests in adaptive mode.
+     */
+    private int requestSize = MIN_REQUEST_SIZE;
+
+    /**
+     * Number of bytes allowed in flight in adaptive mode.
+     */
+    private long window = MIN_WINDOW;
+
+    /**
+     * Smallest round trip time measured in nanoseconds.
+     */
+    private long minRtt = 0;
+
+    /**
+     * Smoothed round trip time in nanoseconds.
+     */
+    private long srtt = 0;
+
+    /**
+     * Start of the current throughput measurement interval in nanoseconds.
+     */
+    private long intervalStart = 0;
+
+    /**
+     * Bytes transferred in the current measurement interval.
+     */
+    private long intervalBytes = 0;
+
+    /**
+     * Throughput of the previous measurement interval in bytes per nanosecond.
+     */
+    private double rate = 0;
+
+    /**
+     * Highest throughput measured, slowly decaying, in bytes per nanosecond.
+     */
+    private double bandwidth = 0;
+
+    /**
+     * Bytes requested for which no response has been received yet.
+     */
+    private long inflight = 0;
+
+    private long maxInflight = 0;
+
+    private long inflightSum = 0;
+
+    private long inflightSamples = 0;
+
+    /**
+     * In adaptive mode the number of outstanding requests is grown while the throughput
+     * increases and is otherwise kept at twice the measured bandwidth-delay product. Read
+     * requests are enlarged up to <code>maxRequestSize</code> for large windows. The number
+     * of outstanding requests never exceeds the parallelism set.
+     *
+     * @param adaptive       Enable adaptive pipelining
+     * @param maxRequestSize Largest size of a single read request in bytes
+     * @see #setRequestParallelism(int)
+     */
+    public void setAdaptivePipelining(boolean adaptive, int maxRequestSize) {
+        this.adaptive = adaptive;
+        this.maxRequestSize = Math.max(MIN_REQUEST_SIZE, maxRequestSize);
+        this.maxResponseLength = Math.max(maxResponseLength, this.maxRequestSize + 1024);
+        this.requestSize = Math.min(requestSize, this.maxRequestSize);
+        log.log("setAdaptivePipelining:" + adaptive + " maxRequestSize:" + this.maxRequestSize);
+    }
+
+    /**
+     * @return Number of bytes currently requested from or written to the server
+     *         for which no response has been received yet
+     */
+    public long getBytesInflight() {
+        return inflight;
+    }
+
+    /**
+     * @return Highest number of bytes in flight so far
+     */
+    public long getMaxBytesInflight() {
+        return maxInflight;
+    }
+
+    /**
+     * @return Average number of bytes in flight when a response was received
+     */
+    public long getAverageBytesInflight() {
+        if(0 == inflightSamples) {
+            return 0;
+        }
+        return inflightSum / inflightSamples;
+    }
+
+    /**
+     * @return Smoothed round trip time of read and write requests in milliseconds
+     */
+    public long getRoundTripTime() {
+        return srtt / 1000000;
+    }
+
+    /**
+     * @return Size of read requests in adaptive mode
+     */
+    public int getRequestSize() {
+        return requestSize;
+    }
+
+    /**
+     * @return Current size of the local window of the underlying channel
+     */
+    public int getWindowSize() {
+        return sess.getWindowSize();
+    }
+
+    /**
+     * @param size Size of the requests to send
+     * @return Number of requests allowed to be outstanding
+     */
+    private int getParallelism(int size) {
+        if(adaptive) {
+            return (int) Math.max(1, Math.min(parallelism, (window + size - 1) / size));
+        }
+        return parallelism;
+    }
+
+    /**
+     * @param len Number of bytes requested or written
+     * @return Time the request is sent
+     */
+    private long sent(int len) {
+        inflight += len;
+        if(inflight > maxInflight) {
+            maxInflight = inflight;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Update the round trip time and the throughput measured.
+     *
+     * @param sent  Time the request was sent
+     * @param len   Number of bytes requested or written
+     * @param bytes Number of bytes transferred
+     */
+    private void received(long sent, int len, int bytes) {
+        inflightSum += inflight;
+        inflightSamples++;
+        inflight -= len;
+
+        final long now = System.nanoTime();
+        final long rtt = Math.max(1, now - sent);
+        if(0 == minRtt || rtt < minRtt) {
+            minRtt = rtt;
+        }
+        srtt = (0 == srtt) ? rtt : (7 * srtt + rtt) / 8;
+
+        if(!adaptive) {
+            return;
+        }
+        if(0 == intervalStart) {
+            intervalStart = sent;
+        }
+        intervalBytes += bytes;
+        final long elapsed = now - intervalStart;
+        // Measure over at least two round trips
+        if(elapsed < 2 * minRtt) {
+            return;
+        }
+        final double current = (double) intervalBytes / elapsed;
+        intervalStart = now;
+        intervalBytes = 0;
+
+        bandwidth = Math.max(current, bandwidth * 0.9);
+        if(current > rate * 1.25) {
+            // Throughput still increases with the number of bytes in flight
+            window *= 2;
+        }
+        else {
+            window = 2 * (long) (bandwidth * minRtt);
+        }
+        rate = current;
+
+        window = Math.max(MIN_WINDOW, Math.min(window, (long) parallelism * maxRequestSize));
+        requestSize = Math.min(maxRequestSize,
+                Math.max(MIN_REQUEST_SIZE, Integer.highestOneBit((int) Math.min(Integer.MAX_VALUE, window / 8))));
+
+        log.log("Pipeline window " + window + " bytes with requests of " + requestSize + " bytes (rtt "
+                + (srtt / 1000) + "us, " + (long) (current * 1000000000L) + " bytes/s)");
+    }
+
+    /**
+     * Start a new throughput measurement interval if the pipeline has been idle.
+     */
+    private void restart() {
+        intervalStart = 0;
+        intervalBytes = 0;
+        rate = 0;
+    }
+
+    /**
+     * Mapping request ID to request for requests not answered yet.
      */
     Map<Integer, OutstandingReadRequest> pendingReadQueue
             = new HashMap<Integer, OutstandingReadRequest>();
 
+    /**
+     * Read requests in order of the file offset including answered requests
+     * with data not yet returned.
+     */
+    private final LinkedList<OutstandingReadRequest> pendingReads
+            = new LinkedList<OutstandingReadRequest>();
+
+    /**
+     * File of the outstanding read requests
+     */
+    private SFTPv3FileHandle readHandle;
+
+    /**
+     * File offset of the next byte to return.
+     */
+    private long readOffset;
+
+    /**
+     * File offset of the next read request to send.
+     */
+    private long requestOffset;
+
+    /**
+     * No more read requests are sent after the server returned a status.
+     */
+    private boolean readError;
+
     /**
      * Read bytes from a file in a parallel fashion. As many bytes as you want will be read.
      * <p/>
@@ -1185,6 +1657,8 @@ public class SFTPv3Client {
      * number of bytes, or up to end of file. For, e.g., device files this may return
      * fewer bytes than requested.</li>
      * </ul>
+     * Data is requested ahead of <code>fileOffset</code>. Subsequent calls should read
+     * sequentially from the same handle, otherwise the data requested in advance is discarded.
      *
      * @param handle     a SFTPv3FileHandle handle
      * @param fileOffset offset (in bytes) in the file
@@ -1196,118 +1670,221 @@ public class SFTPv3Client {
      * @throws IOException
      */
     public int download(SFTPv3FileHandle handle, long fileOffset, byte[] dst, int dstoff, int len) throws IOException {
-        boolean errorOccured = false;
-
         checkHandleValidAndOpen(handle);
 
-        int remaining = len * parallelism;
-        int clientOffset = dstoff;
-
-        long serverOffset = fileOffset;
-        for(OutstandingReadRequest r : pendingReadQueue.values()) {
-            // Server offset should take pending requests into account.
-            serverOffset += r.len;
+        if(handle != readHandle || fileOffset != readOffset) {
+            // Data requested in advance is of no use
+            this.discardReads();
+            this.restart();
+            readHandle = handle;
+            readOffset = fileOffset;
+            requestOffset = fileOffset;
         }
 
         while(true) {
-            // Stop if there was an error and no outstanding request
-            if((pendingReadQueue.size() == 0) && errorOccured) {
+            if(!readError) {
+                // Send as many requests as we are allowed to
+                final int size = adaptive ? requestSize : len;
+                while(pendingReadQueue.size() < this.getParallelism(size)) {
+                    OutstandingReadRequest req = this.obtain();
+                    req.req_id = generateNextRequestID();
+                    req.serverOffset = requestOffset;
+                    req.len = size;
+                    requestOffset += size;
+
+                    sendReadRequest(req.req_id, handle, req.serverOffset, req.len);
+                    req.sent = this.sent(req.len);
+
+                    pendingReadQueue.put(req.req_id, req);
+                    pendingReads.add(req);
+                }
+            }
+            if(pendingReads.isEmpty()) {
                 break;
             }
-
-            // Send as many requests as we are allowed to
-            while(pendingReadQueue.size() < parallelism) {
-                if(errorOccured) {
-                    break;
+            OutstandingReadRequest head = pendingReads.getFirst();
+            if(!head.answered) {
+                // Receive a single answer. Data for the head of the queue is read into the destination
+                int direct = this.receiveReadResponse(false, dst, dstoff, len);
+                if(direct > 0) {
+                    readOffset += direct;
+                    if(0 == head.dataLength) {
+                        pendingReads.removeFirst();
+                        this.recycle(head);
+                    }
+                    return direct;
+                }
+                continue;
+            }
+            if(head.dataLength > 0) {
+                int copy = Math.min(len, head.dataLength);
+                System.arraycopy(head.buffer, head.dataOffset, dst, dstoff, copy);
+                head.dataOffset += copy;
+                head.dataLength -= copy;
+                readOffset += copy;
+                if(0 == head.dataLength) {
+                    pendingReads.removeFirst();
+                    this.recycle(head);
                 }
-                // Send the next read request
-                OutstandingReadRequest req = new OutstandingReadRequest();
-                req.req_id = generateNextRequestID();
-                req.serverOffset = serverOffset;
-                req.len = (remaining > len) ? len : remaining;
-                req.buffer = dst;
-                req.dstOffset = dstoff;
+                return copy;
+            }
+            if(head.eof) {
+                this.discardReads();
+                return -1;
+            }
+            if(head.error != null) {
+                this.discardReads();
+                throw head.error;
+            }
+            pendingReads.removeFirst();
+            this.recycle(head);
+        }
+        // Should never reach here.
+        throw new SFTPException("No EOF reached", -1);
+    }
 
-                serverOffset += req.len;
-                clientOffset += req.len;
-                remaining -= req.len;
+    /**
+     * Receive the response to an outstanding read request. Data returned for the first
+     * request in the queue is read into the destination array directly. Other data
+     * is kept in a pooled buffer until returned.
+     *
+     * @param discard Do not request the missing data if the server returned less than requested
+     * @param dst     Destination for data of the first pending request or null
+     * @param dstoff  Offset in the destination
+     * @param dstlen  Maximum number of bytes to read into the destination
+     * @return Number of bytes read into the destination
+     * @throws IOException
+     */
+    private int receiveReadResponse(boolean discard, byte[] dst, int dstoff, int dstlen) throws IOException {
+        int len = this.receiveLength(maxResponseLength);
+        if(len < 5) {
+            throw new IOException("Illegal sftp packet len: " + len);
+        }
+        readBytes(header, 4, 5);
 
-                sendReadRequest(req.req_id, handle, req.serverOffset, req.len);
+        int t = header[4] & 0xff;
+        listener.read(Packet.forName(t));
 
-                pendingReadQueue.put(req.req_id, req);
-            }
-            if(pendingReadQueue.size() == 0) {
-                break;
-            }
+        // Search the pending queue
+        OutstandingReadRequest req = pendingReadQueue.remove(decodeUINT32(header, 5));
+        if(null == req) {
+            throw new IOException("The server sent an invalid id field.");
+        }
+        req.answered = true;
+        int remaining = len - 5;
+        // Evaluate the answer
+        if(t == Packet.SSH_FXP_STATUS) {
+            this.readResponse(remaining);
+            TypesReader tr = new TypesReader(response, 0, remaining);
 
-            // Receive a single answer
-            byte[] resp = receiveMessage(34000);
-            TypesReader tr = new TypesReader(resp);
+            this.received(req.sent, req.len, 0);
+            /* In any case, stop sending more packets */
 
-            int t = tr.readByte();
-            listener.read(Packet.forName(t));
+            int code = tr.readUINT32();
+            String msg = tr.readString();
+            listener.read(msg);
 
-            // Search the pending queue
-            OutstandingReadRequest req = pendingReadQueue.remove(tr.readUINT32());
-            if(null == req) {
-                throw new IOException("The server sent an invalid id field.");
+            if(log.isEnabled()) {
+                String[] desc = ErrorCodes.getDescription(code);
+                log.log("Got SSH_FXP_STATUS (" + req.req_id + ") (" + ((desc != null) ? desc[0] : "UNKNOWN") + ")");
+            }
+            // Flag to read all pending requests but don't send any more.
+            readError = true;
+            if(ErrorCodes.SSH_FX_EOF == code) {
+                req.eof = true;
+            }
+            else {
+                req.error = new SFTPException(msg, code);
+            }
+            return 0;
+        }
+        if(t == Packet.SSH_FXP_DATA) {
+            if(remaining < 4) {
+                throw new IOException("The server sent an invalid length field in a SSH_FXP_DATA packet.");
             }
-            // Evaluate the answer
-            if(t == Packet.SSH_FXP_STATUS) {
-                /* In any case, stop sending more packets */
+            // OK, collect data
+            readBytes(header, 9, 4);
+            remaining -= 4;
+            int readLen = decodeUINT32(header, 9);
 
-                int code = tr.readUINT32();
-                String msg = tr.readString();
-                listener.read(msg);
+            if((readLen < 0) || (readLen > req.len) || (readLen > remaining)) {
+                throw new IOException("The server sent an invalid length field in a SSH_FXP_DATA packet.");
+            }
+            this.received(req.sent, req.len, readLen);
 
-                if(log.isEnabled()) {
-                    String[] desc = ErrorCodes.getDescription(code);
-                    log.log("Got SSH_FXP_STATUS (" + req.req_id + ") (" + ((desc != null) ? desc[0] : "UNKNOWN") + ")");
-                }
-                // Flag to read all pending requests but don't send any more.
-                errorOccured = true;
-                if(pendingReadQueue.isEmpty()) {
-                    if(ErrorCodes.SSH_FX_EOF == code) {
-                        return -1;
-                    }
-                    throw new SFTPException(msg, code);
-                }
+            if(log.isEnabled()) {
+                log.log("Got SSH_FXP_DATA (" + req.req_id + ") " + req.serverOffset + "/" + readLen
+                        + " (requested: " + req.len + ")");
             }
-            else if(t == Packet.SSH_FXP_DATA) {
-                // OK, collect data
-                int readLen = tr.readUINT32();
 
-                if((readLen < 0) || (readLen > req.len)) {
-                    throw new IOException("The server sent an invalid length field in a SSH_FXP_DATA packet.");
+            int direct = 0;
+            if(discard) {
+                this.skipBytes(readLen);
+            }
+            else {
+                if(dst != null && req == pendingReads.getFirst()) {
+                    direct = Math.min(readLen, dstlen);
+                    readBytes(dst, dstoff, direct);
                 }
-
-                if(log.isEnabled()) {
-                    log.log("Got SSH_FXP_DATA (" + req.req_id + ") " + req.serverOffset + "/" + readLen
-                            + " (requested: " + req.len + ")");
+                // Keep the data not returned yet
+                if(readLen > direct) {
+                    req.buffer = this.allocate(readLen - direct);
+                    readBytes(req.buffer, 0, readLen - direct);
                 }
+                req.dataOffset = 0;
+                req.dataLength = readLen - direct;
+            }
+            this.skipBytes(remaining - readLen);
 
-                // Read bytes into buffer
-                tr.readBytes(req.buffer, req.dstOffset, readLen);
-
-                if(readLen < req.len) {
-                    /* Send this request packet again to request the remaing data in this slot. */
-                    req.req_id = generateNextRequestID();
-                    req.serverOffset += readLen;
-                    req.len -= readLen;
+            if(adaptive && req.shortRead > 0 && readLen > 0 && req.shortRead < maxRequestSize) {
+                // The server limits the length of a single read
+                log.log("Limit read requests to " + req.shortRead + " bytes");
+                maxRequestSize = req.shortRead;
+                requestSize = Math.min(requestSize, maxRequestSize);
+            }
 
-                    log.log("Requesting again: " + req.serverOffset + "/" + req.len);
-                    sendReadRequest(req.req_id, handle, req.serverOffset, req.len);
+            if(readLen < req.len && !discard) {
+                /* Request the remaining data in this slot again. */
+                OutstandingReadRequest remainder = this.obtain();
+                remainder.req_id = generateNextRequestID();
+                remainder.serverOffset = req.serverOffset + readLen;
+                remainder.len = req.len - readLen;
+                remainder.shortRead = readLen;
+
+                log.log("Requesting again: " + remainder.serverOffset + "/" + remainder.len);
+                sendReadRequest(remainder.req_id, readHandle, remainder.serverOffset, remainder.len);
+                remainder.sent = this.sent(remainder.len);
+
+                pendingReadQueue.put(remainder.req_id, remainder);
+                // Data must be returned before that of requests sent later
+                pendingReads.add(pendingReads.indexOf(req) + 1, remainder);
+            }
+            return direct;
+        }
+        throw new IOException("The SFTP server sent an unexpected packet type (" + t + ")");
+    }
 
-                    pendingReadQueue.put(req.req_id, req);
-                }
-                return readLen;
+    /**
+     * Receive the responses to all outstanding read requests and drop any data
+     * not returned yet.
+     *
+     * @throws IOException
+     */
+    private void discardReads() throws IOException {
+        try {
+            while(!pendingReadQueue.isEmpty()) {
+                this.receiveReadResponse(true, null, 0, 0);
             }
-            else {
-                throw new IOException("The SFTP server sent an unexpected packet type (" + t + ")");
+        }
+        finally {
+            pendingReadQueue.clear();
+            for(OutstandingReadRequest req : pendingReads) {
+                this.recycle(req);
             }
+            pendingReads.clear();
+            readHandle = null;
+            readError = false;
         }
-        // Should never reach here.
-        throw new SFTPException("No EOF reached", -1);
     }
 
     /**
@@ -1316,6 +1893,14 @@ public class SFTPv3Client {
      */
     private static class OutstandingStatusRequest {
         int req_id;
+        /**
+         * Number of bytes written
+         */
+        int len;
+        /**
+         * Time the request was sent in nanoseconds
+         */
+        long sent;
     }
 
     /**
@@ -1338,30 +1923,36 @@ public class SFTPv3Client {
     public void upload(SFTPv3FileHandle handle, long fileOffset, byte[] src, int srcoff, int len) throws IOException {
         checkHandleValidAndOpen(handle);
 
+        if(pendingStatusQueue.isEmpty()) {
+            this.restart();
+        }
+
         // Send the next write request
         OutstandingStatusRequest req = new OutstandingStatusRequest();
         req.req_id = generateNextRequestID();
+        req.len = len;
 
-        TypesWriter tw = new TypesWriter();
+        TypesWriter tw = this.startRequest(Packet.SSH_FXP_WRITE, req.req_id);
         tw.writeString(handle.fileHandle, 0, handle.fileHandle.length);
         tw.writeUINT64(fileOffset);
         tw.writeString(src, srcoff, len);
 
         log.log("Sending SSH_FXP_WRITE...");
-        sendMessage(Packet.SSH_FXP_WRITE, req.req_id, tw.getBytes());
+        this.sendRequest(tw);
+        req.sent = this.sent(req.len);
 
         pendingStatusQueue.put(req.req_id, req);
 
         // Only read next status if parallelism reached
-        while(pendingStatusQueue.size() >= parallelism) {
+        while(pendingStatusQueue.size() >= this.getParallelism(len)) {
             this.readStatus();
         }
     }
 
     private void readStatus() throws IOException {
-        byte[] resp = receiveMessage(34000);
+        int len = receiveResponse(34000);
 
-        TypesReader tr = new TypesReader(resp);
+        TypesReader tr = new TypesReader(response, 0, len);
         int t = tr.readByte();
         listener.read(Packet.forName(t));
 
@@ -1380,8 +1971,10 @@ public class SFTPv3Client {
                 log.log("Got SSH_FXP_STATUS (" + status.req_id + ") (" + ((desc != null) ? desc[0] : "UNKNOWN") + ")");
             }
             if(code == ErrorCodes.SSH_FX_OK) {
+                this.received(status.sent, status.len, status.len);
                 return;
             }
+            this.received(status.sent, status.len, 0);
             String msg = tr.readString();
             listener.read(msg);
             throw new SFTPException(msg, code);
@@ -1400,6 +1993,9 @@ public class SFTPv3Client {
             while(!pendingStatusQueue.isEmpty()) {
                 this.readStatus();
             }
+            if(handle == readHandle) {
+                this.discardReads();
+            }
             if(!handle.isClosed) {
                 closeHandle(handle.fileHandle);
             }
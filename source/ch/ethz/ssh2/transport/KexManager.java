@@ -3,20 +3,27 @@ package ch.ethz.ssh2.transport;
 
 import java.io.IOException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
 
 import ch.ethz.ssh2.ConnectionInfo;
 import ch.ethz.ssh2.DHGexParameters;
 import ch.ethz.ssh2.ServerHostKeyVerifier;
+import ch.ethz.ssh2.compression.CompressionFactory;
 import ch.ethz.ssh2.crypto.CryptoWishList;
 import ch.ethz.ssh2.crypto.KeyMaterial;
+import ch.ethz.ssh2.crypto.cipher.AuthenticatedCipher;
 import ch.ethz.ssh2.crypto.cipher.BlockCipher;
 import ch.ethz.ssh2.crypto.cipher.BlockCipherFactory;
 import ch.ethz.ssh2.crypto.dh.DhExchange;
 import ch.ethz.ssh2.crypto.dh.DhGroupExchange;
+import ch.ethz.ssh2.crypto.dh.EcDhExchange;
 import ch.ethz.ssh2.crypto.digest.MAC;
 import ch.ethz.ssh2.log.Logger;
 import ch.ethz.ssh2.packets.PacketKexDHInit;
 import ch.ethz.ssh2.packets.PacketKexDHReply;
+import ch.ethz.ssh2.packets.PacketKexECDHInit;
+import ch.ethz.ssh2.packets.PacketKexECDHReply;
 import ch.ethz.ssh2.packets.PacketKexDhGexGroup;
 import ch.ethz.ssh2.packets.PacketKexDhGexInit;
 import ch.ethz.ssh2.packets.PacketKexDhGexReply;
@@ -182,10 +189,14 @@ public class KexManager
 			log.log(20, "enc_algo_client_to_server=" + np.enc_algo_client_to_server);
 			log.log(20, "enc_algo_server_to_client=" + np.enc_algo_server_to_client);
 
-			np.mac_algo_client_to_server = getFirstMatch(client.mac_algorithms_client_to_server,
-					server.mac_algorithms_client_to_server);
-			np.mac_algo_server_to_client = getFirstMatch(client.mac_algorithms_server_to_client,
-					server.mac_algorithms_server_to_client);
+			/* Authenticated encryption modes provide their own integrity, the MAC is not negotiated */
+
+			if (!BlockCipherFactory.isAuthenticated(np.enc_algo_client_to_server))
+				np.mac_algo_client_to_server = getFirstMatch(client.mac_algorithms_client_to_server,
+						server.mac_algorithms_client_to_server);
+			if (!BlockCipherFactory.isAuthenticated(np.enc_algo_server_to_client))
+				np.mac_algo_server_to_client = getFirstMatch(client.mac_algorithms_server_to_client,
+						server.mac_algorithms_server_to_client);
 
 			log.log(20, "mac_algo_client_to_server=" + np.mac_algo_client_to_server);
 			log.log(20, "mac_algo_server_to_client=" + np.mac_algo_server_to_client);
@@ -250,15 +261,21 @@ public class KexManager
 	{
 		try
 		{
-			int mac_cs_key_len = MAC.getKeyLen(kxs.np.mac_algo_client_to_server);
+			int mac_cs_key_len = (kxs.np.mac_algo_client_to_server == null) ? 0 : MAC
+					.getKeyLen(kxs.np.mac_algo_client_to_server);
 			int enc_cs_key_len = BlockCipherFactory.getKeySize(kxs.np.enc_algo_client_to_server);
-			int enc_cs_block_len = BlockCipherFactory.getBlockSize(kxs.np.enc_algo_client_to_server);
+			int enc_cs_block_len = BlockCipherFactory.getIVSize(kxs.np.enc_algo_client_to_server);
 
-			int mac_sc_key_len = MAC.getKeyLen(kxs.np.mac_algo_server_to_client);
+			int mac_sc_key_len = (kxs.np.mac_algo_server_to_client == null) ? 0 : MAC
+					.getKeyLen(kxs.np.mac_algo_server_to_client);
 			int enc_sc_key_len = BlockCipherFactory.getKeySize(kxs.np.enc_algo_server_to_client);
-			int enc_sc_block_len = BlockCipherFactory.getBlockSize(kxs.np.enc_algo_server_to_client);
+			int enc_sc_block_len = BlockCipherFactory.getIVSize(kxs.np.enc_algo_server_to_client);
+
+			/* The hash of the key exchange method is used for key derivation */
+
+			String hash = EcDhExchange.isEcDhExchange(kxs.np.kex_algo) ? "SHA256" : "SHA1";
 
-			km = KeyMaterial.create("SHA1", kxs.H, kxs.K, sessionId, enc_cs_key_len, enc_cs_block_len, mac_cs_key_len,
+			km = KeyMaterial.create(hash, kxs.H, kxs.K, sessionId, enc_cs_key_len, enc_cs_block_len, mac_cs_key_len,
 					enc_sc_key_len, enc_sc_block_len, mac_sc_key_len);
 		}
 		catch (IllegalArgumentException e)
@@ -280,6 +297,31 @@ public class KexManager
 		PacketNewKeys ign = new PacketNewKeys();
 		tm.sendKexMessage(ign.getPayload());
 
+		/* The compression context is kept when re-keying with the same algorithm */
+
+		if (!kxs.np.comp_algo_client_to_server.equals(lastConnInfo == null ? CompressionFactory.NONE
+				: lastConnInfo.clientToServerCompressionAlgorithm))
+			tm.changeSendCompression(CompressionFactory.createCompressor(kxs.np.comp_algo_client_to_server));
+
+		if (BlockCipherFactory.isAuthenticated(kxs.np.enc_algo_client_to_server))
+		{
+			AuthenticatedCipher ac;
+
+			try
+			{
+				ac = BlockCipherFactory.createAuthenticatedCipher(kxs.np.enc_algo_client_to_server, true,
+						km.enc_key_client_to_server, km.initial_iv_client_to_server);
+			}
+			catch (IllegalArgumentException e1)
+			{
+				throw (IOException) new IOException("Fatal error during cipher startup!").initCause(e1);
+			}
+
+			tm.changeSendCipher(ac);
+			tm.kexFinished();
+			return;
+		}
+
 		BlockCipher cbc;
 		MAC mac;
 
@@ -316,8 +358,15 @@ public class KexManager
 
 	public static final String[] getDefaultKexAlgorithmList()
 	{
-		return new String[] { "diffie-hellman-group-exchange-sha1", "diffie-hellman-group14-sha1",
-				"diffie-hellman-group1-sha1" };
+		List<String> algos = new ArrayList<String>();
+		algos.add(EcDhExchange.CURVE25519_SHA256);
+		algos.add(EcDhExchange.CURVE25519_SHA256_LIBSSH);
+		if (EcDhExchange.isAvailable(EcDhExchange.ECDH_SHA2_NISTP256))
+			algos.add(EcDhExchange.ECDH_SHA2_NISTP256);
+		algos.add("diffie-hellman-group-exchange-sha1");
+		algos.add("diffie-hellman-group14-sha1");
+		algos.add("diffie-hellman-group1-sha1");
+		return algos.toArray(new String[algos.size()]);
 	}
 
 	public static final void checkKexAlgorithmList(String[] algos)
@@ -333,6 +382,9 @@ public class KexManager
 			if ("diffie-hellman-group1-sha1".equals(algos[i]))
 				continue;
 
+			if (EcDhExchange.isAvailable(algos[i]))
+				continue;
+
 			throw new IllegalArgumentException("Unknown kex algorithm '" + algos[i] + "'");
 		}
 	}
@@ -453,6 +505,17 @@ public class KexManager
 				return;
 			}
 
+			if (EcDhExchange.isEcDhExchange(kxs.np.kex_algo))
+			{
+				kxs.ecdhx = EcDhExchange.getInstance(kxs.np.kex_algo);
+				kxs.ecdhx.init(rnd);
+
+				PacketKexECDHInit kp = new PacketKexECDHInit(kxs.ecdhx.getE());
+				tm.sendKexMessage(kp.getPayload());
+				kxs.state = 1;
+				return;
+			}
+
 			throw new IllegalStateException("Unkown KEX method!");
 		}
 
@@ -461,23 +524,46 @@ public class KexManager
 			if (km == null)
 				throw new IOException("Peer sent SSH_MSG_NEWKEYS, but I have no key material ready!");
 
-			BlockCipher cbc;
-			MAC mac;
+			if (!kxs.np.comp_algo_server_to_client.equals(lastConnInfo == null ? CompressionFactory.NONE
+					: lastConnInfo.serverToClientCompressionAlgorithm))
+				tm.changeRecvCompression(CompressionFactory.createCompressor(kxs.np.comp_algo_server_to_client));
 
-			try
+			if (BlockCipherFactory.isAuthenticated(kxs.np.enc_algo_server_to_client))
 			{
-				cbc = BlockCipherFactory.createCipher(kxs.np.enc_algo_server_to_client, false,
-						km.enc_key_server_to_client, km.initial_iv_server_to_client);
+				AuthenticatedCipher ac;
 
-				mac = new MAC(kxs.np.mac_algo_server_to_client, km.integrity_key_server_to_client);
+				try
+				{
+					ac = BlockCipherFactory.createAuthenticatedCipher(kxs.np.enc_algo_server_to_client, false,
+							km.enc_key_server_to_client, km.initial_iv_server_to_client);
+				}
+				catch (IllegalArgumentException e1)
+				{
+					throw (IOException) new IOException("Fatal error during cipher startup!").initCause(e1);
+				}
 
+				tm.changeRecvCipher(ac);
 			}
-			catch (IllegalArgumentException e1)
+			else
 			{
-				throw new IOException("Fatal error during MAC startup!");
-			}
+				BlockCipher cbc;
+				MAC mac;
+
+				try
+				{
+					cbc = BlockCipherFactory.createCipher(kxs.np.enc_algo_server_to_client, false,
+							km.enc_key_server_to_client, km.initial_iv_server_to_client);
+
+					mac = new MAC(kxs.np.mac_algo_server_to_client, km.integrity_key_server_to_client);
 
-			tm.changeRecvCipher(cbc, mac);
+				}
+				catch (IllegalArgumentException e1)
+				{
+					throw new IOException("Fatal error during MAC startup!");
+				}
+
+				tm.changeRecvCipher(cbc, mac);
+			}
 
 			ConnectionInfo sci = new ConnectionInfo();
 
@@ -489,6 +575,8 @@ public class KexManager
 			sci.serverToClientCryptoAlgorithm = kxs.np.enc_algo_server_to_client;
 			sci.clientToServerMACAlgorithm = kxs.np.mac_algo_client_to_server;
 			sci.serverToClientMACAlgorithm = kxs.np.mac_algo_server_to_client;
+			sci.clientToServerCompressionAlgorithm = kxs.np.comp_algo_client_to_server;
+			sci.serverToClientCompressionAlgorithm = kxs.np.comp_algo_server_to_client;
 			sci.serverHostKeyAlgorithm = kxs.np.server_host_key_algo;
 			sci.serverHostKey = kxs.hostkey;
 
@@ -623,6 +711,57 @@ public class KexManager
 			}
 		}
 
+		if (EcDhExchange.isEcDhExchange(kxs.np.kex_algo))
+		{
+			if (kxs.state == 1)
+			{
+				PacketKexECDHReply ecdhr = new PacketKexECDHReply(msg, 0, msglen);
+
+				kxs.hostkey = ecdhr.getHostKey();
+
+				if (verifier != null)
+				{
+					boolean vres = false;
+
+					try
+					{
+						vres = verifier.verifyServerHostKey(hostname, port, kxs.np.server_host_key_algo, kxs.hostkey);
+					}
+					catch (Exception e)
+					{
+						throw (IOException) new IOException(
+								"The server hostkey was not accepted by the verifier callback.").initCause(e);
+					}
+
+					if (vres == false)
+						throw new IOException("The server hostkey was not accepted by the verifier callback");
+				}
+
+				try
+				{
+					kxs.ecdhx.setF(ecdhr.getQ_S());
+
+					kxs.H = kxs.ecdhx.calculateH(csh.getClientString(), csh.getServerString(),
+							kxs.localKEX.getPayload(), kxs.remoteKEX.getPayload(), ecdhr.getHostKey());
+				}
+				catch (IllegalArgumentException e)
+				{
+					throw (IOException) new IOException("KEX error.").initCause(e);
+				}
+
+				boolean res = verifySignature(ecdhr.getSignature(), kxs.hostkey);
+
+				if (res == false)
+					throw new IOException("Hostkey signature sent by remote is wrong!");
+
+				kxs.K = kxs.ecdhx.getK();
+
+				finishKex();
+				kxs.state = -1;
+				return;
+			}
+		}
+
 		throw new IllegalStateException("Unkown KEX method! (" + kxs.np.kex_algo + ")");
 	}
 }
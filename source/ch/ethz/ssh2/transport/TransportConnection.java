@@ -6,6 +6,9 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.SecureRandom;
 
+import ch.ethz.ssh2.compression.CompressionStatistics;
+import ch.ethz.ssh2.compression.Compressor;
+import ch.ethz.ssh2.crypto.cipher.AuthenticatedCipher;
 import ch.ethz.ssh2.crypto.cipher.BlockCipher;
 import ch.ethz.ssh2.crypto.cipher.CipherInputStream;
 import ch.ethz.ssh2.crypto.cipher.CipherOutputStream;
@@ -50,6 +53,28 @@ public class TransportConnection
 
 	int recv_padd_blocksize = 8;
 
+	/* Authenticated ciphers replace both CIPHER and MAC */
+
+	AuthenticatedCipher send_aead;
+
+	byte[] send_aead_buffer;
+
+	AuthenticatedCipher recv_aead;
+
+	byte[] recv_aead_buffer;
+
+	int recv_aead_payload_length;
+
+	/* Depends on negotiated compression */
+
+	Compressor send_comp;
+
+	Compressor recv_comp;
+
+	/* Delayed compression starts after SSH_MSG_USERAUTH_SUCCESS */
+
+	volatile boolean authenticated = false;
+
 	/* won't change */
 
 	final byte[] send_padding_buffer = new byte[256];
@@ -75,6 +100,7 @@ public class TransportConnection
 
 	public void changeRecvCipher(BlockCipher bc, MAC mac)
 	{
+		recv_aead = null;
 		cis.changeCipher(bc);
 		recv_mac = mac;
 		recv_mac_buffer = (mac != null) ? new byte[mac.size()] : null;
@@ -93,6 +119,7 @@ public class TransportConnection
 			/* Once we start encrypting, there is no way back */
 		}
 
+		send_aead = null;
 		cos.changeCipher(bc);
 		send_mac = mac;
 		send_mac_buffer = (mac != null) ? new byte[mac.size()] : null;
@@ -101,6 +128,59 @@ public class TransportConnection
 			send_padd_blocksize = 8;
 	}
 
+	public void changeRecvCipher(AuthenticatedCipher ac)
+	{
+		/* Packets are read unmodified and decrypted as a whole */
+		cis.changeCipher(new NullCipher());
+		recv_aead = ac;
+		recv_mac = null;
+		recv_mac_buffer = null;
+		recv_mac_buffer_cmp = null;
+		recv_padd_blocksize = ac.getBlockSize();
+		if (recv_aead_buffer == null)
+			recv_aead_buffer = new byte[4 + 35000 + 64];
+	}
+
+	public void changeSendCipher(AuthenticatedCipher ac)
+	{
+		useRandomPadding = true;
+
+		cos.changeCipher(new NullCipher());
+		send_aead = ac;
+		send_mac = null;
+		/* Only used for the overhead estimate */
+		send_mac_buffer = new byte[ac.getTagSize()];
+		send_padd_blocksize = ac.getBlockSize();
+	}
+
+	public void changeSendCompression(Compressor comp)
+	{
+		if (send_comp != null)
+			send_comp.close();
+		send_comp = comp;
+	}
+
+	public void changeRecvCompression(Compressor comp)
+	{
+		if (recv_comp != null)
+			recv_comp.close();
+		recv_comp = comp;
+	}
+
+	private boolean isCompressing(Compressor comp)
+	{
+		return (comp != null) && (comp.isDelayed() == false || authenticated);
+	}
+
+	public CompressionStatistics getCompressionStatistics()
+	{
+		Compressor s = send_comp;
+		Compressor r = recv_comp;
+		return new CompressionStatistics(s == null ? 0 : s.getUncompressedBytes(), s == null ? 0 : s
+				.getCompressedBytes(), r == null ? 0 : r.getCompressedBytes(), r == null ? 0 : r
+				.getUncompressedBytes());
+	}
+
 	public void sendMessage(byte[] message) throws IOException
 	{
 		sendMessage(message, 0, message.length, 0);
@@ -119,6 +199,15 @@ public class TransportConnection
 
 	public void sendMessage(byte[] message, int off, int len, int padd) throws IOException
 	{
+		int type = message[off] & 0xff;
+
+		if (isCompressing(send_comp))
+		{
+			len = send_comp.compress(message, off, len);
+			message = send_comp.getBuffer();
+			off = 0;
+		}
+
 		if (padd < 4)
 			padd = 4;
 		else if (padd > 64)
@@ -126,14 +215,20 @@ public class TransportConnection
 
 		int packet_len = 5 + len + padd; /* Minimum allowed padding is 4 */
 
-		int slack = packet_len % send_padd_blocksize;
+		/* The length field is not encrypted with authenticated ciphers */
+		int slack = (send_aead != null ? packet_len - 4 : packet_len) % send_padd_blocksize;
 
 		if (slack != 0)
 		{
 			packet_len += (send_padd_blocksize - slack);
 		}
 
-		if (packet_len < 16)
+		if (send_aead != null)
+		{
+			while (packet_len < 16)
+				packet_len += send_padd_blocksize;
+		}
+		else if (packet_len < 16)
 			packet_len = 16;
 
 		int padd_len = packet_len - (5 + len);
@@ -174,6 +269,12 @@ public class TransportConnection
 		send_packet_header_buffer[3] = (byte) ((packet_len - 4));
 		send_packet_header_buffer[4] = (byte) padd_len;
 
+		if (send_aead != null)
+		{
+			sendAuthenticated(type, message, off, len, packet_len, padd_len);
+			return;
+		}
+
 		cos.write(send_packet_header_buffer, 0, 5);
 		cos.write(message, off, len);
 		cos.write(send_padding_buffer, 0, padd_len);
@@ -193,14 +294,80 @@ public class TransportConnection
 
 		if (log.isEnabled())
 		{
-			log.log(90, "Sent " + Packets.getMessageName(message[off] & 0xff) + " " + len + " bytes payload");
+			log.log(90, "Sent " + Packets.getMessageName(type) + " " + len + " bytes payload");
+		}
+
+		send_seq_number++;
+	}
+
+	private void sendAuthenticated(int type, byte[] message, int off, int len, int packet_len, int padd_len)
+			throws IOException
+	{
+		int total = packet_len + send_aead.getTagSize();
+
+		if (send_aead_buffer == null || send_aead_buffer.length < total)
+			send_aead_buffer = new byte[total];
+
+		System.arraycopy(send_packet_header_buffer, 0, send_aead_buffer, 0, 5);
+		System.arraycopy(message, off, send_aead_buffer, 5, len);
+		System.arraycopy(send_padding_buffer, 0, send_aead_buffer, 5 + len, padd_len);
+
+		send_aead.encrypt(send_seq_number, send_aead_buffer, 0, packet_len);
+
+		cos.writePlain(send_aead_buffer, 0, total);
+		cos.flush();
+
+		if (log.isEnabled())
+		{
+			log.log(90, "Sent " + Packets.getMessageName(type) + " " + len + " bytes payload");
 		}
 
 		send_seq_number++;
 	}
 
+	/**
+	 * Read and authenticate the next packet when using an authenticated cipher.
+	 * 
+	 * @return Length of the payload
+	 */
+	private int receiveAuthenticated() throws IOException
+	{
+		cis.readPlain(recv_aead_buffer, 0, 4);
+
+		int packet_length = recv_aead.getPacketLength(recv_seq_number, recv_aead_buffer, 0);
+
+		if (packet_length > 35000 || packet_length < 12 || (packet_length % recv_padd_blocksize) != 0)
+			throw new IOException("Illegal packet size! (" + packet_length + ")");
+
+		cis.readPlain(recv_aead_buffer, 4, packet_length + recv_aead.getTagSize());
+
+		recv_aead.decrypt(recv_seq_number, recv_aead_buffer, 0, 4 + packet_length);
+
+		int padding_length = recv_aead_buffer[4] & 0xff;
+
+		int payload_length = packet_length - padding_length - 1;
+
+		if (payload_length < 0)
+			throw new IOException("Illegal padding_length in packet from remote (" + padding_length + ")");
+
+		return payload_length;
+	}
+
+	/**
+	 * @return Length of the payload as sent on the wire. Compressed if compression is in use.
+	 */
 	public int peekNextMessageLength() throws IOException
 	{
+		if (recv_aead != null)
+		{
+			if (recv_packet_header_present == false)
+			{
+				recv_aead_payload_length = receiveAuthenticated();
+				recv_packet_header_present = true;
+			}
+			return recv_aead_payload_length;
+		}
+
 		if (recv_packet_header_present == false)
 		{
 			cis.read(recv_packet_header_buffer, 0, 5);
@@ -226,6 +393,43 @@ public class TransportConnection
 
 	public int receiveMessage(byte buffer[], int off, int len) throws IOException
 	{
+		if (recv_aead != null)
+		{
+			int payload_length = peekNextMessageLength();
+
+			recv_packet_header_present = false;
+
+			if (isCompressing(recv_comp))
+			{
+				payload_length = recv_comp.uncompress(recv_aead_buffer, 5, payload_length);
+
+				if (payload_length >= len)
+					throw new IOException("Receive buffer too small (" + len + ", need " + payload_length + ")");
+
+				System.arraycopy(recv_comp.getBuffer(), 0, buffer, off, payload_length);
+			}
+			else
+			{
+				if (payload_length >= len)
+					throw new IOException("Receive buffer too small (" + len + ", need " + payload_length + ")");
+
+				System.arraycopy(recv_aead_buffer, 5, buffer, off, payload_length);
+			}
+
+			recv_seq_number++;
+
+			if (buffer[off] == Packets.SSH_MSG_USERAUTH_SUCCESS)
+				authenticated = true;
+
+			if (log.isEnabled())
+			{
+				log.log(90, "Received " + Packets.getMessageName(buffer[off] & 0xff) + " " + payload_length
+						+ " bytes payload");
+			}
+
+			return payload_length;
+		}
+
 		if (recv_packet_header_present == false)
 		{
 			cis.read(recv_packet_header_buffer, 0, 5);
@@ -270,8 +474,21 @@ public class TransportConnection
 			}
 		}
 
+		if (isCompressing(recv_comp))
+		{
+			payload_length = recv_comp.uncompress(buffer, off, payload_length);
+
+			if (payload_length >= len)
+				throw new IOException("Receive buffer too small (" + len + ", need " + payload_length + ")");
+
+			System.arraycopy(recv_comp.getBuffer(), 0, buffer, off, payload_length);
+		}
+
 		recv_seq_number++;
 
+		if (buffer[off] == Packets.SSH_MSG_USERAUTH_SUCCESS)
+			authenticated = true;
+
 		if (log.isEnabled())
 		{
 			log.log(90, "Received " + Packets.getMessageName(buffer[off] & 0xff) + " " + payload_length
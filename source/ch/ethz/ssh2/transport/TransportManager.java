@@ -3,6 +3,9 @@ package ch.ethz.ssh2.transport;
 import ch.ethz.ssh2.*;
 import ch.ethz.ssh2.crypto.Base64;
 import ch.ethz.ssh2.crypto.CryptoWishList;
+import ch.ethz.ssh2.compression.CompressionStatistics;
+import ch.ethz.ssh2.compression.Compressor;
+import ch.ethz.ssh2.crypto.cipher.AuthenticatedCipher;
 import ch.ethz.ssh2.crypto.cipher.BlockCipher;
 import ch.ethz.ssh2.crypto.digest.MAC;
 import ch.ethz.ssh2.log.Logger;
@@ -509,6 +512,26 @@ public class TransportManager {
         tc.changeSendCipher(bc, mac);
     }
 
+    public void changeRecvCompression(Compressor comp) {
+        tc.changeRecvCompression(comp);
+    }
+
+    public void changeSendCompression(Compressor comp) {
+        tc.changeSendCompression(comp);
+    }
+
+    public CompressionStatistics getCompressionStatistics() {
+        return tc.getCompressionStatistics();
+    }
+
+    public void changeRecvCipher(AuthenticatedCipher ac) {
+        tc.changeRecvCipher(ac);
+    }
+
+    public void changeSendCipher(AuthenticatedCipher ac) {
+        tc.changeSendCipher(ac);
+    }
+
     public void sendAsynchronousMessage(byte[] msg) throws IOException {
         synchronized(asynchronousQueue) {
             asynchronousQueue.add(msg);
@@ -547,6 +570,10 @@ public class TransportManager {
     private boolean idle;
 
     public void sendMessage(byte[] msg) throws IOException {
+        this.sendMessage(msg, 0, msg.length);
+    }
+
+    public void sendMessage(byte[] msg, int off, int len) throws IOException {
         if(Thread.currentThread() == receiveThread) {
             throw new IOException("Assertion error: sendMessage may never be invoked by the receiver thread!");
         }
@@ -570,7 +597,7 @@ public class TransportManager {
             }
 
             try {
-                tc.sendMessage(msg);
+                tc.sendMessage(msg, off, len);
                 idle = false;
             }
             catch(IOException e) {
@@ -85,9 +85,14 @@ public class AbstractTestCase extends TestCase {
             @Override
             protected Preferences create() {
                 return new Preferences() {
+                    /**
+                     * Properties set by tests
+                     */
+                    private final Map<String, String> values = new HashMap<String, String>();
+
                     @Override
                     public void setProperty(String property, String value) {
-                        ;
+                        values.put(property, value);
                     }
 
                     @Override
@@ -97,7 +102,7 @@ public class AbstractTestCase extends TestCase {
 
                     @Override
                     public void deleteProperty(String property) {
-                        ;
+                        values.remove(property);
                     }
 
                     @Override
@@ -107,6 +112,9 @@ public class AbstractTestCase extends TestCase {
 
                     @Override
                     public String getProperty(String property) {
+                        if(values.containsKey(property)) {
+                            return values.get(property);
+                        }
                         return this.getDefault(property);
                     }
 
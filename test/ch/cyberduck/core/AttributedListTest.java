@@ -0,0 +1,88 @@
+package ch.cyberduck.core;
+
+/*
+ *  Copyright (c) 2010 David Kocher. All rights reserved.
+ *  http://cyberduck.ch/
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Bug fixes, suggestions and comments should be sent to:
+ *  dkocher@cyberduck.ch
+ */
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
+public class AttributedListTest extends AbstractTestCase {
+    public AttributedListTest(String name) {
+        super(name);
+    }
+
+    @Override
+    public void setUp() {
+        super.setUp();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    public void testModify() throws Exception {
+        final Session session = SessionFactory.createSession(new Host("localhost"));
+        final Path a = PathFactory.createPath(session, "/a", Path.FILE_TYPE);
+        final Path b = PathFactory.createPath(session, "/b", Path.FILE_TYPE);
+        final Path c = PathFactory.createPath(session, "/c", Path.FILE_TYPE);
+        final AttributedList<Path> list = new AttributedList<Path>();
+        list.add(c);
+        list.addAll(Arrays.asList(a, b));
+        assertEquals(3, list.size());
+        assertSame(a, list.get(a.getReference()));
+        final Iterator<Path> iterator = list.iterator();
+        list.remove(a);
+        // Iterates over a snapshot
+        assertSame(c, iterator.next());
+        assertSame(a, iterator.next());
+        assertSame(b, iterator.next());
+        assertFalse(iterator.hasNext());
+        assertEquals(2, list.size());
+        list.removeAll(Arrays.asList(b));
+        assertEquals(1, list.size());
+        assertEquals(0, list.indexOf(c.getReference()));
+        assertEquals(-1, list.indexOf(b));
+    }
+
+    public void testSort() throws Exception {
+        final Session session = SessionFactory.createSession(new Host("localhost"));
+        final AttributedList<Path> list = new AttributedList<Path>();
+        list.add(PathFactory.createPath(session, "/c", Path.FILE_TYPE));
+        list.add(PathFactory.createPath(session, "/a", Path.FILE_TYPE));
+        list.add(PathFactory.createPath(session, "/b", Path.FILE_TYPE));
+        list.sort(new Comparator<Path>() {
+            public int compare(Path o1, Path o2) {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+        assertEquals("a", list.get(0).getName());
+        assertEquals("b", list.get(1).getName());
+        assertEquals("c", list.get(2).getName());
+        list.add(PathFactory.createPath(session, "/d", Path.FILE_TYPE));
+        assertEquals("d", list.get(3).getName());
+    }
+
+    public static Test suite() {
+        return new TestSuite(AttributedListTest.class);
+    }
+}
@@ -0,0 +1,174 @@
+package ch.cyberduck.core;
+
+/*
+ *  Copyright (c) 2010 David Kocher. All rights reserved.
+ *  http://cyberduck.ch/
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Bug fixes, suggestions and comments should be sent to:
+ *  dkocher@cyberduck.ch
+ */
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class CacheTest extends AbstractTestCase {
+    public CacheTest(String name) {
+        super(name);
+    }
+
+    @Override
+    public void setUp() {
+        super.setUp();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    public void testLookup() throws Exception {
+        final Session session = SessionFactory.createSession(new Host("localhost"));
+        final Path parent = PathFactory.createPath(session, "/parent", Path.DIRECTORY_TYPE);
+        final Path child = PathFactory.createPath(session, "/parent/child", Path.FILE_TYPE);
+        final Cache<Path> cache = new Cache<Path>();
+        assertNull(cache.lookup(child.getReference()));
+        final AttributedList<Path> children = new AttributedList<Path>();
+        children.add(child);
+        cache.put(parent.getReference(), children);
+        assertSame(child, cache.lookup(child.getReference()));
+        // Added after the listing has been cached
+        final Path added = PathFactory.createPath(session, "/parent/added", Path.FILE_TYPE);
+        children.add(added);
+        assertSame(added, cache.lookup(added.getReference()));
+        cache.remove(parent.getReference());
+        assertNull(cache.lookup(child.getReference()));
+        assertNull(cache.lookup(added.getReference()));
+        // No longer cached
+        children.add(PathFactory.createPath(session, "/parent/other", Path.FILE_TYPE));
+        assertTrue(cache.isEmpty());
+    }
+
+    public void testReplace() throws Exception {
+        final Session session = SessionFactory.createSession(new Host("localhost"));
+        final Path parent = PathFactory.createPath(session, "/parent", Path.DIRECTORY_TYPE);
+        final Path child = PathFactory.createPath(session, "/parent/child", Path.FILE_TYPE);
+        final Cache<Path> cache = new Cache<Path>();
+        final AttributedList<Path> children = new AttributedList<Path>();
+        children.add(child);
+        cache.put(parent.getReference(), children);
+        cache.put(parent.getReference(), new AttributedList<Path>());
+        assertNull(cache.lookup(child.getReference()));
+        assertTrue(cache.containsKey(parent.getReference()));
+    }
+
+    public void testStatistics() throws Exception {
+        final Session session = SessionFactory.createSession(new Host("localhost"));
+        final Path parent = PathFactory.createPath(session, "/parent", Path.DIRECTORY_TYPE);
+        final Path child = PathFactory.createPath(session, "/parent/child", Path.FILE_TYPE);
+        final Cache<Path> cache = new Cache<Path>();
+        cache.get(parent.getReference());
+        assertEquals(1, cache.getMisses());
+        final AttributedList<Path> children = new AttributedList<Path>();
+        children.add(child);
+        cache.put(parent.getReference(), children);
+        final long weight = cache.getWeight();
+        assertTrue(weight > 0);
+        cache.get(parent.getReference());
+        cache.lookup(child.getReference());
+        assertEquals(2, cache.getHits());
+        children.add(PathFactory.createPath(session, "/parent/added", Path.FILE_TYPE));
+        assertTrue(cache.getWeight() > weight);
+        cache.clear();
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    private static AttributedList<Path> list(Path parent, String name) {
+        final AttributedList<Path> children = new AttributedList<Path>();
+        children.add(PathFactory.createPath(parent.getSession(), parent.getAbsolute(), name, Path.FILE_TYPE));
+        return children;
+    }
+
+    public void testEvictEntries() throws Exception {
+        final Session session = SessionFactory.createSession(new Host("localhost"));
+        final Path a = PathFactory.createPath(session, "/a", Path.DIRECTORY_TYPE);
+        final Path b = PathFactory.createPath(session, "/b", Path.DIRECTORY_TYPE);
+        final Path c = PathFactory.createPath(session, "/c", Path.DIRECTORY_TYPE);
+        final Cache<Path> cache = new Cache<Path>(Cache.Eviction.ENTRIES, 2);
+        cache.put(a.getReference(), list(a, "1"));
+        cache.put(b.getReference(), list(b, "1"));
+        // Least recently used is now b
+        cache.get(a.getReference());
+        cache.put(c.getReference(), list(c, "1"));
+        assertTrue(cache.containsKey(a.getReference()));
+        assertFalse(cache.containsKey(b.getReference()));
+        assertTrue(cache.containsKey(c.getReference()));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.getWeight());
+    }
+
+    public void testEvictFootprint() throws Exception {
+        final Session session = SessionFactory.createSession(new Host("localhost"));
+        final Path a = PathFactory.createPath(session, "/a", Path.DIRECTORY_TYPE);
+        final Path b = PathFactory.createPath(session, "/b", Path.DIRECTORY_TYPE);
+        final Path c = PathFactory.createPath(session, "/c", Path.DIRECTORY_TYPE);
+        final Cache<Path> probe = new Cache<Path>(Cache.Eviction.FOOTPRINT, Long.MAX_VALUE);
+        probe.put(a.getReference(), list(a, "1"));
+        final long footprint = probe.getWeight();
+        probe.clear();
+        // Memory for two listings shared by both caches
+        final Cache<Path> first = new Cache<Path>(Cache.Eviction.FOOTPRINT, footprint * 5 / 2);
+        final Cache<Path> second = new Cache<Path>(Cache.Eviction.FOOTPRINT, footprint * 5 / 2);
+        first.put(a.getReference(), list(a, "1"));
+        second.put(b.getReference(), list(b, "1"));
+        assertEquals(0, first.getEvictions());
+        second.put(c.getReference(), list(c, "1"));
+        // Least recently used listing removed from the other cache
+        assertFalse(first.containsKey(a.getReference()));
+        assertEquals(1, first.getEvictions());
+        assertEquals(0, first.getWeight());
+        assertTrue(second.containsKey(b.getReference()));
+        assertTrue(second.containsKey(c.getReference()));
+        assertEquals(0, second.getEvictions());
+    }
+
+    public void testWeightAfterFilter() throws Exception {
+        final Session session = SessionFactory.createSession(new Host("localhost"));
+        final Path parent = PathFactory.createPath(session, "/parent", Path.DIRECTORY_TYPE);
+        final Cache<Path> cache = new Cache<Path>(Cache.Eviction.ENTRIES, Long.MAX_VALUE);
+        final AttributedList<Path> children = new AttributedList<Path>();
+        children.add(PathFactory.createPath(session, "/parent/a", Path.FILE_TYPE));
+        children.add(PathFactory.createPath(session, "/parent/.b", Path.FILE_TYPE));
+        cache.put(parent.getReference(), children);
+        assertEquals(2, cache.getWeight());
+        final PathFilter<Path> hidden = new PathFilter<Path>() {
+            public boolean accept(Path file) {
+                return !file.getName().startsWith(".");
+            }
+        };
+        final PathFilter<Path> all = new PathFilter<Path>() {
+            public boolean accept(Path file) {
+                return true;
+            }
+        };
+        for(int i = 0; i < 3; i++) {
+            assertEquals(1, cache.get(parent.getReference(), new NullComparator<Path>(), hidden).size());
+            assertEquals(2, cache.get(parent.getReference(), new NullComparator<Path>(), all).size());
+        }
+        assertEquals(2, cache.getWeight());
+    }
+
+    public static Test suite() {
+        return new TestSuite(CacheTest.class);
+    }
+}
@@ -66,6 +66,19 @@ public class StatusTest extends AbstractTestCase {
         assertEquals(0, status.getCurrent());
     }
 
+    public void testSegments() throws Exception {
+        Status status = new Status();
+        assertFalse(status.isSegmented());
+        status.setSegmentComplete(0, 1024);
+        status.setSegmentComplete(2048, 512);
+        assertTrue(status.isSegmented());
+        assertTrue(status.isSegmentComplete(2048));
+        assertFalse(status.isSegmentComplete(1024));
+        assertEquals(1536, status.getSegmentsLength());
+        status.setResume(false);
+        assertFalse(status.isSegmented());
+    }
+
     public static Test suite() {
         return new TestSuite(StatusTest.class);
     }
@@ -0,0 +1,149 @@
+package ch.cyberduck.core.ftp;
+
+/*
+ * Copyright (c) 2002-2010 David Kocher. All rights reserved.
+ *
+ * http://cyberduck.ch/
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * Bug fixes, suggestions and comments should be sent to:
+ * dkocher@cyberduck.ch
+ */
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import ch.cyberduck.core.AbstractTestCase;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.apache.commons.net.ProtocolCommandListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @version $Id$
+ */
+public class FTPClientTest extends AbstractTestCase {
+
+    public FTPClientTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Data connection reading from and writing to memory
+     */
+    private static class BufferSocket extends Socket {
+        private InputStream in;
+        private ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private int closed;
+
+        private BufferSocket(byte[] data) {
+            this.in = new ByteArrayInputStream(data);
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public synchronized void close() {
+            closed++;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed > 0;
+        }
+    }
+
+    public void testDeflateSocket() throws Exception {
+        final FTPClient client = new FTPClient(null);
+        final List<String> transcript = new ArrayList<String>();
+        client.addProtocolCommandListener(new ProtocolCommandListener() {
+            public void protocolCommandSent(ProtocolCommandEvent event) {
+                transcript.add(event.getMessage());
+            }
+
+            public void protocolReplyReceived(ProtocolCommandEvent event) {
+                transcript.add(event.getMessage());
+            }
+        });
+        final StringBuilder listing = new StringBuilder();
+        for(int i = 0; i < 1000; i++) {
+            listing.append("-rw-r--r--    1 owner    group        1024 Jun 12 15:40 file").append(i).append("\r\n");
+        }
+        final byte[] data = listing.toString().getBytes("UTF-8");
+
+        final BufferSocket upload = new BufferSocket(new byte[0]);
+        final FTPClient.DeflateSocket deflate = client.new DeflateSocket(upload);
+        deflate.getOutputStream().write(data);
+        deflate.close();
+        assertTrue(deflate.isClosed());
+        assertEquals(1, upload.closed);
+        // Closing twice is harmless
+        deflate.close();
+        assertEquals(1, upload.closed);
+        final byte[] compressed = upload.out.toByteArray();
+        assertTrue(compressed.length < data.length / 10);
+        assertEquals(Arrays.asList("Deflated " + data.length + " to " + compressed.length + " bytes ("
+                + (compressed.length * 100 / data.length) + "%)"), transcript);
+
+        transcript.clear();
+        final BufferSocket download = new BufferSocket(compressed);
+        final FTPClient.DeflateSocket inflate = client.new DeflateSocket(download);
+        assertTrue(Arrays.equals(data, IOUtils.toByteArray(inflate.getInputStream())));
+        inflate.close();
+        inflate.close();
+        assertEquals(1, download.closed);
+        assertEquals(Arrays.asList("Inflated " + compressed.length + " to " + data.length + " bytes ("
+                + (compressed.length * 100 / data.length) + "%)"), transcript);
+    }
+
+    public void testDeflateSocketClosedWithoutData() throws Exception {
+        final FTPClient client = new FTPClient(null);
+        final List<String> transcript = new ArrayList<String>();
+        client.addProtocolCommandListener(new ProtocolCommandListener() {
+            public void protocolCommandSent(ProtocolCommandEvent event) {
+                transcript.add(event.getMessage());
+            }
+
+            public void protocolReplyReceived(ProtocolCommandEvent event) {
+                transcript.add(event.getMessage());
+            }
+        });
+        final BufferSocket proxy = new BufferSocket(new byte[0]);
+        final FTPClient.DeflateSocket socket = client.new DeflateSocket(proxy);
+        socket.close();
+        socket.close();
+        assertEquals(1, proxy.closed);
+        // No ratio reported without data
+        assertTrue(transcript.isEmpty());
+    }
+
+    public static Test suite() {
+        return new TestSuite(FTPClientTest.class);
+    }
+}
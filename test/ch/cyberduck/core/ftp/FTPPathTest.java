@@ -25,10 +25,9 @@ import ch.cyberduck.core.*;
 
 import org.apache.commons.net.ftp.FTPFileEntryParser;
 
-import java.util.Arrays;
-import java.util.Calendar;
-import java.util.Collections;
-import java.util.TimeZone;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.*;
 
 /**
  * @version $Id$
@@ -121,6 +120,27 @@ public class FTPPathTest extends AbstractTestCase {
         assertTrue(children.get(2).attributes().isDirectory());
     }
 
+    public void testMlsdSymbolicLink() throws Exception {
+        final AttributedList<Path> children = new AttributedList<Path>();
+
+        FTPPath path = (FTPPath) PathFactory.createPath(SessionFactory.createSession(new Host(Protocol.FTP, "localhost")),
+                "/www", Path.DIRECTORY_TYPE);
+
+        String[] replies = new String[]{
+                "Type=OS.unix=slink:/www/basic;Perm=r; basic",
+                "Type=OS.unix=symlink:index.html;Perm=r; default.html",
+                "Type=OS.unix=slink:;Perm=r; unknown", //skipped
+        };
+
+        boolean success = path.parseMlsdResponse(children, Arrays.asList(replies));
+        assertTrue(success);
+        assertEquals(2, children.size());
+        assertTrue(children.get(0).attributes().isSymbolicLink());
+        assertEquals("/www/basic", children.get(0).getSymlinkTarget().getAbsolute());
+        assertTrue(children.get(1).attributes().isSymbolicLink());
+        assertEquals("/www/index.html", children.get(1).getSymlinkTarget().getAbsolute());
+    }
+
     public void testMlsdCdir() throws Exception {
         FTPPath path = (FTPPath) PathFactory.createPath(SessionFactory.createSession(new Host(Protocol.FTP, "localhost")),
                 "/www", Path.DIRECTORY_TYPE);
@@ -351,6 +371,98 @@ public class FTPPathTest extends AbstractTestCase {
         }
     }
 
+    public void testSegmentedDownloadDisconnected() throws Exception {
+        FTPPath path = (FTPPath) PathFactory.createPath(SessionFactory.createSession(new Host(Protocol.FTP, "localhost")),
+                "/store/public/file", Path.FILE_TYPE);
+        // REST STREAM support unknown before connecting
+        assertFalse(path.isSegmentedDownloadSupported());
+    }
+
+    public void testSegmentConnections() throws Exception {
+        final Host host = new Host(Protocol.FTP, "localhost");
+        host.setMaxConnections(3);
+        // Segmented downloads disabled by default
+        assertEquals(0, new FTPSession(host).getSegmentConnections());
+        Preferences.instance().setProperty("queue.download.segments", true);
+        Preferences.instance().setProperty("queue.download.segments.connections", 5);
+        try {
+            // The session of the transfer keeps one connection
+            assertEquals(2, new FTPSession(host).getSegmentConnections());
+            host.setMaxConnections(10);
+            assertEquals(5, new FTPSession(host).getSegmentConnections());
+        }
+        finally {
+            Preferences.instance().deleteProperty("queue.download.segments");
+            Preferences.instance().deleteProperty("queue.download.segments.connections");
+        }
+    }
+
+    public void testReadSegment() throws Exception {
+        final FTPClient client = new FTPClient(null) {
+            @Override
+            public boolean setFileType(int fileType) {
+                return true;
+            }
+
+            @Override
+            public InputStream retrieveFileStream(String remote) {
+                return new ByteArrayInputStream(new byte[100]);
+            }
+
+            @Override
+            public boolean completePendingCommand() {
+                // Transfer aborted by closing the data connection
+                return false;
+            }
+
+            @Override
+            public String getReplyString() {
+                return "426 Connection closed; transfer aborted.";
+            }
+        };
+        final FTPSession session = new FTPSession(new Host(Protocol.FTP, "localhost")) {
+            @Override
+            protected FTPClient getClient() {
+                return client;
+            }
+
+            @Override
+            public void check() {
+                //
+            }
+        };
+        final FTPPath path = (FTPPath) PathFactory.createPath(session, "/store/public/file", Path.FILE_TYPE);
+        path.attributes().setSize(100);
+        final List<Session> released = new ArrayList<Session>();
+        path.segments = new SessionPool(session, 1) {
+            @Override
+            protected Session create() {
+                return session;
+            }
+
+            @Override
+            public void release(Session pooled) {
+                released.add(pooled);
+                super.release(pooled);
+            }
+        };
+        // Closed at the end of a segment that is not the last
+        final InputStream segment = path.read(0, 50);
+        assertEquals(0, segment.read());
+        segment.close();
+        assertEquals(Collections.<Session>singletonList(session), released);
+        // The last segment must be transferred completely
+        final InputStream last = path.read(50, 50);
+        try {
+            last.close();
+            fail();
+        }
+        catch(FTPException e) {
+            // Expected
+        }
+        assertEquals(2, released.size());
+    }
+
     public static Test suite() {
         return new TestSuite(FTPPathTest.class);
     }
@@ -0,0 +1,179 @@
+package ch.cyberduck.core.http;
+
+/*
+ *  Copyright (c) 2010 David Kocher. All rights reserved.
+ *  http://cyberduck.ch/
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Bug fixes, suggestions and comments should be sent to:
+ *  dkocher@cyberduck.ch
+ */
+
+import ch.cyberduck.core.AbstractTestCase;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * @version $Id$
+ */
+public class PooledClientConnectionManagerTest extends AbstractTestCase {
+
+    public PooledClientConnectionManagerTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Answers any number of requests on persistent connections
+     */
+    private static class Server extends Thread {
+        private final ServerSocket socket;
+        private final AtomicInteger accepted = new AtomicInteger();
+
+        Server() throws IOException {
+            this.socket = new ServerSocket(0);
+            this.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while(true) {
+                    final Socket connection = socket.accept();
+                    accepted.incrementAndGet();
+                    final Thread handler = new Thread() {
+                        @Override
+                        public void run() {
+                            try {
+                                final BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), "ISO-8859-1"));
+                                final OutputStream out = connection.getOutputStream();
+                                String line;
+                                while(null != (line = in.readLine())) {
+                                    if(line.length() > 0) {
+                                        continue;
+                                    }
+                                    // End of request headers
+                                    Thread.sleep(10);
+                                    out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes("ISO-8859-1"));
+                                    out.flush();
+                                }
+                                connection.close();
+                            }
+                            catch(Exception e) {
+                                // Connection closed
+                            }
+                        }
+                    };
+                    handler.setDaemon(true);
+                    handler.start();
+                }
+            }
+            catch(IOException e) {
+                // Closed
+            }
+        }
+    }
+
+    private DefaultHttpClient client(PooledClientConnectionManager manager) {
+        return new DefaultHttpClient(manager);
+    }
+
+    private static SchemeRegistry registry(int port) {
+        final SchemeRegistry registry = new SchemeRegistry();
+        registry.register(new Scheme("http", port, PlainSocketFactory.getSocketFactory()));
+        return registry;
+    }
+
+    private static void get(DefaultHttpClient client, int port) throws IOException {
+        final HttpResponse response = client.execute(new HttpGet("http://localhost:" + port + "/"));
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        EntityUtils.consume(response.getEntity());
+    }
+
+    public void testConcurrentRequests() throws Exception {
+        final Server server = new Server();
+        server.start();
+        final int port = server.socket.getLocalPort();
+        final PooledClientConnectionManager manager = new PooledClientConnectionManager(registry(port), 3, 10, 30);
+        final DefaultHttpClient client = this.client(manager);
+        final List<Thread> threads = new ArrayList<Thread>();
+        final AtomicInteger failures = new AtomicInteger();
+        for(int i = 0; i < 6; i++) {
+            final Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for(int r = 0; r < 10; r++) {
+                            get(client, port);
+                        }
+                    }
+                    catch(IOException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            threads.add(t);
+            t.start();
+        }
+        for(Thread t : threads) {
+            t.join();
+        }
+        assertEquals(0, failures.get());
+        // Connections are reused and limited per route
+        assertTrue(String.valueOf(server.accepted.get()), server.accepted.get() <= 3);
+        final PooledClientConnectionManager.Statistics statistics = manager.getStatistics();
+        assertEquals(0, statistics.getLeased());
+        assertEquals(0, statistics.getPending());
+        assertEquals(server.accepted.get(), statistics.getAvailable());
+        manager.shutdown();
+        server.socket.close();
+    }
+
+    public void testIdleConnectionsClosed() throws Exception {
+        final Server server = new Server();
+        server.start();
+        final int port = server.socket.getLocalPort();
+        final PooledClientConnectionManager manager = new PooledClientConnectionManager(registry(port), 3, 10, 0);
+        final DefaultHttpClient client = this.client(manager);
+        for(int r = 0; r < 3; r++) {
+            get(client, port);
+            Thread.sleep(5);
+        }
+        // No connection is reused after being idle longer than the timeout
+        assertEquals(3, server.accepted.get());
+        assertEquals(1, manager.getStatistics().getAvailable());
+        manager.shutdown();
+        server.socket.close();
+    }
+
+    public static Test suite() {
+        return new TestSuite(PooledClientConnectionManagerTest.class);
+    }
+}
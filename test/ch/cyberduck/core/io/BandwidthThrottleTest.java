@@ -0,0 +1,82 @@
+package ch.cyberduck.core.io;
+
+/*
+ *  Copyright (c) 2010 David Kocher. All rights reserved.
+ *  http://cyberduck.ch/
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Bug fixes, suggestions and comments should be sent to:
+ *  dkocher@cyberduck.ch
+ */
+
+import ch.cyberduck.core.AbstractTestCase;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class BandwidthThrottleTest extends AbstractTestCase {
+    public BandwidthThrottleTest(String name) {
+        super(name);
+    }
+
+    public void testUnlimited() throws Exception {
+        final BandwidthThrottle throttle = new BandwidthThrottle(BandwidthThrottle.UNLIMITED);
+        assertEquals(32768, throttle.request(32768));
+    }
+
+    public void testBurst() throws Exception {
+        final BandwidthThrottle throttle = new BandwidthThrottle(10000);
+        Thread.sleep(200);
+        // Bucket holds at most the bytes allowed in 100 milliseconds
+        assertEquals(1000, throttle.request(32768));
+    }
+
+    public void testParent() throws Exception {
+        final BandwidthThrottle global = new BandwidthThrottle(10000);
+        final BandwidthThrottle transfer = new BandwidthThrottle(100000, global);
+        Thread.sleep(200);
+        assertEquals(1000, transfer.request(32768));
+        transfer.setRate(BandwidthThrottle.UNLIMITED);
+        final long start = System.currentTimeMillis();
+        int total = 0;
+        while(total < 5000) {
+            total += transfer.request(5000 - total);
+        }
+        // Limited by parent
+        assertTrue(System.currentTimeMillis() - start >= 400);
+    }
+
+    public void testCycle() throws Exception {
+        final BandwidthThrottle a = new BandwidthThrottle(BandwidthThrottle.UNLIMITED);
+        final BandwidthThrottle b = new BandwidthThrottle(BandwidthThrottle.UNLIMITED, a);
+        try {
+            a.setParent(b);
+            fail();
+        }
+        catch(IllegalArgumentException e) {
+            //
+        }
+    }
+
+    public void testShaper() throws Exception {
+        final BandwidthShaper shaper = new BandwidthShaper("test");
+        assertSame(shaper.getThrottle("ftp://localhost"), shaper.getThrottle("ftp://localhost"));
+        assertNotSame(shaper.getThrottle("ftp://localhost"), shaper.getThrottle("sftp://localhost"));
+        shaper.setHostRate(1000);
+        assertEquals(1000f, shaper.getThrottle("ftp://localhost").getRate());
+        assertEquals(1000f, shaper.create("ftp://example.net", 5000).getParent().getRate());
+    }
+
+    public static Test suite() {
+        return new TestSuite(BandwidthThrottleTest.class);
+    }
+}
@@ -0,0 +1,201 @@
+package ch.cyberduck.core.ssl;
+
+/*
+ *  Copyright (c) 2010 David Kocher. All rights reserved.
+ *  http://cyberduck.ch/
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Bug fixes, suggestions and comments should be sent to:
+ *  dkocher@cyberduck.ch
+ */
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.bouncycastle.x509.X509V1CertificateGenerator;
+
+import javax.net.ssl.*;
+import javax.security.auth.x500.X500Principal;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Handshakes with a local server using a self signed certificate.
+ *
+ * @version $Id$
+ */
+public class SSLHandshakeCounterTest extends TestCase {
+
+    private static final String[] PROTOCOLS = {"TLSv1.2"};
+
+    /**
+     * Listening for control connections
+     */
+    private SSLServerSocket control;
+
+    /**
+     * Listening for data connections
+     */
+    private SSLServerSocket data;
+
+    /**
+     * Client context trusting any certificate
+     */
+    private SSLContext context;
+
+    @Override
+    protected void setUp() throws Exception {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        final KeyPair pair = generator.generateKeyPair();
+        final X509V1CertificateGenerator certificate = new X509V1CertificateGenerator();
+        certificate.setSerialNumber(BigInteger.ONE);
+        certificate.setIssuerDN(new X500Principal("CN=localhost"));
+        certificate.setSubjectDN(new X500Principal("CN=localhost"));
+        certificate.setNotBefore(new Date(System.currentTimeMillis() - 60000));
+        certificate.setNotAfter(new Date(System.currentTimeMillis() + 3600000));
+        certificate.setPublicKey(pair.getPublic());
+        certificate.setSignatureAlgorithm("SHA256withRSA");
+        final KeyStore keystore = KeyStore.getInstance(KeyStore.getDefaultType());
+        keystore.load(null, null);
+        keystore.setKeyEntry("localhost", pair.getPrivate(), new char[0],
+                new Certificate[]{certificate.generate(pair.getPrivate(), "SunRsaSign")});
+        final KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keys.init(keystore, new char[0]);
+        final SSLContext server = SSLContext.getInstance("TLS");
+        server.init(keys.getKeyManagers(), null, null);
+        control = this.listen(server);
+        data = this.listen(server);
+        context = this.context();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        control.close();
+        data.close();
+    }
+
+    private SSLServerSocket listen(SSLContext server) throws IOException {
+        final SSLServerSocket socket = (SSLServerSocket) server.getServerSocketFactory().createServerSocket(0);
+        socket.setEnabledProtocols(PROTOCOLS);
+        final Thread accept = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while(true) {
+                        final SSLSocket connection = (SSLSocket) socket.accept();
+                        connection.startHandshake();
+                        connection.getOutputStream().write(1);
+                        connection.getOutputStream().flush();
+                    }
+                }
+                catch(IOException e) {
+                    // Closed
+                }
+            }
+        };
+        accept.setDaemon(true);
+        accept.start();
+        return socket;
+    }
+
+    private SSLContext context() throws Exception {
+        final SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, new TrustManager[]{new X509TrustManager() {
+            public void checkClientTrusted(X509Certificate[] certificates, String authType) {
+                //
+            }
+
+            public void checkServerTrusted(X509Certificate[] certificates, String authType) {
+                //
+            }
+
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        }}, null);
+        return context;
+    }
+
+    private SSLSocket handshake(SSLSocket socket) throws IOException {
+        socket.setEnabledProtocols(PROTOCOLS);
+        socket.startHandshake();
+        assertEquals(1, socket.getInputStream().read());
+        SSLHandshakeCounter.handshake(socket);
+        return socket;
+    }
+
+    private SSLSocket connect(SSLContext context, SSLServerSocket server) throws IOException {
+        return this.handshake((SSLSocket) context.getSocketFactory().createSocket("localhost", server.getLocalPort()));
+    }
+
+    public void testReconnect() throws Exception {
+        final int full = SSLHandshakeCounter.getFullHandshakes();
+        final int abbreviated = SSLHandshakeCounter.getAbbreviatedHandshakes();
+        final SSLSocket first = this.connect(context, control);
+        first.close();
+        assertEquals(full + 1, SSLHandshakeCounter.getFullHandshakes());
+        assertEquals(abbreviated, SSLHandshakeCounter.getAbbreviatedHandshakes());
+        final SSLSocket second = this.connect(context, control);
+        second.close();
+        assertTrue(Arrays.equals(first.getSession().getId(), second.getSession().getId()));
+        assertEquals(full + 1, SSLHandshakeCounter.getFullHandshakes());
+        assertEquals(abbreviated + 1, SSLHandshakeCounter.getAbbreviatedHandshakes());
+    }
+
+    public void testNewContext() throws Exception {
+        this.connect(context, control).close();
+        final int full = SSLHandshakeCounter.getFullHandshakes();
+        final int abbreviated = SSLHandshakeCounter.getAbbreviatedHandshakes();
+        // Sessions are only resumed by the context that negotiated them
+        this.connect(this.context(), control).close();
+        assertEquals(full + 1, SSLHandshakeCounter.getFullHandshakes());
+        assertEquals(abbreviated, SSLHandshakeCounter.getAbbreviatedHandshakes());
+    }
+
+    public void testResumeDataConnection() throws Exception {
+        final SSLSocket socket = this.connect(context, control);
+        final int full = SSLHandshakeCounter.getFullHandshakes();
+        final int abbreviated = SSLHandshakeCounter.getAbbreviatedHandshakes();
+        final SessionResumingSocketFactory factory = new SessionResumingSocketFactory(context, socket);
+        for(int i = 0; i < 3; i++) {
+            final SSLSocket connection = this.handshake(
+                    (SSLSocket) factory.createSocket("localhost", data.getLocalPort()));
+            assertTrue(Arrays.equals(socket.getSession().getId(), connection.getSession().getId()));
+            connection.close();
+        }
+        socket.close();
+        assertEquals(full, SSLHandshakeCounter.getFullHandshakes());
+        assertEquals(abbreviated + 3, SSLHandshakeCounter.getAbbreviatedHandshakes());
+    }
+
+    public void testDataConnection() throws Exception {
+        final SSLSocket socket = this.connect(context, control);
+        final int full = SSLHandshakeCounter.getFullHandshakes();
+        // Looked up by the port of the data connection
+        this.connect(context, data).close();
+        socket.close();
+        assertEquals(full + 1, SSLHandshakeCounter.getFullHandshakes());
+    }
+
+    public static Test suite() {
+        return new TestSuite(SSLHandshakeCounterTest.class);
+    }
+}
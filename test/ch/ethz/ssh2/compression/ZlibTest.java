@@ -0,0 +1,142 @@
+package ch.ethz.ssh2.compression;
+
+import ch.ethz.ssh2.transport.TransportConnection;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * @version $Id$
+ */
+public class ZlibTest extends TestCase {
+
+    public ZlibTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Log file like payload
+     */
+    private static byte[] text(Random random, int length) {
+        final StringBuilder b = new StringBuilder();
+        while(b.length() < length) {
+            b.append("2011-03-01 12:00:").append(random.nextInt(60)).append(" INFO Transfer complete ")
+                    .append(random.nextInt(100000)).append(" bytes\n");
+        }
+        return b.substring(0, length).getBytes();
+    }
+
+    public void testRoundtrip() throws Exception {
+        if(!CompressionFactory.isAvailable()) {
+            return;
+        }
+        final Random random = new Random(1);
+        final Compressor deflate = CompressionFactory.createCompressor(CompressionFactory.ZLIB);
+        final Compressor inflate = CompressionFactory.createCompressor(CompressionFactory.ZLIB);
+        for(int i = 0; i < 100; i++) {
+            final byte[] payload = i % 2 == 0 ? text(random, 1 + random.nextInt(32768)) : new byte[1 + random.nextInt(32768)];
+            if(i % 2 == 1) {
+                // Incompressible
+                random.nextBytes(payload);
+            }
+            final int compressed = deflate.compress(payload, 0, payload.length);
+            final byte[] packet = Arrays.copyOf(deflate.getBuffer(), compressed);
+            final int uncompressed = inflate.uncompress(packet, 0, packet.length);
+            assertEquals(payload.length, uncompressed);
+            assertTrue(Arrays.equals(payload, Arrays.copyOf(inflate.getBuffer(), uncompressed)));
+        }
+        assertEquals(deflate.getUncompressedBytes(), inflate.getUncompressedBytes());
+        assertEquals(deflate.getCompressedBytes(), inflate.getCompressedBytes());
+        deflate.close();
+        inflate.close();
+    }
+
+    public void testInvalid() throws Exception {
+        if(!CompressionFactory.isAvailable()) {
+            return;
+        }
+        final Compressor inflate = CompressionFactory.createCompressor(CompressionFactory.ZLIB);
+        try {
+            inflate.uncompress(new byte[]{1, 2, 3, 4, 5, 6}, 0, 6);
+            fail();
+        }
+        catch(IOException e) {
+            // Expected
+        }
+    }
+
+    public void testTransport() throws Exception {
+        if(!CompressionFactory.isAvailable()) {
+            return;
+        }
+        final Random random = new Random(2);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TransportConnection sender = new TransportConnection(new ByteArrayInputStream(new byte[0]), out,
+                new SecureRandom());
+        sender.changeSendCompression(CompressionFactory.createCompressor(CompressionFactory.ZLIB));
+        final List<byte[]> messages = new ArrayList<byte[]>();
+        for(int i = 0; i < 50; i++) {
+            final byte[] message = text(random, 1 + random.nextInt(32000));
+            // SSH_MSG_CHANNEL_DATA
+            message[0] = 94;
+            messages.add(message);
+            sender.sendMessage(message);
+        }
+        final CompressionStatistics statistics = sender.getCompressionStatistics();
+        assertTrue(statistics.getSendRatio() > 2);
+        assertTrue(out.size() < statistics.getUncompressedSent());
+        final TransportConnection receiver = new TransportConnection(new ByteArrayInputStream(out.toByteArray()),
+                new ByteArrayOutputStream(), new SecureRandom());
+        receiver.changeRecvCompression(CompressionFactory.createCompressor(CompressionFactory.ZLIB));
+        final byte[] buffer = new byte[35000];
+        for(byte[] message : messages) {
+            final int length = receiver.receiveMessage(buffer, 0, buffer.length);
+            assertTrue(Arrays.equals(message, Arrays.copyOf(buffer, length)));
+        }
+        assertEquals(statistics.getSendRatio(), receiver.getCompressionStatistics().getReceiveRatio(), 0.0001);
+    }
+
+    public void testDelayed() throws Exception {
+        if(!CompressionFactory.isAvailable()) {
+            return;
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TransportConnection sender = new TransportConnection(new ByteArrayInputStream(new byte[0]), out,
+                new SecureRandom());
+        sender.changeSendCompression(CompressionFactory.createCompressor(CompressionFactory.ZLIB_OPENSSH));
+        sender.sendMessage(text(new Random(3), 10000));
+        // Not compressed before authentication
+        assertEquals(0L, sender.getCompressionStatistics().getCompressedSent());
+        assertTrue(out.size() > 10000);
+    }
+
+    public void testRatio() throws Exception {
+        if(!CompressionFactory.isAvailable()) {
+            return;
+        }
+        final Random random = new Random(4);
+        final Compressor deflate = CompressionFactory.createCompressor(CompressionFactory.ZLIB);
+        for(int i = 0; i < 256; i++) {
+            final byte[] payload = text(random, 32768);
+            deflate.compress(payload, 0, payload.length);
+        }
+        final double ratio = (double) deflate.getUncompressedBytes() / deflate.getCompressedBytes();
+        deflate.close();
+        // Log file like payload
+        assertTrue("Compression ratio " + ratio, ratio > 3);
+    }
+
+    public static Test suite() {
+        return new TestSuite(ZlibTest.class);
+    }
+}
@@ -0,0 +1,119 @@
+package ch.ethz.ssh2.crypto;
+
+import ch.ethz.ssh2.crypto.cipher.BlockCipher;
+import ch.ethz.ssh2.crypto.cipher.BlockCipherFactory;
+import ch.ethz.ssh2.crypto.cipher.CipherInputStream;
+import ch.ethz.ssh2.crypto.cipher.CipherOutputStream;
+import ch.ethz.ssh2.crypto.cipher.JCECipher;
+import ch.ethz.ssh2.crypto.digest.MAC;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Compares the ciphers and MACs of the Java Cryptography Extension with the bundled
+ * implementations.
+ *
+ * @version $Id$
+ */
+public class JCEProviderTest extends TestCase {
+
+    private static final String[] CIPHERS = {
+            "aes128-ctr", "aes192-ctr", "aes256-ctr",
+            "aes128-cbc", "aes192-cbc", "aes256-cbc"
+    };
+
+    private static final String[] MACS = MAC.getMacList();
+
+    /**
+     * Size of a packet as written by the transport layer
+     */
+    private static final int PACKET = 32768 + 48;
+
+    private final Random random = new Random(1);
+
+    public JCEProviderTest(String name) {
+        super(name);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        JCEProvider.setEnabled(true);
+        super.tearDown();
+    }
+
+    private byte[] random(int length) {
+        final byte[] b = new byte[length];
+        random.nextBytes(b);
+        return b;
+    }
+
+    /**
+     * Encrypt packets with a 5 byte header written separately as the transport layer does.
+     */
+    private byte[] encrypt(String type, boolean jce, byte[] key, byte[] iv, byte[] data, int packets) throws Exception {
+        JCEProvider.setEnabled(jce);
+        final BlockCipher cipher = BlockCipherFactory.createCipher(type, true, key, iv);
+        if(!jce) {
+            assertFalse(cipher instanceof JCECipher);
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final CipherOutputStream cos = new CipherOutputStream(cipher, out);
+        for(int i = 0; i < packets; i++) {
+            cos.write(data, 0, 5);
+            cos.write(data, 5, data.length - 5);
+            cos.flush();
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] decrypt(String type, boolean jce, byte[] key, byte[] iv, byte[] data, int length) throws Exception {
+        JCEProvider.setEnabled(jce);
+        final BlockCipher cipher = BlockCipherFactory.createCipher(type, false, key, iv);
+        final CipherInputStream cis = new CipherInputStream(cipher, new ByteArrayInputStream(data));
+        final byte[] plain = new byte[length];
+        cis.read(plain, 0, 5);
+        cis.read(plain, 5, length - 5);
+        return plain;
+    }
+
+    public void testCipher() throws Exception {
+        for(String type : CIPHERS) {
+            final byte[] key = this.random(BlockCipherFactory.getKeySize(type));
+            final byte[] iv = this.random(BlockCipherFactory.getBlockSize(type));
+            final byte[] data = this.random(PACKET);
+            final byte[] bundled = this.encrypt(type, false, key, iv, data, 1);
+            final byte[] jce = this.encrypt(type, true, key, iv, data, 1);
+            assertTrue(type, Arrays.equals(bundled, jce));
+            assertTrue(type, Arrays.equals(data, this.decrypt(type, true, key, iv, bundled, PACKET)));
+            assertTrue(type, Arrays.equals(data, this.decrypt(type, false, key, iv, jce, PACKET)));
+        }
+    }
+
+    public void testMac() throws Exception {
+        final byte[] data = this.random(PACKET);
+        for(String type : MACS) {
+            final byte[] key = this.random(MAC.getKeyLen(type));
+            final byte[][] result = new byte[2][];
+            for(int i = 0; i < 2; i++) {
+                JCEProvider.setEnabled(i == 1);
+                final MAC mac = new MAC(type, key);
+                mac.initMac(7);
+                mac.update(data, 0, data.length);
+                result[i] = new byte[mac.size()];
+                mac.getMac(result[i], 0);
+            }
+            assertTrue(type, Arrays.equals(result[0], result[1]));
+        }
+    }
+
+    public static Test suite() {
+        return new TestSuite(JCEProviderTest.class);
+    }
+}
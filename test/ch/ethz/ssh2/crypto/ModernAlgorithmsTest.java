@@ -0,0 +1,274 @@
+package ch.ethz.ssh2.crypto;
+
+import ch.ethz.ssh2.crypto.cipher.AuthenticatedCipher;
+import ch.ethz.ssh2.crypto.cipher.BlockCipher;
+import ch.ethz.ssh2.crypto.cipher.BlockCipherFactory;
+import ch.ethz.ssh2.crypto.cipher.CipherOutputStream;
+import ch.ethz.ssh2.crypto.dh.DhExchange;
+import ch.ethz.ssh2.crypto.dh.EcDhExchange;
+import ch.ethz.ssh2.crypto.digest.MAC;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Authenticated ciphers and elliptic curve key exchange. Compares per packet cost and
+ * key exchange latency with the previous default algorithms.
+ *
+ * @version $Id$
+ */
+public class ModernAlgorithmsTest extends TestCase {
+    private static Logger log = Logger.getLogger(ModernAlgorithmsTest.class);
+
+    private static final String[] AEAD = {
+            "chacha20-poly1305@openssh.com", "aes128-gcm@openssh.com", "aes256-gcm@openssh.com"
+    };
+
+    private static final String[] KEX = {
+            EcDhExchange.CURVE25519_SHA256, EcDhExchange.ECDH_SHA2_NISTP256
+    };
+
+    /**
+     * Size of a packet as written by the transport layer
+     */
+    private static final int PACKET = 32768 + 48;
+
+    private final Random random = new Random(1);
+
+    public ModernAlgorithmsTest(String name) {
+        super(name);
+    }
+
+    private byte[] random(int length) {
+        final byte[] b = new byte[length];
+        random.nextBytes(b);
+        return b;
+    }
+
+    private static byte[] hex(String s) {
+        final byte[] b = new byte[s.length() / 2];
+        for(int i = 0; i < b.length; i++) {
+            b[i] = (byte) Integer.parseInt(s.substring(i * 2, i * 2 + 2), 16);
+        }
+        return b;
+    }
+
+    private static byte[] range(int start, int length) {
+        final byte[] b = new byte[length];
+        for(int i = 0; i < length; i++) {
+            b[i] = (byte) (start + i);
+        }
+        return b;
+    }
+
+    private static final byte[] PLAIN = hex("0000001c04000306090c0f1215181b1e2124272a2d303336393c3f4245484b4e");
+
+    public void testChaCha20Poly1305() throws Exception {
+        final AuthenticatedCipher c = BlockCipherFactory.createAuthenticatedCipher(
+                "chacha20-poly1305@openssh.com", true, range(0, 64), new byte[0]);
+        final byte[] packet = new byte[PLAIN.length + c.getTagSize()];
+        System.arraycopy(PLAIN, 0, packet, 0, PLAIN.length);
+        c.encrypt(7, packet, 0, PLAIN.length);
+        assertTrue(Arrays.equals(hex("a39afcb62c461645478f254c7975a0eef6abf4061982030047df02c10522509"
+                + "16af35bdb9309a917967e30dad07a0100"), packet));
+        final AuthenticatedCipher d = BlockCipherFactory.createAuthenticatedCipher(
+                "chacha20-poly1305@openssh.com", false, range(0, 64), new byte[0]);
+        assertEquals(28, d.getPacketLength(7, packet, 0));
+        d.decrypt(7, packet, 0, PLAIN.length);
+        assertTrue(Arrays.equals(PLAIN, Arrays.copyOf(packet, PLAIN.length)));
+    }
+
+    public void testAESGCM() throws Exception {
+        final AuthenticatedCipher c = BlockCipherFactory.createAuthenticatedCipher(
+                "aes128-gcm@openssh.com", true, range(0, 16), range(100, 12));
+        final byte[] packet = new byte[PLAIN.length + c.getTagSize()];
+        // Invocation counter is incremented for every packet
+        for(int seq = 0; seq < 2; seq++) {
+            System.arraycopy(PLAIN, 0, packet, 0, PLAIN.length);
+            c.encrypt(seq, packet, 0, PLAIN.length);
+        }
+        assertTrue(Arrays.equals(hex("0000001c6a78701dbf4d16e768eaa64019dfaa9d18d739be7f5f24614fc540"
+                + "aa44cb4fbb21eef181256b5028c3cbde90"), packet));
+    }
+
+    public void testRoundtrip() throws Exception {
+        for(String type : AEAD) {
+            if(!Arrays.asList(BlockCipherFactory.getDefaultCipherList()).contains(type)) {
+                continue;
+            }
+            final byte[] key = this.random(BlockCipherFactory.getKeySize(type));
+            final byte[] iv = this.random(BlockCipherFactory.getIVSize(type));
+            final AuthenticatedCipher c = BlockCipherFactory.createAuthenticatedCipher(type, true, key, iv);
+            final AuthenticatedCipher d = BlockCipherFactory.createAuthenticatedCipher(type, false, key, iv);
+            for(int seq = 0; seq < 4; seq++) {
+                final int length = 4 + 16 * (seq + 1);
+                final byte[] plain = this.random(length);
+                plain[0] = plain[1] = plain[2] = 0;
+                plain[3] = (byte) (length - 4);
+                final byte[] packet = new byte[length + c.getTagSize()];
+                System.arraycopy(plain, 0, packet, 0, length);
+                c.encrypt(seq, packet, 0, length);
+                assertEquals(type, length - 4, d.getPacketLength(seq, packet, 0));
+                d.decrypt(seq, packet, 0, length);
+                assertTrue(type, Arrays.equals(plain, Arrays.copyOf(packet, length)));
+            }
+        }
+    }
+
+    public void testTamper() throws Exception {
+        for(String type : AEAD) {
+            if(!Arrays.asList(BlockCipherFactory.getDefaultCipherList()).contains(type)) {
+                continue;
+            }
+            final byte[] key = this.random(BlockCipherFactory.getKeySize(type));
+            final byte[] iv = this.random(BlockCipherFactory.getIVSize(type));
+            final AuthenticatedCipher c = BlockCipherFactory.createAuthenticatedCipher(type, true, key, iv);
+            final byte[] packet = new byte[PLAIN.length + c.getTagSize()];
+            System.arraycopy(PLAIN, 0, packet, 0, PLAIN.length);
+            c.encrypt(0, packet, 0, PLAIN.length);
+            packet[10] ^= 1;
+            try {
+                BlockCipherFactory.createAuthenticatedCipher(type, false, key, iv).decrypt(0, packet, 0, PLAIN.length);
+                fail(type);
+            }
+            catch(IOException e) {
+                // Expected
+            }
+        }
+    }
+
+    public void testKeyExchange() throws Exception {
+        final SecureRandom rnd = new SecureRandom();
+        for(String kex : KEX) {
+            if(!EcDhExchange.isAvailable(kex)) {
+                continue;
+            }
+            final EcDhExchange client = EcDhExchange.getInstance(kex);
+            final EcDhExchange server = EcDhExchange.getInstance(kex);
+            client.init(rnd);
+            server.init(rnd);
+            client.setF(server.getE());
+            server.setF(client.getE());
+            assertEquals(kex, client.getK(), server.getK());
+        }
+    }
+
+    public void testInvalidPublicKey() throws Exception {
+        for(String kex : KEX) {
+            if(!EcDhExchange.isAvailable(kex)) {
+                continue;
+            }
+            final EcDhExchange client = EcDhExchange.getInstance(kex);
+            client.init(new SecureRandom());
+            final byte[] f = new byte[client.getE().length];
+            if(f.length > 32) {
+                f[0] = 0x04;
+                f[1] = 1;
+            }
+            try {
+                client.setF(f);
+                fail(kex);
+            }
+            catch(IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    public void testBenchmark() throws Exception {
+        final byte[] data = this.random(PACKET);
+        final int packets = 512;
+        for(String[] suite : new String[][]{
+                {"aes128-ctr", "hmac-sha1"}, {"aes128-ctr", "hmac-sha2-256"}, {"aes256-ctr", "hmac-sha2-512"}}) {
+            final String type = suite[0];
+            final BlockCipher cipher = BlockCipherFactory.createCipher(type, true,
+                    this.random(BlockCipherFactory.getKeySize(type)), this.random(BlockCipherFactory.getBlockSize(type)));
+            final MAC mac = new MAC(suite[1], this.random(MAC.getKeyLen(suite[1])));
+            final byte[] tag = new byte[mac.size()];
+            final CipherOutputStream cos = new CipherOutputStream(cipher, new ByteArrayOutputStream(PACKET * 2));
+            long start = 0;
+            for(int run = 0; run < 3; run++) {
+                // First runs are warmup
+                start = System.nanoTime();
+                for(int i = 0; i < packets; i++) {
+                    mac.initMac(i);
+                    mac.update(data, 0, data.length);
+                    mac.getMac(tag, 0);
+                    cos.write(data, 0, data.length);
+                    cos.flush();
+                }
+            }
+            this.report(type + "+" + suite[1], packets, System.nanoTime() - start);
+        }
+        for(String type : AEAD) {
+            if(!Arrays.asList(BlockCipherFactory.getDefaultCipherList()).contains(type)) {
+                continue;
+            }
+            final AuthenticatedCipher c = BlockCipherFactory.createAuthenticatedCipher(type, true,
+                    this.random(BlockCipherFactory.getKeySize(type)), this.random(BlockCipherFactory.getIVSize(type)));
+            final byte[] packet = new byte[PACKET + c.getTagSize()];
+            long start = 0;
+            for(int run = 0; run < 3; run++) {
+                start = System.nanoTime();
+                for(int i = 0; i < packets; i++) {
+                    System.arraycopy(data, 0, packet, 0, PACKET);
+                    c.encrypt(i, packet, 0, PACKET);
+                }
+            }
+            this.report(type, packets, System.nanoTime() - start);
+        }
+        final SecureRandom rnd = new SecureRandom();
+        final int exchanges = 20;
+        long start = 0;
+        for(int run = 0; run < 3; run++) {
+            start = System.nanoTime();
+            for(int i = 0; i < exchanges; i++) {
+                final DhExchange client = new DhExchange();
+                final DhExchange server = new DhExchange();
+                client.init(14, rnd);
+                server.init(14, rnd);
+                client.setF(server.getE());
+            }
+        }
+        this.kex("diffie-hellman-group14-sha1", exchanges, System.nanoTime() - start);
+        for(String kex : KEX) {
+            if(!EcDhExchange.isAvailable(kex)) {
+                continue;
+            }
+            for(int run = 0; run < 3; run++) {
+                start = System.nanoTime();
+                for(int i = 0; i < exchanges; i++) {
+                    final EcDhExchange client = EcDhExchange.getInstance(kex);
+                    final EcDhExchange server = EcDhExchange.getInstance(kex);
+                    client.init(rnd);
+                    server.init(rnd);
+                    client.setF(server.getE());
+                }
+            }
+            this.kex(kex, exchanges, System.nanoTime() - start);
+        }
+    }
+
+    private void report(String type, int packets, long nanos) {
+        log.info(String.format("%-32s %8.1f us/packet %8.1f MB/s", type, nanos / 1000d / packets,
+                (long) packets * PACKET / 1024d / 1024d / (nanos / 1000000000d)));
+    }
+
+    private void kex(String type, int exchanges, long nanos) {
+        // Both key pairs and the client agreement are included
+        log.info(String.format("%-32s %8.2f ms/exchange", type, nanos / 1000000d / exchanges));
+    }
+
+    public static Test suite() {
+        return new TestSuite(ModernAlgorithmsTest.class);
+    }
+}
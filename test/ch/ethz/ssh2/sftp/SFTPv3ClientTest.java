@@ -0,0 +1,257 @@
+package ch.ethz.ssh2.sftp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Runs the client against a minimal in-memory server serving a single file. Measures
+ * the memory allocated by the client thread per chunk transferred.
+ *
+ * @version $Id$
+ */
+public class SFTPv3ClientTest extends TestCase {
+
+    private static final int CHUNK = 32768;
+
+    public SFTPv3ClientTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Answers requests for a single file. Data responses are limited to <code>max</code> bytes.
+     */
+    private static class Server extends Thread {
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final byte[] file;
+        private final int max;
+
+        Server(PipedOutputStream client, PipedInputStream server, byte[] file, int max) throws IOException {
+            this.in = new DataInputStream(new PipedInputStream(client, 1 << 20));
+            this.out = new DataOutputStream(new PipedOutputStream(server));
+            this.file = file;
+            this.max = max;
+            this.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while(true) {
+                    final int length = in.readInt();
+                    final int type = in.readUnsignedByte();
+                    if(type == Packet.SSH_FXP_INIT) {
+                        in.readInt();
+                        out.writeInt(5);
+                        out.writeByte(Packet.SSH_FXP_VERSION);
+                        out.writeInt(3);
+                        out.flush();
+                        continue;
+                    }
+                    final int id = in.readInt();
+                    if(type == Packet.SSH_FXP_READ) {
+                        in.skipBytes(in.readInt());
+                        final long offset = in.readLong();
+                        final int len = Math.min(in.readInt(), max);
+                        if(offset >= file.length) {
+                            this.status(id, ErrorCodes.SSH_FX_EOF);
+                            continue;
+                        }
+                        final int n = (int) Math.min(len, file.length - offset);
+                        out.writeInt(1 + 4 + 4 + n);
+                        out.writeByte(Packet.SSH_FXP_DATA);
+                        out.writeInt(id);
+                        out.writeInt(n);
+                        out.write(file, (int) offset, n);
+                        out.flush();
+                    }
+                    else if(type == Packet.SSH_FXP_WRITE) {
+                        in.skipBytes(in.readInt());
+                        final long offset = in.readLong();
+                        in.readFully(file, (int) offset, in.readInt());
+                        this.status(id, ErrorCodes.SSH_FX_OK);
+                    }
+                    else if(type == Packet.SSH_FXP_STAT) {
+                        final byte[] path = new byte[in.readInt()];
+                        in.readFully(path);
+                        if(new String(path).startsWith("missing")) {
+                            this.status(id, ErrorCodes.SSH_FX_NO_SUCH_FILE);
+                            continue;
+                        }
+                        // Size attribute only with the length of the path
+                        out.writeInt(1 + 4 + 4 + 8);
+                        out.writeByte(Packet.SSH_FXP_ATTRS);
+                        out.writeInt(id);
+                        out.writeInt(AttribFlags.SSH_FILEXFER_ATTR_SIZE);
+                        out.writeLong(path.length);
+                        out.flush();
+                    }
+                    else if(type == Packet.SSH_FXP_OPEN) {
+                        in.skipBytes(length - 5);
+                        out.writeInt(1 + 4 + 4 + 1);
+                        out.writeByte(Packet.SSH_FXP_HANDLE);
+                        out.writeInt(id);
+                        out.writeInt(1);
+                        out.writeByte('h');
+                        out.flush();
+                    }
+                    else {
+                        in.skipBytes(length - 5);
+                        this.status(id, ErrorCodes.SSH_FX_OK);
+                    }
+                }
+            }
+            catch(EOFException e) {
+                // Client closed
+            }
+            catch(IOException e) {
+                // Client closed
+            }
+        }
+
+        private void status(int id, int code) throws IOException {
+            out.writeInt(1 + 4 + 4 + 4 + 4);
+            out.writeByte(Packet.SSH_FXP_STATUS);
+            out.writeInt(id);
+            out.writeInt(code);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.flush();
+        }
+    }
+
+    private static final PacketListener LISTENER = new PacketListener() {
+        public void read(String packet) {
+            //
+        }
+
+        public void write(String packet) {
+            //
+        }
+    };
+
+    private SFTPv3Client connect(byte[] file, int max) throws IOException {
+        final PipedOutputStream os = new PipedOutputStream();
+        final PipedInputStream is = new PipedInputStream(1 << 20);
+        new Server(os, is, file, max).start();
+        return new SFTPv3Client(is, os, LISTENER);
+    }
+
+    private static byte[] random(int length) {
+        final byte[] b = new byte[length];
+        new Random(1).nextBytes(b);
+        return b;
+    }
+
+    private static int download(SFTPv3Client client, SFTPv3FileHandle handle, byte[] dst) throws IOException {
+        int total = 0;
+        while(true) {
+            final int n = client.download(handle, total, dst, total, Math.min(CHUNK, Math.max(1, dst.length - total)));
+            if(n == -1) {
+                return total;
+            }
+            total += n;
+        }
+    }
+
+    public void testDownload() throws Exception {
+        final byte[] file = random(1024 * 1024 + 17);
+        final SFTPv3Client client = this.connect(file, CHUNK);
+        final SFTPv3FileHandle handle = client.openFileRO("f");
+        final byte[] dst = new byte[file.length + 1];
+        assertEquals(file.length, download(client, handle, dst));
+        assertTrue(Arrays.equals(file, Arrays.copyOf(dst, file.length)));
+        client.closeFile(handle);
+    }
+
+    public void testDownloadShortReads() throws Exception {
+        final byte[] file = random(256 * 1024 + 3);
+        // Server returns less than requested
+        final SFTPv3Client client = this.connect(file, 10000);
+        final SFTPv3FileHandle handle = client.openFileRO("f");
+        final byte[] dst = new byte[file.length + 1];
+        assertEquals(file.length, download(client, handle, dst));
+        assertTrue(Arrays.equals(file, Arrays.copyOf(dst, file.length)));
+        client.closeFile(handle);
+    }
+
+    public void testUpload() throws Exception {
+        final byte[] file = new byte[512 * 1024];
+        final SFTPv3Client client = this.connect(file, CHUNK);
+        final SFTPv3FileHandle handle = client.createFile("f");
+        final byte[] src = random(file.length);
+        for(int off = 0; off < src.length; off += CHUNK) {
+            client.upload(handle, off, src, off, CHUNK);
+        }
+        client.closeFile(handle);
+        assertTrue(Arrays.equals(src, file));
+    }
+
+    public void testStat() throws Exception {
+        final SFTPv3Client client = this.connect(new byte[0], CHUNK);
+        final String[] paths = new String[200];
+        for(int i = 0; i < paths.length; i++) {
+            paths[i] = (i % 10 == 0 ? "missing" : "f") + i;
+        }
+        final SFTPv3FileAttributes[] attributes = client.stat(paths, true, 16);
+        assertEquals(paths.length, attributes.length);
+        for(int i = 0; i < paths.length; i++) {
+            if(i % 10 == 0) {
+                assertNull(attributes[i]);
+            }
+            else {
+                assertEquals(Long.valueOf(paths[i].length()), attributes[i].size);
+            }
+        }
+    }
+
+    public void testAllocation() throws Exception {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        final long thread = Thread.currentThread().getId();
+        final byte[] file = random(8 * 1024 * 1024);
+        final byte[] dst = new byte[file.length + 1];
+        final SFTPv3Client client = this.connect(file, CHUNK);
+        long allocated = 0;
+        for(int run = 0; run < 3; run++) {
+            // First runs are warmup
+            final SFTPv3FileHandle handle = client.openFileRO("f");
+            final long start = threads.getThreadAllocatedBytes(thread);
+            assertEquals(file.length, download(client, handle, dst));
+            allocated = threads.getThreadAllocatedBytes(thread) - start;
+            client.closeFile(handle);
+        }
+        final int chunks = file.length / CHUNK;
+        // No copy of the payload is allocated
+        assertTrue(String.valueOf(allocated / chunks), allocated / chunks < CHUNK / 8);
+        final SFTPv3FileHandle handle = client.createFile("f");
+        for(int run = 0; run < 3; run++) {
+            final long start = threads.getThreadAllocatedBytes(thread);
+            for(int off = 0; off < file.length; off += CHUNK) {
+                client.upload(handle, off, dst, off, CHUNK);
+            }
+            allocated = threads.getThreadAllocatedBytes(thread) - start;
+        }
+        client.closeFile(handle);
+        assertTrue(String.valueOf(allocated / chunks), allocated / chunks < CHUNK / 8);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SFTPv3ClientTest.class);
+    }
+}